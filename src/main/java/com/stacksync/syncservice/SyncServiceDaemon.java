@@ -18,9 +18,16 @@ import com.stacksync.commons.omq.ISyncService;
 import com.stacksync.syncservice.db.ConnectionPool;
 import com.stacksync.syncservice.db.ConnectionPoolFactory;
 import com.stacksync.syncservice.exceptions.dao.DAOConfigurationException;
+import com.stacksync.syncservice.migration.MigrationService;
+import com.stacksync.syncservice.omq.NotificationPublisher;
 import com.stacksync.syncservice.omq.SyncServiceImp;
 import com.stacksync.syncservice.rpc.XmlRpcSyncHandler;
 import com.stacksync.syncservice.rpc.XmlRpcSyncServer;
+import com.stacksync.syncservice.rpc.http.HttpJsonServer;
+import com.stacksync.syncservice.rpc.http.ResponseCompressor;
+import com.stacksync.syncservice.rpc.http.SyncHandlerDispatcher;
+import com.stacksync.syncservice.storage.ChunkCollectorService;
+import com.stacksync.syncservice.storage.ContainerPool;
 import com.stacksync.syncservice.storage.StorageFactory;
 import com.stacksync.syncservice.storage.StorageManager;
 import com.stacksync.syncservice.storage.StorageManager.StorageType;
@@ -33,8 +40,13 @@ public class SyncServiceDaemon implements Daemon {
             .getLogger(SyncServiceDaemon.class.getName());
     private static ConnectionPool pool = null;
     private static XmlRpcSyncServer xmlRpcServer = null;
+    private static XmlRpcSyncHandler xmlRpcHandler = null;
+    private static HttpJsonServer httpServer = null;
+    private static SyncHandlerDispatcher httpDispatcher = null;
     private static Broker broker = null;
     private static SyncServiceImp syncService = null;
+    private static NotificationPublisher publisher = null;
+    private static StorageManager storageManager = null;
 
     @Override
     public void init(DaemonContext dc) throws DaemonInitException, Exception {
@@ -89,28 +101,60 @@ public class SyncServiceDaemon implements Daemon {
             System.exit(4);
         }
 
-        logger.info("Connecting to OpenStack Swift...");
+        logger.info("Connecting to the storage...");
 
         try {
-            StorageType type;
-            if (Config.getSwiftKeystoneProtocol().equals("http")) {
-                type = StorageType.SWIFT;
-            } else {
-                type = StorageType.SWIFT_SSL;
-            }
-            StorageManager storageManager = StorageFactory.getStorageManager(type);
+            StorageType type = StorageFactory.getStorageType();
+            storageManager = StorageFactory.getStorageManager(type);
             storageManager.login();
-            logger.info("Connected to OpenStack Swift successfully");
+            logger.info(String.format("Connected to the %s storage successfully", type));
         } catch (Exception e) {
-            logger.fatal("Could not connect to Swift.", e);
+            logger.fatal("Could not connect to the storage.", e);
             System.exit(7);
         }
 
+        if (Config.getMigrationThreads() > 0) {
+            try {
+                MigrationService.start(pool, storageManager, Config.getMigrationThreads(),
+                        Config.getMigrationMaxRetries(), Config.getMigrationRetryBackoff(),
+                        Config.getMigrationJobMaxAttempts());
+                logger.info("Migration service started");
+            } catch (Exception e) {
+                logger.fatal("Could not start the migration service.", e);
+                System.exit(4);
+            }
+        }
+
+        if (Config.getContainerPoolSize() > 0) {
+            try {
+                ContainerPool.start(pool, storageManager, Config.getContainerPoolSize(),
+                        Config.getContainerPoolLowWater());
+                logger.info("Container pool started");
+            } catch (Exception e) {
+                logger.fatal("Could not start the container pool.", e);
+                System.exit(4);
+            }
+        }
+
+        if (Config.getChunkCollectorInterval() > 0) {
+            try {
+                ChunkCollectorService.start(pool, storageManager, Config.getChunkCollectorInterval(),
+                        Config.getChunkCollectorGracePeriod(), Config.getChunkCollectorBatchSize(),
+                        Config.getChunkCollectorBatchDelay());
+                logger.info("Chunk collector started");
+            } catch (Exception e) {
+                logger.fatal("Could not start the chunk collector.", e);
+                System.exit(4);
+            }
+        }
 
         logger.info("Initializing the messaging middleware...");
         try {
             broker = new Broker(Config.getProperties());
-            syncService = new SyncServiceImp(broker, pool);
+            publisher = new NotificationPublisher(broker, Config.getNotificationsPublisherThreads(),
+                    Config.getNotificationsPublisherQueueSize(), Config.getNotificationsCoalesceWindow(),
+                    Config.getNotificationsCoalesceMaxItems());
+            syncService = new SyncServiceImp(broker, pool, publisher);
             logger.info("Messaging middleware initialization succeeded");
         } catch (Exception e) {
             logger.error("Could not initialize ObjectMQ.", e);
@@ -137,11 +181,30 @@ public class SyncServiceDaemon implements Daemon {
             logger.fatal("Could not initialize XMLRPC.", e);
             System.exit(6);
         }
+
+        if (Config.getHttpEnabled()) {
+            logger.info("Initializing HTTP server...");
+            try {
+                launchHttp();
+                logger.info("HTTP server initialization succeded");
+            } catch (Exception e) {
+                logger.fatal("Could not initialize the HTTP server.", e);
+                System.exit(6);
+            }
+        }
     }
 
     @Override
     public void stop() throws Exception {
         try {
+            if (httpServer != null) {
+                httpServer.stop();
+                httpDispatcher.shutdown();
+            }
+            publisher.shutdown();
+            MigrationService.stop();
+            ContainerPool.stop();
+            ChunkCollectorService.stop();
             broker.stopBroker();
         } catch (Exception e) {
             logger.fatal("Error stoping StackSync Server.", e);
@@ -156,11 +219,25 @@ public class SyncServiceDaemon implements Daemon {
 
     private static void launchXmlRpc() throws Exception {
         xmlRpcServer = new XmlRpcSyncServer(Constants.XMLRPC_PORT);
-        xmlRpcServer.addHandler("XmlRpcSyncHandler", new XmlRpcSyncHandler(
-                broker, pool));
+        xmlRpcHandler = new XmlRpcSyncHandler(publisher, pool);
+        xmlRpcServer.addHandler("XmlRpcSyncHandler", xmlRpcHandler);
         xmlRpcServer.serve_forever();
     }
 
+    private static void launchHttp() throws Exception {
+        ResponseCompressor compressor = null;
+        if (Config.getHttpCompression()) {
+            compressor = new ResponseCompressor(Config.getHttpCompressionThreshold(),
+                    Config.getHttpCompressionLevel(), Config.getHttpWorkerThreads());
+        }
+
+        httpDispatcher = new SyncHandlerDispatcher(xmlRpcHandler);
+        httpServer = new HttpJsonServer(Config.getHttpPort(), httpDispatcher,
+                Config.getHttpWorkerThreads(), Config.getHttpQueueSize(),
+                Config.getHttpMaxRequestBytes(), Config.getHttpKeepAliveTimeout(), compressor);
+        httpServer.start();
+    }
+
     private static String getVersion() {
         String path = "/version.properties";
         InputStream stream = Config.class.getResourceAsStream(path);
@@ -0,0 +1,17 @@
+package com.stacksync.syncservice.db;
+
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+
+public interface ContainerPoolDAO {
+
+	public void add(String container) throws DAOException;
+
+	/**
+	 * Removes the oldest container from the pool and returns it, or null if
+	 * there is none left.
+	 */
+	public String take() throws DAOException;
+
+	public int count() throws DAOException;
+
+}
@@ -2,9 +2,11 @@ package com.stacksync.syncservice.db;
 
 import java.sql.Connection;
 
+import com.stacksync.syncservice.db.postgresql.PostgresqlContainerPoolDAO;
 import com.stacksync.syncservice.db.postgresql.PostgresqlDeviceDAO;
 import com.stacksync.syncservice.db.postgresql.PostgresqlItemDAO;
 import com.stacksync.syncservice.db.postgresql.PostgresqlItemVersionDao;
+import com.stacksync.syncservice.db.postgresql.PostgresqlMigrationJobDAO;
 import com.stacksync.syncservice.db.postgresql.PostgresqlUserDAO;
 import com.stacksync.syncservice.db.postgresql.PostgresqlWorkspaceDAO;
 
@@ -36,6 +38,14 @@ public class DAOFactory {
 		return new PostgresqlDeviceDAO(connection);
 	}
 
+	public MigrationJobDAO getMigrationJobDAO(Connection connection) {
+		return new PostgresqlMigrationJobDAO(connection);
+	}
+
+	public ContainerPoolDAO getContainerPoolDAO(Connection connection) {
+		return new PostgresqlContainerPoolDAO(connection);
+	}
+
 	public String getType() {
 		return type;
 	}
@@ -292,6 +292,7 @@ public final class DAOUtil {
 		user.setId(UUID.fromString(result.getString("id")));
 		user.setName(result.getString("name"));
 		user.setEmail(result.getString("email"));
+		user.setSwiftUser(result.getString("swift_user"));
 		
 		Workspace workspace = new Workspace();
 		workspace.setId(UUID.fromString(result.getString("workspace_id")));
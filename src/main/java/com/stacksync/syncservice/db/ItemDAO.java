@@ -1,6 +1,7 @@
 package com.stacksync.syncservice.db;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.stacksync.commons.models.Item;
@@ -27,8 +28,44 @@ public interface ItemDAO {
 
 	public ItemMetadata findByUserId(UUID serverUserId, Boolean includeDeleted) throws DAOException;
 
+	public boolean existsChildWithName(Long parentId, UUID workspaceId, String filename) throws DAOException;
+
+	public boolean existsRootChildWithName(UUID userId, String filename) throws DAOException;
+
+	public List<ItemMetadata> findChildrenPage(Long parentId, UUID workspaceId, Boolean includeDeleted,
+			String afterFilename, Long afterId, int limit) throws DAOException;
+
+	public List<ItemMetadata> findRootChildrenPage(UUID userId, Boolean includeDeleted, String afterFilename,
+			Long afterId, int limit) throws DAOException;
+
+	public long countChildren(Long parentId, UUID workspaceId, Boolean includeDeleted, long limit)
+			throws DAOException;
+
+	public long countRootChildren(UUID userId, Boolean includeDeleted, long limit) throws DAOException;
+
 	public ItemMetadata findItemVersionsById(Long id) throws DAOException;
+
+	/**
+	 * Returns, for every given id that exists, whether the user can access
+	 * the item.
+	 */
+	public Map<Long, Boolean> findAccessByIds(UUID userId, List<Long> ids) throws DAOException;
+
+	public List<ItemMetadata> findByIds(List<Long> ids, Boolean includeChunks) throws DAOException;
 	
 	public List<String> migrateItem(Long itemId, UUID workspaceId) throws DAOException;
 
+	/**
+	 * Chunks of the latest versions of the item and its descendants.
+	 */
+	public List<String> findChunksToMigrate(Long itemId) throws DAOException;
+
+	/**
+	 * Writes a DELETED version for the item and all its non-deleted
+	 * descendants in a single statement. The returned metadata describe the
+	 * new versions, parents first, but carry the size of the version that was
+	 * deleted so the caller can update the quota.
+	 */
+	public List<ItemMetadata> deleteItemRecursively(Long itemId, UUID deviceId) throws DAOException;
+
 }
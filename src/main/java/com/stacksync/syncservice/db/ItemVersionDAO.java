@@ -22,4 +22,10 @@ public interface ItemVersionDAO {
 	public void update(ItemVersion itemVersion) throws DAOException;
 
 	public void delete(ItemVersion itemVersion) throws DAOException;
+
+	/**
+	 * Of the given chunks, the ones in a version of an item whose workspace
+	 * keeps chunks in the container.
+	 */
+	public List<String> findReferencedChunks(String container, List<String> chunkNames) throws DAOException;
 }
@@ -0,0 +1,41 @@
+package com.stacksync.syncservice.db;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+import com.stacksync.syncservice.migration.MigrationJob;
+
+public interface MigrationJobDAO {
+
+	public void add(MigrationJob job, List<String> chunks) throws DAOException;
+
+	/**
+	 * Adds the chunks that are not already part of the job.
+	 */
+	public void addChunks(UUID jobId, List<String> chunks) throws DAOException;
+
+	public List<MigrationJob> findUnfinished() throws DAOException;
+
+	/**
+	 * Returns null when the item is not being migrated.
+	 */
+	public MigrationJob findUnfinishedByItemId(Long itemId) throws DAOException;
+
+	public List<String> findChunksToCopy(UUID jobId) throws DAOException;
+
+	public List<String> findChunksToDelete(UUID jobId) throws DAOException;
+
+	public void setCopied(UUID jobId, List<String> chunks) throws DAOException;
+
+	public void setDeleted(UUID jobId, List<String> chunks) throws DAOException;
+
+	/**
+	 * Marks the chunks found in no container. They are kept with the job
+	 * once it is done.
+	 */
+	public void setMissing(UUID jobId, List<String> chunks) throws DAOException;
+
+	public void updateStatus(MigrationJob job) throws DAOException;
+
+}
@@ -30,4 +30,17 @@ public interface WorkspaceDAO {
 	
 	public List<UserWorkspace> getMembersById(UUID workspaceId) throws DAOException;
 
+	/**
+	 * Containers, besides its own, holding chunks of the workspace.
+	 */
+	public List<String> getContainers(UUID workspaceId) throws DAOException;
+
+	public void addContainers(UUID workspaceId, List<String> containers) throws DAOException;
+
+	/**
+	 * Containers of all the workspaces sorted by name, up to limit of them
+	 * after the given one.
+	 */
+	public List<String> findContainers(String afterContainer, int limit) throws DAOException;
+
 }
@@ -0,0 +1,72 @@
+package com.stacksync.syncservice.db.postgresql;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.syncservice.db.ContainerPoolDAO;
+import com.stacksync.syncservice.db.DAOError;
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+
+public class PostgresqlContainerPoolDAO extends PostgresqlDAO implements ContainerPoolDAO {
+
+	private static final Logger logger = Logger.getLogger(PostgresqlContainerPoolDAO.class.getName());
+	private static final int TAKE_ATTEMPTS = 3;
+
+	public PostgresqlContainerPoolDAO(Connection connection) {
+		super(connection);
+	}
+
+	@Override
+	public void add(String container) throws DAOException {
+		Object[] values = { container };
+
+		String query = "INSERT INTO container_pool (swift_container) VALUES (?)";
+
+		executeUpdate(query, values);
+	}
+
+	@Override
+	public String take() throws DAOException {
+		String query = "DELETE FROM container_pool WHERE swift_container = "
+				+ " (SELECT swift_container FROM container_pool ORDER BY created_at ASC LIMIT 1 FOR UPDATE) "
+				+ " RETURNING swift_container";
+
+		try {
+			// a container taken at the same time by another request is skipped
+			for (int attempt = 0; attempt < TAKE_ATTEMPTS; attempt++) {
+				ResultSet result = executeQuery(query, new Object[] {});
+				if (result.next()) {
+					return result.getString("swift_container");
+				}
+				if (count() == 0) {
+					break;
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return null;
+	}
+
+	@Override
+	public int count() throws DAOException {
+		String query = "SELECT count(*) AS containers FROM container_pool";
+
+		try {
+			ResultSet result = executeQuery(query, new Object[] {});
+			if (result.next()) {
+				return result.getInt("containers");
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return 0;
+	}
+}
@@ -1,10 +1,13 @@
 package com.stacksync.syncservice.db.postgresql;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.log4j.Logger;
@@ -367,6 +370,234 @@ public class PostgresqlItemDAO extends PostgresqlDAO implements ItemDAO {
 		return rootMetadata;
 	}
 
+	@Override
+	public boolean existsChildWithName(Long parentId, UUID workspaceId,
+			String filename) throws DAOException {
+		Object[] values = { workspaceId, parentId, filename };
+
+		String query = "SELECT 1 FROM item i "
+				+ " INNER JOIN item_version iv ON i.id = iv.item_id AND i.latest_version = iv.version "
+				+ " WHERE i.workspace_id = ?::uuid AND i.parent_id = ? AND i.filename = ? "
+				+ " AND iv.status <> 'DELETED' LIMIT 1";
+
+		try {
+			ResultSet result = executeQuery(query, values);
+			return result.next();
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	@Override
+	public boolean existsRootChildWithName(UUID userId, String filename)
+			throws DAOException {
+		Object[] values = { userId, filename };
+
+		String query = "SELECT 1 FROM workspace_user wu "
+				+ " INNER JOIN item i ON wu.workspace_id = i.workspace_id "
+				+ " INNER JOIN item_version iv ON i.id = iv.item_id AND i.latest_version = iv.version "
+				+ " WHERE wu.user_id = ?::uuid AND i.parent_id IS NULL AND i.filename = ? "
+				+ " AND iv.status <> 'DELETED' LIMIT 1";
+
+		try {
+			ResultSet result = executeQuery(query, values);
+			return result.next();
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	@Override
+	public List<ItemMetadata> findChildrenPage(Long parentId, UUID workspaceId,
+			Boolean includeDeleted, String afterFilename, Long afterId,
+			int limit) throws DAOException {
+
+		List<Object> values = new ArrayList<Object>();
+		values.add(workspaceId);
+		values.add(parentId);
+
+		String where = " WHERE i.workspace_id = ?::uuid AND i.parent_id = ? ";
+
+		return findChildrenPage(where, values, includeDeleted, afterFilename,
+				afterId, limit);
+	}
+
+	@Override
+	public List<ItemMetadata> findRootChildrenPage(UUID userId,
+			Boolean includeDeleted, String afterFilename, Long afterId,
+			int limit) throws DAOException {
+
+		List<Object> values = new ArrayList<Object>();
+		values.add(userId);
+
+		String where = " WHERE i.workspace_id IN "
+				+ " (SELECT wu.workspace_id FROM workspace_user wu WHERE wu.user_id = ?::uuid) "
+				+ " AND i.parent_id IS NULL ";
+
+		return findChildrenPage(where, values, includeDeleted, afterFilename,
+				afterId, limit);
+	}
+
+	@Override
+	public long countChildren(Long parentId, UUID workspaceId,
+			Boolean includeDeleted, long limit) throws DAOException {
+
+		Object[] values = { workspaceId, parentId, limit };
+
+		String where = " WHERE i.workspace_id = ?::uuid AND i.parent_id = ? ";
+
+		return countChildren(where, values, includeDeleted);
+	}
+
+	@Override
+	public long countRootChildren(UUID userId, Boolean includeDeleted,
+			long limit) throws DAOException {
+
+		Object[] values = { userId, limit };
+
+		String where = " WHERE i.workspace_id IN "
+				+ " (SELECT wu.workspace_id FROM workspace_user wu WHERE wu.user_id = ?::uuid) "
+				+ " AND i.parent_id IS NULL ";
+
+		return countChildren(where, values, includeDeleted);
+	}
+
+	private List<ItemMetadata> findChildrenPage(String where,
+			List<Object> values, Boolean includeDeleted, String afterFilename,
+			Long afterId, int limit) throws DAOException {
+
+		// Keyset pagination: continue right after the last (filename, id)
+		// returned, so every page is a range scan on the
+		// (workspace_id, parent_id, filename, id) index.
+		if (afterFilename != null && afterId != null) {
+			where += " AND (i.filename, i.id) > (?, ?) ";
+			values.add(afterFilename);
+			values.add(afterId);
+		}
+		if (!includeDeleted) {
+			where += " AND iv.status <> 'DELETED' ";
+		}
+		values.add(limit);
+
+		String query = "SELECT i.id AS item_id, i.parent_id, i.client_parent_file_version, "
+				+ " i.filename, iv.version, i.is_folder, "
+				+ " iv.device_id, i.workspace_id, iv.size, iv.status, i.mimetype, "
+				+ " iv.checksum, iv.modified_at, 2 AS level "
+				+ " FROM item i "
+				+ " INNER JOIN item_version iv ON i.id = iv.item_id AND i.latest_version = iv.version "
+				+ where
+				+ " ORDER BY i.filename ASC, i.id ASC "
+				+ " LIMIT ?";
+
+		List<ItemMetadata> children = new ArrayList<ItemMetadata>();
+
+		try {
+			ResultSet result = executeQuery(query, values.toArray());
+
+			while (result.next()) {
+				children.add(DAOUtil.getItemMetadataFromResultSet(result));
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return children;
+	}
+
+	private long countChildren(String where, Object[] values,
+			Boolean includeDeleted) throws DAOException {
+
+		if (!includeDeleted) {
+			where += " AND iv.status <> 'DELETED' ";
+		}
+
+		// Stop counting at the given limit, huge folders are not fully
+		// scanned.
+		String query = "SELECT count(*) AS total FROM ( "
+				+ " SELECT 1 FROM item i "
+				+ " INNER JOIN item_version iv ON i.id = iv.item_id AND i.latest_version = iv.version "
+				+ where
+				+ " LIMIT ? ) AS children";
+
+		try {
+			ResultSet result = executeQuery(query, values);
+			if (result.next()) {
+				return result.getLong("total");
+			}
+			return 0L;
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	@Override
+	public Map<Long, Boolean> findAccessByIds(UUID userId, List<Long> ids)
+			throws DAOException {
+
+		String query = "SELECT i.id, EXISTS ( "
+				+ "   SELECT 1 FROM workspace_user wu "
+				+ "   WHERE wu.workspace_id = i.workspace_id AND wu.user_id = ?::uuid "
+				+ " ) AS authorized "
+				+ " FROM item i "
+				+ " WHERE i.id = ANY(?)";
+
+		Map<Long, Boolean> access = new HashMap<Long, Boolean>();
+
+		try {
+			Object[] values = { userId, createIdArray(ids) };
+			ResultSet result = executeQuery(query, values);
+
+			while (result.next()) {
+				access.put(result.getLong("id"), result.getBoolean("authorized"));
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return access;
+	}
+
+	@Override
+	public List<ItemMetadata> findByIds(List<Long> ids, Boolean includeChunks)
+			throws DAOException {
+
+		String chunks = (includeChunks) ? ", get_chunks(iv.id) AS chunks" : "";
+
+		String query = "SELECT i.id AS item_id, i.parent_id, i.client_parent_file_version, "
+				+ " i.filename, iv.version, i.is_folder, "
+				+ " iv.device_id, i.workspace_id, iv.size, iv.status, i.mimetype, "
+				+ " iv.checksum, iv.modified_at, 1 AS level "
+				+ chunks
+				+ " FROM item i "
+				+ " INNER JOIN item_version iv ON i.id = iv.item_id AND i.latest_version = iv.version "
+				+ " WHERE i.id = ANY(?)";
+
+		List<ItemMetadata> items = new ArrayList<ItemMetadata>();
+
+		try {
+			Object[] values = { createIdArray(ids) };
+			ResultSet result = executeQuery(query, values);
+
+			while (result.next()) {
+				items.add(DAOUtil.getItemMetadataFromResultSet(result));
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return items;
+	}
+
+	private Array createIdArray(List<Long> ids) throws SQLException {
+		return connection.createArrayOf("int8", ids.toArray(new Long[ids.size()]));
+	}
+
 	@Override
 	public ItemMetadata findItemVersionsById(Long fileId) throws DAOException {
 		// TODO: check include_deleted
@@ -452,6 +683,81 @@ public class PostgresqlItemDAO extends PostgresqlDAO implements ItemDAO {
 		
 	}
 	
+	@Override
+	public List<String> findChunksToMigrate(Long itemId) throws DAOException {
+		try {
+			return getChunksToMigrate(itemId);
+		} catch (SQLException e) {
+			throw new DAOException(e);
+		}
+	}
+
+	@Override
+	public List<ItemMetadata> deleteItemRecursively(Long itemId, UUID deviceId)
+			throws DAOException {
+
+		Object[] values = { itemId, deviceId };
+
+		// Set-based delete: the subtree is walked once, a DELETED version is
+		// inserted for every live item and the latest_version pointers are
+		// moved, all in the same statement.
+		String query = "WITH RECURSIVE "
+				+ " subtree AS ( "
+				+ " SELECT i.id, ARRAY[i.id] AS level_array "
+				+ " FROM item i "
+				+ " WHERE i.id = ? "
+				+ " UNION ALL "
+				+ " SELECT i2.id, s.level_array || i2.id "
+				+ " FROM subtree s "
+				+ " JOIN item i2 ON i2.parent_id = s.id "
+				+ " ), "
+				+ " live AS ( "
+				+ " SELECT i.id AS item_id, i.latest_version, iv.checksum, iv.size AS previous_size "
+				+ " FROM subtree s "
+				+ " INNER JOIN item i ON i.id = s.id "
+				+ " INNER JOIN item_version iv ON i.id = iv.item_id AND i.latest_version = iv.version "
+				+ " WHERE iv.status <> 'DELETED' "
+				+ " ), "
+				+ " new_version AS ( "
+				+ " INSERT INTO item_version (item_id, device_id, version, checksum, status, size, modified_at, committed_at) "
+				+ " SELECT l.item_id, ?::uuid, l.latest_version + 1, l.checksum, 'DELETED', 0, now(), now() "
+				+ " FROM live l "
+				+ " RETURNING id, item_id, device_id, version, checksum, status, modified_at "
+				+ " ), "
+				+ " moved AS ( "
+				+ " UPDATE item i SET latest_version = nv.version "
+				+ " FROM new_version nv "
+				+ " WHERE i.id = nv.item_id "
+				+ " RETURNING i.id "
+				+ " ) "
+				+ " SELECT i.id AS item_id, i.parent_id, i.client_parent_file_version, "
+				+ " i.filename, nv.version, i.is_folder, "
+				+ " nv.device_id, i.workspace_id, l.previous_size AS size, nv.status, i.mimetype, "
+				+ " nv.checksum, nv.modified_at, array_upper(s.level_array, 1) AS level "
+				+ " FROM new_version nv "
+				+ " INNER JOIN live l ON l.item_id = nv.item_id "
+				+ " INNER JOIN subtree s ON s.id = nv.item_id "
+				+ " INNER JOIN item i ON i.id = nv.item_id "
+				+ " ORDER BY s.level_array ASC";
+
+		List<ItemMetadata> deleted = new ArrayList<ItemMetadata>();
+
+		try {
+			ResultSet result = executeQuery(query, values);
+
+			while (result.next()) {
+				ItemMetadata metadata = DAOUtil.getItemMetadataFromResultSet(result);
+				metadata.setChunks(new ArrayList<String>());
+				deleted.add(metadata);
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return deleted;
+	}
+
 	private List<String> getChunksToMigrate(Long itemId) throws DAOException, SQLException {
 		
 		Object[] values = { itemId };
@@ -1,5 +1,6 @@
 package com.stacksync.syncservice.db.postgresql;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -164,4 +165,34 @@ public class PostgresqlItemVersionDao extends PostgresqlDAO implements ItemVersi
 		return chunks;
 	}
 
+	@Override
+	public List<String> findReferencedChunks(String container, List<String> chunkNames) throws DAOException {
+		List<String> referenced = new ArrayList<String>();
+		if (chunkNames.isEmpty()) {
+			return referenced;
+		}
+
+		String query = "SELECT DISTINCT ivc.client_chunk_name FROM item_version_chunk ivc "
+				+ " INNER JOIN item_version iv ON iv.id = ivc.item_version_id "
+				+ " INNER JOIN item i ON i.id = iv.item_id "
+				+ " WHERE ivc.client_chunk_name = ANY(?::text[]) "
+				+ " AND i.workspace_id IN (SELECT id FROM workspace WHERE swift_container = ? "
+				+ " UNION SELECT workspace_id FROM workspace_container WHERE swift_container = ?)";
+
+		try {
+			Array names = connection.createArrayOf("text", chunkNames.toArray(new String[chunkNames.size()]));
+			Object[] values = { names, container, container };
+
+			ResultSet result = executeQuery(query, values);
+			while (result.next()) {
+				referenced.add(result.getString("client_chunk_name"));
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return referenced;
+	}
+
 }
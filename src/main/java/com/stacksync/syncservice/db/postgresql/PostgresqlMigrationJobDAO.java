@@ -0,0 +1,199 @@
+package com.stacksync.syncservice.db.postgresql;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.syncservice.db.DAOError;
+import com.stacksync.syncservice.db.MigrationJobDAO;
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+import com.stacksync.syncservice.exceptions.dao.NoRowsAffectedDAOException;
+import com.stacksync.syncservice.migration.MigrationJob;
+import com.stacksync.syncservice.migration.MigrationJob.Status;
+
+public class PostgresqlMigrationJobDAO extends PostgresqlDAO implements MigrationJobDAO {
+
+	private static final Logger logger = Logger.getLogger(PostgresqlMigrationJobDAO.class.getName());
+
+	public PostgresqlMigrationJobDAO(Connection connection) {
+		super(connection);
+	}
+
+	@Override
+	public void add(MigrationJob job, List<String> chunks) throws DAOException {
+		Object[] values = { job.getId().toString(), job.getItemId(), job.getSourceWorkspaceId().toString(),
+				job.getSourceContainer(), job.getDestinationWorkspaceId().toString(), job.getDestinationContainer(),
+				job.isDeleteSource(), job.getStatus().toString() };
+
+		String query = "INSERT INTO migration_job (id, item_id, source_workspace_id, source_container, "
+				+ " destination_workspace_id, destination_container, delete_source, status) "
+				+ " VALUES (?::uuid, ?, ?::uuid, ?, ?::uuid, ?, ?, ?)";
+
+		executeUpdate(query, values);
+		addChunks(job.getId(), chunks);
+	}
+
+	@Override
+	public void addChunks(UUID jobId, List<String> chunks) throws DAOException {
+		if (chunks.isEmpty()) {
+			return;
+		}
+
+		String query = "INSERT INTO migration_job_chunk (job_id, client_chunk_name) "
+				+ " SELECT DISTINCT ?::uuid, c.name FROM unnest(?::text[]) AS c(name) "
+				+ " WHERE NOT EXISTS (SELECT 1 FROM migration_job_chunk m "
+				+ " WHERE m.job_id = ?::uuid AND m.client_chunk_name = c.name)";
+
+		try {
+			Object[] values = { jobId.toString(), createNameArray(chunks), jobId.toString() };
+			executeUpdate(query, values);
+		} catch (NoRowsAffectedDAOException e) {
+			// all the chunks were already there
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	@Override
+	public List<MigrationJob> findUnfinished() throws DAOException {
+		Object[] values = { Status.DONE.toString(), Status.FAILED.toString() };
+
+		String query = "SELECT * FROM migration_job WHERE status NOT IN (?, ?) ORDER BY created_at ASC";
+
+		List<MigrationJob> jobs = new ArrayList<MigrationJob>();
+		try {
+			ResultSet result = executeQuery(query, values);
+			while (result.next()) {
+				jobs.add(mapJob(result));
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return jobs;
+	}
+
+	@Override
+	public MigrationJob findUnfinishedByItemId(Long itemId) throws DAOException {
+		Object[] values = { itemId, Status.DONE.toString(), Status.FAILED.toString() };
+
+		String query = "SELECT * FROM migration_job WHERE item_id = ? AND status NOT IN (?, ?)";
+
+		try {
+			ResultSet result = executeQuery(query, values);
+			if (result.next()) {
+				return mapJob(result);
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return null;
+	}
+
+	@Override
+	public List<String> findChunksToCopy(UUID jobId) throws DAOException {
+		String query = "SELECT client_chunk_name FROM migration_job_chunk WHERE job_id = ?::uuid AND NOT copied";
+		return findChunks(query, jobId);
+	}
+
+	@Override
+	public List<String> findChunksToDelete(UUID jobId) throws DAOException {
+		String query = "SELECT client_chunk_name FROM migration_job_chunk WHERE job_id = ?::uuid AND NOT deleted";
+		return findChunks(query, jobId);
+	}
+
+	@Override
+	public void setCopied(UUID jobId, List<String> chunks) throws DAOException {
+		String query = "UPDATE migration_job_chunk SET copied = true "
+				+ " WHERE job_id = ?::uuid AND client_chunk_name = ANY(?::text[])";
+		updateChunks(query, jobId, chunks);
+	}
+
+	@Override
+	public void setDeleted(UUID jobId, List<String> chunks) throws DAOException {
+		String query = "UPDATE migration_job_chunk SET deleted = true "
+				+ " WHERE job_id = ?::uuid AND client_chunk_name = ANY(?::text[])";
+		updateChunks(query, jobId, chunks);
+	}
+
+	@Override
+	public void setMissing(UUID jobId, List<String> chunks) throws DAOException {
+		String query = "UPDATE migration_job_chunk SET copied = true, missing = true "
+				+ " WHERE job_id = ?::uuid AND client_chunk_name = ANY(?::text[])";
+		updateChunks(query, jobId, chunks);
+	}
+
+	@Override
+	public void updateStatus(MigrationJob job) throws DAOException {
+		Object[] values = { job.getStatus().toString(), job.getError(), job.getId().toString() };
+
+		String query = "UPDATE migration_job SET status = ?, error = ?, updated_at = now() WHERE id = ?::uuid";
+
+		executeUpdate(query, values);
+
+		if (job.getStatus() == Status.DONE) {
+			// the chunk list is only needed while the job runs
+			try {
+				executeUpdate("DELETE FROM migration_job_chunk WHERE job_id = ?::uuid AND NOT missing",
+						new Object[] { job.getId().toString() });
+			} catch (NoRowsAffectedDAOException e) {
+			}
+		}
+	}
+
+	private List<String> findChunks(String query, UUID jobId) throws DAOException {
+		List<String> chunks = new ArrayList<String>();
+		try {
+			ResultSet result = executeQuery(query, new Object[] { jobId.toString() });
+			while (result.next()) {
+				chunks.add(result.getString("client_chunk_name"));
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+		return chunks;
+	}
+
+	private void updateChunks(String query, UUID jobId, List<String> chunks) throws DAOException {
+		if (chunks.isEmpty()) {
+			return;
+		}
+
+		try {
+			Object[] values = { jobId.toString(), createNameArray(chunks) };
+			executeUpdate(query, values);
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	private Array createNameArray(List<String> names) throws SQLException {
+		return connection.createArrayOf("text", names.toArray(new String[names.size()]));
+	}
+
+	private MigrationJob mapJob(ResultSet result) throws SQLException {
+		MigrationJob job = new MigrationJob();
+		job.setId(UUID.fromString(result.getString("id")));
+		job.setItemId(result.getLong("item_id"));
+		job.setSourceWorkspaceId(UUID.fromString(result.getString("source_workspace_id")));
+		job.setSourceContainer(result.getString("source_container"));
+		job.setDestinationWorkspaceId(UUID.fromString(result.getString("destination_workspace_id")));
+		job.setDestinationContainer(result.getString("destination_container"));
+		job.setDeleteSource(result.getBoolean("delete_source"));
+		job.setStatus(Status.valueOf(result.getString("status")));
+		job.setError(result.getString("error"));
+		return job;
+	}
+}
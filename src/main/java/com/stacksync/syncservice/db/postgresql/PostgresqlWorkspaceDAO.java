@@ -1,5 +1,6 @@
 package com.stacksync.syncservice.db.postgresql;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -18,6 +19,7 @@ import com.stacksync.syncservice.db.DAOUtil;
 import com.stacksync.syncservice.db.WorkspaceDAO;
 import com.stacksync.syncservice.exceptions.dao.DAOException;
 import com.stacksync.syncservice.exceptions.dao.NoResultReturnedDAOException;
+import com.stacksync.syncservice.exceptions.dao.NoRowsAffectedDAOException;
 
 public class PostgresqlWorkspaceDAO extends PostgresqlDAO implements WorkspaceDAO {
 
@@ -156,6 +158,72 @@ public class PostgresqlWorkspaceDAO extends PostgresqlDAO implements WorkspaceDA
 		executeUpdate(query, values);
 	}
 
+	@Override
+	public List<String> getContainers(UUID workspaceId) throws DAOException {
+		Object[] values = { workspaceId.toString() };
+
+		String query = "SELECT swift_container FROM workspace_container WHERE workspace_id = ?::uuid";
+
+		List<String> containers = new ArrayList<String>();
+		try {
+			ResultSet result = executeQuery(query, values);
+			while (result.next()) {
+				containers.add(result.getString("swift_container"));
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return containers;
+	}
+
+	@Override
+	public void addContainers(UUID workspaceId, List<String> containers) throws DAOException {
+		if (containers.isEmpty()) {
+			return;
+		}
+
+		String query = "INSERT INTO workspace_container (workspace_id, swift_container) "
+				+ " SELECT DISTINCT ?::uuid, c.name FROM unnest(?::text[]) AS c(name) "
+				+ " WHERE NOT EXISTS (SELECT 1 FROM workspace_container wc "
+				+ " WHERE wc.workspace_id = ?::uuid AND wc.swift_container = c.name)";
+
+		try {
+			Array names = connection.createArrayOf("text", containers.toArray(new String[containers.size()]));
+			Object[] values = { workspaceId.toString(), names, workspaceId.toString() };
+			executeUpdate(query, values);
+		} catch (NoRowsAffectedDAOException e) {
+			// the workspace already had them
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	@Override
+	public List<String> findContainers(String afterContainer, int limit) throws DAOException {
+		Object[] values = { afterContainer == null ? "" : afterContainer, limit };
+
+		String query = "SELECT c.swift_container FROM ( "
+				+ " SELECT swift_container FROM workspace WHERE swift_container IS NOT NULL "
+				+ " UNION SELECT swift_container FROM workspace_container) c "
+				+ " WHERE c.swift_container > ? ORDER BY c.swift_container LIMIT ?";
+
+		List<String> containers = new ArrayList<String>();
+		try {
+			ResultSet result = executeQuery(query, values);
+			while (result.next()) {
+				containers.add(result.getString("swift_container"));
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			throw new DAOException(DAOError.INTERNAL_SERVER_ERROR);
+		}
+
+		return containers;
+	}
+
 	private Workspace mapWorkspace(ResultSet result) throws SQLException {
 		Workspace workspace = new Workspace();
 		workspace.setId(UUID.fromString(result.getString("id")));
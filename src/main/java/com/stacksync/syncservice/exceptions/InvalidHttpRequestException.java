@@ -0,0 +1,22 @@
+package com.stacksync.syncservice.exceptions;
+
+public class InvalidHttpRequestException extends Exception {
+
+	private static final long serialVersionUID = -2906178314326254467L;
+	private final int status;
+	private final String reason;
+
+	public InvalidHttpRequestException(int status, String reason, String message) {
+		super(message);
+		this.status = status;
+		this.reason = reason;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+}
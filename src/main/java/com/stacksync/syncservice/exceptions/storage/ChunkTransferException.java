@@ -0,0 +1,15 @@
+package com.stacksync.syncservice.exceptions.storage;
+
+public class ChunkTransferException extends Exception {
+
+	private static final long serialVersionUID = 3174859720453125146L;
+
+	public ChunkTransferException(String message) {
+		super(message);
+	}
+
+	public ChunkTransferException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
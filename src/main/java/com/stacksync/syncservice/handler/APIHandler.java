@@ -1,6 +1,7 @@
 package com.stacksync.syncservice.handler;
 
 import java.util.List;
+import java.util.UUID;
 
 import com.stacksync.commons.models.Item;
 import com.stacksync.commons.models.ItemMetadata;
@@ -10,15 +11,31 @@ import com.stacksync.syncservice.rpc.messages.APICreateFolderResponse;
 import com.stacksync.syncservice.rpc.messages.APIDeleteResponse;
 import com.stacksync.syncservice.rpc.messages.APIGetFolderMembersResponse;
 import com.stacksync.syncservice.rpc.messages.APIGetMetadata;
+import com.stacksync.syncservice.rpc.messages.APIGetMetadataBatch;
 import com.stacksync.syncservice.rpc.messages.APIGetVersions;
 import com.stacksync.syncservice.rpc.messages.APIGetWorkspaceInfoResponse;
 import com.stacksync.syncservice.rpc.messages.APIRestoreMetadata;
 import com.stacksync.syncservice.rpc.messages.APIShareFolderResponse;
 import com.stacksync.syncservice.rpc.messages.APIUnshareFolderResponse;
+import com.stacksync.syncservice.rpc.messages.APIWaitForChangesResponse;
 
 public interface APIHandler {
 	
 	public APIGetMetadata getMetadata(User user, Long fileId, Boolean includeChunks, Long version, Boolean isFolder);
+
+	public APIGetMetadata getMetadata(User user, Long fileId, Boolean includeChunks, Long version, Boolean isFolder,
+			String etag);
+
+	public APIGetMetadataBatch getMetadataBatch(User user, List<Long> itemIds, Boolean includeChunks);
+
+	public APIGetMetadata getFolderContent(User user, Long folderId, Boolean includeDeleted);
+
+	public APIGetMetadata getFolderContent(User user, Long folderId, Boolean includeDeleted, String etag);
+
+	public APIGetMetadata getFolderContent(User user, Long folderId, Boolean includeDeleted, Integer pageSize,
+			String cursor);
+
+	public APIWaitForChangesResponse getWorkspaceRevision(User user, UUID workspaceId, Long sinceRevision);
 	
 	public APICommitResponse createFile(User user, ItemMetadata fileToSave);
 	
@@ -0,0 +1,188 @@
+package com.stacksync.syncservice.handler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.stacksync.commons.models.ItemMetadata;
+import com.stacksync.syncservice.util.Config;
+
+/**
+ * Caches the getChanges result of a workspace. It is read once per
+ * workspace revision (see {@link WorkspaceRevisions}) and the same list is
+ * handed out to every device asking for the changes of that revision.
+ *
+ * Entries are evicted in LRU order when their estimated size exceeds the
+ * configured memory budget.
+ *
+ * The revisions only count the commits of this process, so the cache is off
+ * by default and must only be enabled with a single server per database.
+ */
+public class ChangesCache {
+
+    // rough heap usage of an item and of a chunk name, besides the strings
+    private static final int ITEM_BYTES = 400;
+    private static final int CHUNK_BYTES = 100;
+
+    private static ChangesCache instance = null;
+
+    private final LinkedHashMap<UUID, Entry> entries;
+    private final WorkspaceRevisions revisions;
+    private final long maxBytes;
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private ChangesCache() {
+        this.entries = new LinkedHashMap<UUID, Entry>(16, 0.75f, true);
+        this.revisions = WorkspaceRevisions.getInstance();
+        this.maxBytes = Config.getChangesCacheMaxBytes();
+        this.currentBytes = 0L;
+    }
+
+    public static synchronized ChangesCache getInstance() {
+        if (instance == null) {
+            instance = new ChangesCache();
+        }
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Returns the cached entry of the workspace if it was built for its
+     * current revision, null otherwise.
+     */
+    public Entry get(UUID workspaceId) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(workspaceId);
+        }
+
+        if (entry == null || entry.getRevision() != revisions.getRevision(workspaceId)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Stores the items read at the given revision. The entry is only kept if
+     * the workspace has not changed in the meantime.
+     */
+    public Entry put(UUID workspaceId, long revision, List<ItemMetadata> items) {
+        if (!isEnabled()) {
+            return new Entry(revision, items, 0L);
+        }
+
+        Entry entry = new Entry(revision, new ArrayList<ItemMetadata>(items), estimateSize(items));
+        if (entry.getSize() > maxBytes) {
+            return entry;
+        }
+
+        synchronized (this) {
+            if (revision != revisions.getRevision(workspaceId)) {
+                return entry;
+            }
+
+            Entry previous = entries.put(workspaceId, entry);
+            if (previous != null) {
+                currentBytes -= previous.getSize();
+            }
+            currentBytes += entry.getSize();
+
+            Iterator<Map.Entry<UUID, Entry>> it = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && it.hasNext()) {
+                Map.Entry<UUID, Entry> eldest = it.next();
+                currentBytes -= eldest.getValue().getSize();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+
+        return entry;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ChangesCache[entries=%d, bytes=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                entries.size(), currentBytes, maxBytes, hits.get(), misses.get(), evictions.get());
+    }
+
+    private long estimateSize(List<ItemMetadata> items) {
+        long size = 0L;
+        for (ItemMetadata item : items) {
+            size += ITEM_BYTES + 2L * length(item.getFilename()) + 2L * length(item.getMimetype());
+            if (item.getChunks() != null) {
+                size += (long) CHUNK_BYTES * item.getChunks().size();
+            }
+        }
+        return size;
+    }
+
+    private int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    public static class Entry {
+
+        private final long revision;
+        private final List<ItemMetadata> items;
+        private final long size;
+
+        private Entry(long revision, List<ItemMetadata> items, long size) {
+            this.revision = revision;
+            this.items = items;
+            this.size = size;
+        }
+
+        public long getRevision() {
+            return revision;
+        }
+
+        /**
+         * Shared between requesters, must not be modified.
+         */
+        public List<ItemMetadata> getItems() {
+            return items;
+        }
+
+        /**
+         * Estimated bytes taken by the items.
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+}
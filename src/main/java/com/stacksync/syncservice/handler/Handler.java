@@ -6,6 +6,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
@@ -22,10 +25,12 @@ import com.stacksync.commons.models.UserWorkspace;
 import com.stacksync.commons.models.Workspace;
 import com.stacksync.commons.notifications.CommitNotification;
 import com.stacksync.syncservice.db.ConnectionPool;
+import com.stacksync.syncservice.db.ContainerPoolDAO;
 import com.stacksync.syncservice.db.DAOFactory;
 import com.stacksync.syncservice.db.DeviceDAO;
 import com.stacksync.syncservice.db.ItemDAO;
 import com.stacksync.syncservice.db.ItemVersionDAO;
+import com.stacksync.syncservice.db.MigrationJobDAO;
 import com.stacksync.syncservice.db.UserDAO;
 import com.stacksync.syncservice.db.WorkspaceDAO;
 import com.stacksync.syncservice.exceptions.CommitExistantVersion;
@@ -35,6 +40,11 @@ import com.stacksync.syncservice.exceptions.dao.DAOException;
 import com.stacksync.syncservice.exceptions.dao.NoResultReturnedDAOException;
 import com.stacksync.syncservice.exceptions.storage.NoStorageManagerAvailable;
 import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
+import com.stacksync.syncservice.migration.MigrationJob;
+import com.stacksync.syncservice.migration.MigrationService;
+import com.stacksync.syncservice.storage.AsyncStorageManager;
+import com.stacksync.syncservice.storage.BulkDeleteResult;
+import com.stacksync.syncservice.storage.ContainerPool;
 import com.stacksync.syncservice.storage.StorageFactory;
 import com.stacksync.syncservice.storage.StorageManager;
 import com.stacksync.syncservice.storage.StorageManager.StorageType;
@@ -49,7 +59,10 @@ public class Handler {
     protected DeviceDAO deviceDao;
     protected ItemDAO itemDao;
     protected ItemVersionDAO itemVersionDao;
+    protected MigrationJobDAO migrationJobDao;
+    protected ContainerPoolDAO containerPoolDao;
     protected StorageManager storageManager;
+    protected AsyncStorageManager asyncStorageManager;
 
     public enum Status {
 
@@ -68,13 +81,11 @@ public class Handler {
         userDao = factory.getUserDao(connection);
         itemDao = factory.getItemDAO(connection);
         itemVersionDao = factory.getItemVersionDAO(connection);
-        StorageType type;
-        if (Config.getSwiftKeystoneProtocol().equals("http")) {
-            type = StorageType.SWIFT;
-        } else {
-            type = StorageType.SWIFT_SSL;
-        }
+        migrationJobDao = factory.getMigrationJobDAO(connection);
+        containerPoolDao = factory.getContainerPoolDAO(connection);
+        StorageType type = StorageFactory.getStorageType();
         storageManager = StorageFactory.getStorageManager(type);
+        asyncStorageManager = StorageFactory.getAsyncStorageManager(type);
     }
 
     public CommitNotification doCommit(User user, Workspace workspace, Device device, List<ItemMetadata> items)
@@ -146,6 +157,8 @@ public class Handler {
             responseObjects.add(new CommitInfo(item.getVersion(), committed, objectResponse));
         }
 
+        updateRevision(workspace);
+
         return new CommitNotification(null, responseObjects, user.getQuotaLimit(), user.getQuotaUsedLogical());
     }
 
@@ -175,6 +188,8 @@ public class Handler {
             throw new ShareProposalNotCreatedException("No folder found with the given ID.");
         }
 
+        checkNotMigrating(item);
+
         // Get the source workspace
         Workspace sourceWorkspace;
         try {
@@ -216,7 +231,11 @@ public class Handler {
 
         } else {
             // Create the new workspace
-            String container = UUID.randomUUID().toString();
+            String container = takePooledContainer();
+            boolean pooled = container != null;
+            if (!pooled) {
+                container = UUID.randomUUID().toString();
+            }
 
             workspace = new Workspace();
             workspace.setShared(true);
@@ -228,55 +247,39 @@ public class Handler {
             workspace.setSwiftUrl(Config.getSwiftUrl() + "/" + user.getSwiftAccount());
 
             // Create container in Swift
-            try {
-                storageManager.createNewWorkspace(workspace);
-            } catch (Exception e) {
-                logger.error(e);
-                throw new ShareProposalNotCreatedException(e);
+            if (!pooled) {
+                try {
+                    storageManager.createNewWorkspace(workspace);
+                } catch (Exception e) {
+                    logger.error(e);
+                    throw new ShareProposalNotCreatedException(e);
+                }
             }
 
-            // Save the workspace to the DB
+            // Save the workspace to the DB, with its owner, in a single
+            // transaction so no workspace refers to a returned container
             try {
-                workspaceDAO.add(workspace);
-                // add the owner to the workspace
-                workspaceDAO.addUser(user, workspace);
+                beginTransaction();
+                try {
+                    workspaceDAO.add(workspace);
+                    workspaceDAO.addUser(user, workspace);
+                    commitTransaction();
+                } catch (DAOException e) {
+                    rollbackTransaction();
+                    throw e;
+                }
 
             } catch (DAOException e) {
                 logger.error(e);
-                throw new ShareProposalNotCreatedException(e);
-            }
-
-            // Grant user to container in Swift
-            try {
-                storageManager.grantUserToWorkspace(user, user, workspace);
-            } catch (Exception e) {
-                logger.error(e);
+                if (pooled) {
+                    // nobody has been granted the container yet
+                    returnPooledContainer(container);
+                }
                 throw new ShareProposalNotCreatedException(e);
             }
 
             // Migrate files to new workspace
-            List<String> chunks;
-            try {
-                chunks = itemDao.migrateItem(item.getId(), workspace.getId());
-            } catch (Exception e) {
-                logger.error(e);
-                throw new ShareProposalNotCreatedException(e);
-            }
-
-            // Move chunks to new container
-            for (String chunkName : chunks) {
-                try {
-                    storageManager.copyChunk(sourceWorkspace, workspace, chunkName);
-                    storageManager.deleteChunk(sourceWorkspace, chunkName);
-                } catch (ObjectNotFoundException e) {
-                    logger.error(String.format(
-                            "Chunk %s not found in container %s. Could not migrate to container %s.", chunkName,
-                            sourceWorkspace.getSwiftContainer(), workspace.getSwiftContainer()), e);
-                } catch (Exception e) {
-                    logger.error(e);
-                    throw new ShareProposalNotCreatedException(e);
-                }
-            }
+            migrateFolder(item, sourceWorkspace, workspace, false);
         }
 
         // Add the addressees to the workspace
@@ -289,14 +292,14 @@ public class Handler {
                 logger.error(String.format("An error ocurred when adding the user '%s' to workspace '%s'",
                         addressee.getId(), workspace.getId()), e);
             }
+        }
 
-            // Grant the user to container in Swift
-            try {
-                storageManager.grantUserToWorkspace(user, addressee, workspace);
-            } catch (Exception e) {
-                logger.error(e);
-                throw new ShareProposalNotCreatedException(e);
-            }
+        // Grant the owner and the members the container in Swift
+        try {
+            setWorkspaceUsers(user, workspace, workspaceDAO.getMembersById(workspace.getId()));
+        } catch (DAOException e) {
+            logger.error(e);
+            throw new ShareProposalNotCreatedException(e);
         }
 
         return workspace;
@@ -329,6 +332,8 @@ public class Handler {
             throw new ShareProposalNotCreatedException("No folder found with the given ID.");
         }
 
+        checkNotMigrating(item);
+
         // Get the workspace
         Workspace sourceWorkspace;
         try {
@@ -405,44 +410,25 @@ public class Handler {
                 throw new ShareProposalNotCreatedException("Could not get default workspace");
             }
 
-            // Migrate files to new workspace
-            List<String> chunks;
-            try {
-                chunks = itemDao.migrateItem(item.getId(), defaultWorkspace.getId());
-            } catch (Exception e) {
-                logger.error(e);
-                throw new ShareProposalNotCreatedException(e);
-            }
-
-            // Move chunks to new container
-            for (String chunkName : chunks) {
-                try {
-                    storageManager.copyChunk(sourceWorkspace, defaultWorkspace, chunkName);
-                    storageManager.deleteChunk(sourceWorkspace, chunkName);
-                } catch (ObjectNotFoundException e) {
-                    logger.error(String.format(
-                            "Chunk %s not found in container %s. Could not migrate to container %s.", chunkName,
-                            sourceWorkspace.getSwiftContainer(), defaultWorkspace.getSwiftContainer()), e);
-                } catch (Exception e) {
-                    logger.error(e);
-                    throw new ShareProposalNotCreatedException(e);
+            if (Config.getMigrationUnshareInPlace()) {
+                unshareInPlace(user, item, sourceWorkspace, defaultWorkspace, workspaceMembers);
+            } else {
+                // The workspace is deleted once its files are moved, its
+                // members lose the access to it and to its container right
+                // away
+                for (User userToRemove : usersToRemove) {
+                    try {
+                        workspaceDAO.deleteUser(userToRemove, sourceWorkspace);
+                    } catch (DAOException e) {
+                        logger.error(e);
+                        throw new ShareProposalNotCreatedException(e);
+                    }
                 }
-            }
 
-            // delete workspace
-            try {
-                workspaceDAO.delete(sourceWorkspace.getId());
-            } catch (DAOException e) {
-                logger.error(e);
-                throw new ShareProposalNotCreatedException(e);
-            }
+                setWorkspaceUsers(user, sourceWorkspace, workspaceMembers);
 
-            // delete container from swift
-            try {
-                storageManager.deleteWorkspace(sourceWorkspace);
-            } catch (Exception e) {
-                logger.error(e);
-                throw new ShareProposalNotCreatedException(e);
+                // Migrate files to the default workspace and delete the shared one
+                migrateFolder(item, sourceWorkspace, defaultWorkspace, true);
             }
 
             response = new UnshareData(usersToRemove, sourceWorkspace, true);
@@ -457,14 +443,9 @@ public class Handler {
                     logger.error(e);
                     throw new ShareProposalNotCreatedException(e);
                 }
-
-                try {
-                    storageManager.removeUserToWorkspace(user, userToRemove, sourceWorkspace);
-                } catch (Exception e) {
-                    logger.error(e);
-                    throw new ShareProposalNotCreatedException(e);
-                }
             }
+
+            setWorkspaceUsers(user, sourceWorkspace, workspaceMembers);
             response = new UnshareData(usersToRemove, sourceWorkspace, false);
 
         }
@@ -495,9 +476,252 @@ public class Handler {
         return this.connection;
     }
 
+    /**
+     * Must be called after modifying the items of a workspace so that cached
+     * data derived from them is not served anymore.
+     */
+    protected void updateRevision(Workspace workspace) {
+        WorkspaceRevisions.getInstance().increment(workspace.getId());
+    }
+
     /*
      * Private functions
      */
+    /**
+     * Moves the files to the default workspace without moving their chunks.
+     * The container of the shared workspace is kept, only the owner can read
+     * it, and it is added to the containers of the default workspace.
+     */
+    private void unshareInPlace(User user, Item item, Workspace sourceWorkspace, Workspace defaultWorkspace,
+            List<UserWorkspace> remainingMembers) throws ShareProposalNotCreatedException {
+
+        setWorkspaceUsers(user, sourceWorkspace, remainingMembers);
+
+        try {
+            List<String> containers = new ArrayList<String>();
+            containers.add(sourceWorkspace.getSwiftContainer());
+            containers.addAll(workspaceDAO.getContainers(sourceWorkspace.getId()));
+
+            beginTransaction();
+            try {
+                itemDao.migrateItem(item.getId(), defaultWorkspace.getId());
+                workspaceDAO.addContainers(defaultWorkspace.getId(), containers);
+                workspaceDAO.delete(sourceWorkspace.getId());
+                commitTransaction();
+            } catch (DAOException e) {
+                rollbackTransaction();
+                throw e;
+            }
+        } catch (DAOException e) {
+            logger.error(e);
+            throw new ShareProposalNotCreatedException(e);
+        }
+
+        updateRevision(sourceWorkspace);
+        updateRevision(defaultWorkspace);
+    }
+
+    /**
+     * The workspace container followed by the other containers holding
+     * chunks of the workspace.
+     */
+    private List<Workspace> getChunkSources(Workspace workspace) throws DAOException {
+        List<Workspace> sources = new ArrayList<Workspace>();
+        sources.add(workspace);
+        for (String container : workspaceDAO.getContainers(workspace.getId())) {
+            Workspace source = new Workspace(workspace.getId());
+            source.setSwiftContainer(container);
+            sources.add(source);
+        }
+        return sources;
+    }
+
+    private void copyChunk(List<Workspace> sources, Workspace destination, String chunkName) throws Exception {
+        ObjectNotFoundException notFound = null;
+        for (Workspace source : sources) {
+            try {
+                storageManager.copyChunk(source, destination, chunkName);
+                return;
+            } catch (ObjectNotFoundException e) {
+                notFound = e;
+            }
+        }
+        throw notFound;
+    }
+
+    /**
+     * Until its job finishes, the folder is still in the source workspace and
+     * a second share or unshare would move it from there once more.
+     */
+    private void checkNotMigrating(Item item) throws ShareProposalNotCreatedException {
+        MigrationJob job;
+        try {
+            job = migrationJobDao.findUnfinishedByItemId(item.getId());
+        } catch (DAOException e) {
+            logger.error(e);
+            throw new ShareProposalNotCreatedException(e);
+        }
+
+        if (job != null) {
+            throw new ShareProposalNotCreatedException("The folder is still being moved, try again later.");
+        }
+    }
+
+    /**
+     * Replaces the ACL of the container with the given members, in a single
+     * request.
+     */
+    private void setWorkspaceUsers(User owner, Workspace workspace, List<UserWorkspace> members)
+            throws ShareProposalNotCreatedException {
+        List<User> users = new ArrayList<User>();
+        for (UserWorkspace member : members) {
+            users.add(member.getUser());
+        }
+
+        try {
+            storageManager.setWorkspaceUsers(owner, workspace, users);
+        } catch (Exception e) {
+            logger.error(e);
+            throw new ShareProposalNotCreatedException(e);
+        }
+    }
+
+    /**
+     * Returns null when there is no container pool or it is empty.
+     */
+    private String takePooledContainer() {
+        ContainerPool containerPool = ContainerPool.getInstance();
+        if (containerPool == null) {
+            return null;
+        }
+
+        try {
+            return containerPoolDao.take();
+        } catch (DAOException e) {
+            logger.error(e);
+            return null;
+        } finally {
+            containerPool.taken();
+        }
+    }
+
+    private void returnPooledContainer(String container) {
+        try {
+            containerPoolDao.add(container);
+        } catch (DAOException e) {
+            logger.warn(String.format("Could not return container %s to the pool", container), e);
+        }
+    }
+
+    private Future<Void> copyChunkAsync(final List<Workspace> sources, final Workspace destination,
+            final String chunkName) {
+        return asyncStorageManager.submit(destination, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                copyChunk(sources, destination, chunkName);
+                return null;
+            }
+        });
+    }
+
+    private void migrateFolder(Item item, Workspace sourceWorkspace, Workspace workspace, boolean deleteSource)
+            throws ShareProposalNotCreatedException {
+
+        MigrationService migrationService = MigrationService.getInstance();
+        if (migrationService != null) {
+            // The files are switched to the new workspace once their chunks
+            // are copied
+            try {
+                MigrationJob job = new MigrationJob(item.getId(), sourceWorkspace, workspace, deleteSource);
+                migrationJobDao.add(job, itemDao.findChunksToMigrate(item.getId()));
+                migrationService.schedule(job);
+            } catch (DAOException e) {
+                logger.error(e);
+                throw new ShareProposalNotCreatedException(e);
+            }
+            return;
+        }
+
+        List<String> chunks;
+        try {
+            chunks = itemDao.migrateItem(item.getId(), workspace.getId());
+        } catch (Exception e) {
+            logger.error(e);
+            throw new ShareProposalNotCreatedException(e);
+        }
+        updateRevision(sourceWorkspace);
+        updateRevision(workspace);
+
+        List<Workspace> sources;
+        try {
+            sources = getChunkSources(sourceWorkspace);
+        } catch (DAOException e) {
+            logger.error(e);
+            throw new ShareProposalNotCreatedException(e);
+        }
+
+        // Move chunks to new container
+        List<Future<Void>> copies = new ArrayList<Future<Void>>();
+        for (String chunkName : chunks) {
+            copies.add(copyChunkAsync(sources, workspace, chunkName));
+        }
+
+        List<String> copied = new ArrayList<String>();
+        for (int i = 0; i < copies.size(); i++) {
+            try {
+                copies.get(i).get();
+                copied.add(chunks.get(i));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ObjectNotFoundException) {
+                    logger.error(String.format(
+                            "Chunk %s not found in container %s. Could not migrate to container %s.", chunks.get(i),
+                            sourceWorkspace.getSwiftContainer(), workspace.getSwiftContainer()), e.getCause());
+                } else {
+                    logger.error(e.getCause());
+                    throw new ShareProposalNotCreatedException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ShareProposalNotCreatedException(e);
+            }
+        }
+
+        BulkDeleteResult deleted;
+        try {
+            deleted = storageManager.deleteChunks(sourceWorkspace, copied);
+        } catch (Exception e) {
+            logger.error(e);
+            throw new ShareProposalNotCreatedException(e);
+        }
+
+        if (!deleted.getFailed().isEmpty()) {
+            String message = String.format("%d chunks could not be deleted from container %s",
+                    deleted.getFailed().size(), sourceWorkspace.getSwiftContainer());
+            logger.error(message);
+            throw new ShareProposalNotCreatedException(message);
+        }
+
+        if (!deleteSource) {
+            return;
+        }
+
+        // delete workspace
+        try {
+            workspaceDAO.delete(sourceWorkspace.getId());
+        } catch (DAOException e) {
+            logger.error(e);
+            throw new ShareProposalNotCreatedException(e);
+        }
+
+        // delete container from swift
+        try {
+            storageManager.deleteWorkspace(sourceWorkspace);
+        } catch (Exception e) {
+            logger.error(e);
+            throw new ShareProposalNotCreatedException(e);
+        }
+    }
+
     private void commitObject(User user, ItemMetadata item, Workspace workspace, Device device)
             throws CommitWrongVersion, CommitExistantVersion, DAOException {
 
@@ -703,7 +927,7 @@ public class Handler {
         return metadata;
     }
 
-    private void beginTransaction() throws DAOException {
+    protected void beginTransaction() throws DAOException {
         try {
             connection.setAutoCommit(false);
         } catch (SQLException e) {
@@ -711,7 +935,7 @@ public class Handler {
         }
     }
 
-    private void commitTransaction() throws DAOException {
+    protected void commitTransaction() throws DAOException {
         try {
             connection.commit();
             this.connection.setAutoCommit(true);
@@ -720,7 +944,7 @@ public class Handler {
         }
     }
 
-    private void rollbackTransaction() throws DAOException {
+    protected void rollbackTransaction() throws DAOException {
         try {
             this.connection.rollback();
             this.connection.setAutoCommit(true);
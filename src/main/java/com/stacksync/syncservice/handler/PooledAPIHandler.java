@@ -0,0 +1,440 @@
+package com.stacksync.syncservice.handler;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.commons.models.Item;
+import com.stacksync.commons.models.ItemMetadata;
+import com.stacksync.commons.models.User;
+import com.stacksync.syncservice.db.ConnectionPool;
+import com.stacksync.syncservice.exceptions.InternalServerError;
+import com.stacksync.syncservice.exceptions.storage.NoStorageManagerAvailable;
+import com.stacksync.syncservice.rpc.messages.APICommitResponse;
+import com.stacksync.syncservice.rpc.messages.APICreateFolderResponse;
+import com.stacksync.syncservice.rpc.messages.APIDeleteResponse;
+import com.stacksync.syncservice.rpc.messages.APIGetFolderMembersResponse;
+import com.stacksync.syncservice.rpc.messages.APIGetMetadata;
+import com.stacksync.syncservice.rpc.messages.APIGetMetadataBatch;
+import com.stacksync.syncservice.rpc.messages.APIGetVersions;
+import com.stacksync.syncservice.rpc.messages.APIGetWorkspaceInfoResponse;
+import com.stacksync.syncservice.rpc.messages.APIRestoreMetadata;
+import com.stacksync.syncservice.rpc.messages.APIShareFolderResponse;
+import com.stacksync.syncservice.rpc.messages.APIUnshareFolderResponse;
+import com.stacksync.syncservice.rpc.messages.APIWaitForChangesResponse;
+
+/**
+ * APIHandler backed by a fixed set of {@link SQLAPIHandler}, each one with its
+ * own connection. Every call leases a handler for its whole duration, so
+ * concurrent requests never share a connection or its transaction state.
+ * Calls wait for a free handler up to the configured timeout and fail with a
+ * 503 error after it.
+ */
+public class PooledAPIHandler implements APIHandler {
+
+    private static final Logger logger = Logger.getLogger(PooledAPIHandler.class.getName());
+    private static final int BUSY_ERROR = 503;
+    private static final String BUSY_DESCRIPTION = "Server too busy, try again later.";
+
+    private final BlockingQueue<SQLAPIHandler> handlers;
+    private final int size;
+    private final long acquireTimeout;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    public PooledAPIHandler(ConnectionPool pool, int size, long acquireTimeout) throws SQLException,
+            NoStorageManagerAvailable {
+        this.size = size;
+        this.acquireTimeout = acquireTimeout;
+        this.handlers = new ArrayBlockingQueue<SQLAPIHandler>(size);
+
+        for (int i = 0; i < size; i++) {
+            handlers.add(new SQLAPIHandler(pool));
+        }
+    }
+
+    private SQLAPIHandler acquire() throws InternalServerError {
+        long start = System.currentTimeMillis();
+        waiting.incrementAndGet();
+        SQLAPIHandler handler;
+        try {
+            handler = handlers.poll(acquireTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            handler = null;
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        if (handler == null) {
+            timeouts.incrementAndGet();
+            logger.warn(String.format("No API handler available after %d ms. %s", acquireTimeout, this));
+            throw new InternalServerError("No API handler available");
+        }
+
+        long wait = System.currentTimeMillis() - start;
+        leases.incrementAndGet();
+        totalWaitMillis.addAndGet(wait);
+        long max = maxWaitMillis.get();
+        while (wait > max && !maxWaitMillis.compareAndSet(max, wait)) {
+            max = maxWaitMillis.get();
+        }
+
+        return handler;
+    }
+
+    private void release(SQLAPIHandler handler) {
+        handlers.offer(handler);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getAvailable() {
+        return handlers.size();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getLeases() {
+        return leases.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getAverageWaitMillis() {
+        long count = leases.get();
+        return count == 0 ? 0 : totalWaitMillis.get() / count;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PooledAPIHandler[size=%d, available=%d, waiting=%d, leases=%d, timeouts=%d, "
+                + "avgWait=%dms, maxWait=%dms]", size, getAvailable(), getWaiting(), getLeases(), getTimeouts(),
+                getAverageWaitMillis(), getMaxWaitMillis());
+    }
+
+    /**
+     * Runs the callback on a leased handler, or returns its busy response when
+     * no handler is free in time. Every operation goes through here, so a
+     * handler is always given back.
+     */
+    private <T> T call(Callback<T> callback) {
+        SQLAPIHandler handler;
+        try {
+            handler = acquire();
+        } catch (InternalServerError e) {
+            return callback.busy();
+        }
+
+        try {
+            return callback.execute(handler);
+        } finally {
+            release(handler);
+        }
+    }
+
+    private interface Callback<T> {
+
+        T execute(SQLAPIHandler handler);
+
+        T busy();
+    }
+
+    @Override
+    public APIGetMetadata getMetadata(final User user, final Long fileId, final Boolean includeChunks,
+            final Long version, final Boolean isFolder) {
+        return call(new Callback<APIGetMetadata>() {
+            @Override
+            public APIGetMetadata execute(SQLAPIHandler handler) {
+                return handler.getMetadata(user, fileId, includeChunks, version, isFolder);
+            }
+
+            @Override
+            public APIGetMetadata busy() {
+                return new APIGetMetadata(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIGetMetadata getMetadata(final User user, final Long fileId, final Boolean includeChunks,
+            final Long version, final Boolean isFolder, final String etag) {
+        return call(new Callback<APIGetMetadata>() {
+            @Override
+            public APIGetMetadata execute(SQLAPIHandler handler) {
+                return handler.getMetadata(user, fileId, includeChunks, version, isFolder, etag);
+            }
+
+            @Override
+            public APIGetMetadata busy() {
+                return new APIGetMetadata(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIGetMetadataBatch getMetadataBatch(final User user, final List<Long> itemIds,
+            final Boolean includeChunks) {
+        return call(new Callback<APIGetMetadataBatch>() {
+            @Override
+            public APIGetMetadataBatch execute(SQLAPIHandler handler) {
+                return handler.getMetadataBatch(user, itemIds, includeChunks);
+            }
+
+            @Override
+            public APIGetMetadataBatch busy() {
+                return new APIGetMetadataBatch(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIGetMetadata getFolderContent(final User user, final Long folderId, final Boolean includeDeleted) {
+        return call(new Callback<APIGetMetadata>() {
+            @Override
+            public APIGetMetadata execute(SQLAPIHandler handler) {
+                return handler.getFolderContent(user, folderId, includeDeleted);
+            }
+
+            @Override
+            public APIGetMetadata busy() {
+                return new APIGetMetadata(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIGetMetadata getFolderContent(final User user, final Long folderId, final Boolean includeDeleted,
+            final String etag) {
+        return call(new Callback<APIGetMetadata>() {
+            @Override
+            public APIGetMetadata execute(SQLAPIHandler handler) {
+                return handler.getFolderContent(user, folderId, includeDeleted, etag);
+            }
+
+            @Override
+            public APIGetMetadata busy() {
+                return new APIGetMetadata(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIGetMetadata getFolderContent(final User user, final Long folderId, final Boolean includeDeleted,
+            final Integer pageSize, final String cursor) {
+        return call(new Callback<APIGetMetadata>() {
+            @Override
+            public APIGetMetadata execute(SQLAPIHandler handler) {
+                return handler.getFolderContent(user, folderId, includeDeleted, pageSize, cursor);
+            }
+
+            @Override
+            public APIGetMetadata busy() {
+                return new APIGetMetadata(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIWaitForChangesResponse getWorkspaceRevision(final User user, final UUID workspaceId,
+            final Long sinceRevision) {
+        return call(new Callback<APIWaitForChangesResponse>() {
+            @Override
+            public APIWaitForChangesResponse execute(SQLAPIHandler handler) {
+                return handler.getWorkspaceRevision(user, workspaceId, sinceRevision);
+            }
+
+            @Override
+            public APIWaitForChangesResponse busy() {
+                return new APIWaitForChangesResponse(null, null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APICommitResponse createFile(final User user, final ItemMetadata fileToSave) {
+        return call(new Callback<APICommitResponse>() {
+            @Override
+            public APICommitResponse execute(SQLAPIHandler handler) {
+                return handler.createFile(user, fileToSave);
+            }
+
+            @Override
+            public APICommitResponse busy() {
+                return new APICommitResponse(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APICommitResponse updateData(final User user, final ItemMetadata fileToUpdate) {
+        return call(new Callback<APICommitResponse>() {
+            @Override
+            public APICommitResponse execute(SQLAPIHandler handler) {
+                return handler.updateData(user, fileToUpdate);
+            }
+
+            @Override
+            public APICommitResponse busy() {
+                return new APICommitResponse(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APICommitResponse updateMetadata(final User user, final ItemMetadata fileToUpdate,
+            final Boolean parentUpdated) {
+        return call(new Callback<APICommitResponse>() {
+            @Override
+            public APICommitResponse execute(SQLAPIHandler handler) {
+                return handler.updateMetadata(user, fileToUpdate, parentUpdated);
+            }
+
+            @Override
+            public APICommitResponse busy() {
+                return new APICommitResponse(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APICreateFolderResponse createFolder(final User user, final ItemMetadata item) {
+        return call(new Callback<APICreateFolderResponse>() {
+            @Override
+            public APICreateFolderResponse execute(SQLAPIHandler handler) {
+                return handler.createFolder(user, item);
+            }
+
+            @Override
+            public APICreateFolderResponse busy() {
+                return new APICreateFolderResponse(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIRestoreMetadata restoreMetadata(final User user, final ItemMetadata item) {
+        return call(new Callback<APIRestoreMetadata>() {
+            @Override
+            public APIRestoreMetadata execute(SQLAPIHandler handler) {
+                return handler.restoreMetadata(user, item);
+            }
+
+            @Override
+            public APIRestoreMetadata busy() {
+                return new APIRestoreMetadata(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIDeleteResponse deleteItem(final User user, final ItemMetadata item) {
+        return call(new Callback<APIDeleteResponse>() {
+            @Override
+            public APIDeleteResponse execute(SQLAPIHandler handler) {
+                return handler.deleteItem(user, item);
+            }
+
+            @Override
+            public APIDeleteResponse busy() {
+                return new APIDeleteResponse(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIGetVersions getVersions(final User user, final ItemMetadata item) {
+        return call(new Callback<APIGetVersions>() {
+            @Override
+            public APIGetVersions execute(SQLAPIHandler handler) {
+                return handler.getVersions(user, item);
+            }
+
+            @Override
+            public APIGetVersions busy() {
+                return new APIGetVersions(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIShareFolderResponse shareFolder(final User user, final Item item, final List<String> emails) {
+        return call(new Callback<APIShareFolderResponse>() {
+            @Override
+            public APIShareFolderResponse execute(SQLAPIHandler handler) {
+                return handler.shareFolder(user, item, emails);
+            }
+
+            @Override
+            public APIShareFolderResponse busy() {
+                return new APIShareFolderResponse(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIUnshareFolderResponse unshareFolder(final User user, final Item item, final List<String> emails) {
+        return call(new Callback<APIUnshareFolderResponse>() {
+            @Override
+            public APIUnshareFolderResponse execute(SQLAPIHandler handler) {
+                return handler.unshareFolder(user, item, emails);
+            }
+
+            @Override
+            public APIUnshareFolderResponse busy() {
+                return new APIUnshareFolderResponse(null, null, false, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIGetWorkspaceInfoResponse getWorkspaceInfo(final User user, final ItemMetadata item) {
+        return call(new Callback<APIGetWorkspaceInfoResponse>() {
+            @Override
+            public APIGetWorkspaceInfoResponse execute(SQLAPIHandler handler) {
+                return handler.getWorkspaceInfo(user, item);
+            }
+
+            @Override
+            public APIGetWorkspaceInfoResponse busy() {
+                return new APIGetWorkspaceInfoResponse(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+
+    @Override
+    public APIGetFolderMembersResponse getFolderMembers(final User user, final Item item) {
+        return call(new Callback<APIGetFolderMembersResponse>() {
+            @Override
+            public APIGetFolderMembersResponse execute(SQLAPIHandler handler) {
+                return handler.getFolderMembers(user, item);
+            }
+
+            @Override
+            public APIGetFolderMembersResponse busy() {
+                return new APIGetFolderMembersResponse(null, false, BUSY_ERROR, BUSY_DESCRIPTION);
+            }
+        });
+    }
+}
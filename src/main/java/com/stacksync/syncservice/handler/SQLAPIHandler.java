@@ -3,7 +3,10 @@ package com.stacksync.syncservice.handler;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import org.apache.log4j.Logger;
 
@@ -29,16 +32,21 @@ import com.stacksync.syncservice.rpc.messages.APICreateFolderResponse;
 import com.stacksync.syncservice.rpc.messages.APIDeleteResponse;
 import com.stacksync.syncservice.rpc.messages.APIGetFolderMembersResponse;
 import com.stacksync.syncservice.rpc.messages.APIGetMetadata;
+import com.stacksync.syncservice.rpc.messages.APIGetMetadataBatch;
 import com.stacksync.syncservice.rpc.messages.APIGetVersions;
 import com.stacksync.syncservice.rpc.messages.APIGetWorkspaceInfoResponse;
 import com.stacksync.syncservice.rpc.messages.APIRestoreMetadata;
 import com.stacksync.syncservice.rpc.messages.APIShareFolderResponse;
 import com.stacksync.syncservice.rpc.messages.APIUnshareFolderResponse;
+import com.stacksync.syncservice.rpc.messages.APIWaitForChangesResponse;
 import com.stacksync.syncservice.util.Constants;
 
 public class SQLAPIHandler extends Handler implements APIHandler {
 
     private static final Logger logger = Logger.getLogger(SQLAPIHandler.class.getName());
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final long MAX_FOLDER_COUNT = 10000L;
+    private static final int MAX_BATCH_SIZE = 1000;
     private Device apiDevice = new Device(Constants.API_DEVICE_ID);
 
     public SQLAPIHandler(ConnectionPool pool) throws SQLException,
@@ -94,6 +102,101 @@ public class SQLAPIHandler extends Handler implements APIHandler {
         return response;
     }
 
+    /**
+     * Conditional version of getMetadata: if the item has not changed since
+     * the client obtained the given etag only a not modified response is
+     * returned, without loading the item metadata.
+     */
+    @Override
+    public APIGetMetadata getMetadata(User user, Long fileId,
+            Boolean includeChunks, Long version, Boolean isFolder, String etag) {
+
+        String currentEtag;
+        try {
+            if (fileId == null) {
+                currentEtag = getRootEtag(user, false);
+            } else {
+                currentEtag = getItemEtag(getAuthorizedItem(user, fileId), version, includeChunks);
+            }
+        } catch (DAOException e) {
+            logger.error(e.toString(), e);
+            return new APIGetMetadata(null, false, e.getError().getCode(),
+                    e.getError().getMessage());
+        }
+
+        if (currentEtag.equals(etag)) {
+            return createNotModifiedResponse(currentEtag);
+        }
+
+        APIGetMetadata response = getMetadata(user, fileId, includeChunks,
+                version, isFolder);
+        response.setEtag(currentEtag);
+        return response;
+    }
+
+    @Override
+    public APIGetMetadataBatch getMetadataBatch(User user, List<Long> itemIds,
+            Boolean includeChunks) {
+
+        if (itemIds.size() > MAX_BATCH_SIZE) {
+            return new APIGetMetadataBatch(null, false, 400, String.format(
+                    "Too many items requested, the maximum is %d.", MAX_BATCH_SIZE));
+        }
+
+        List<Long> validIds = new ArrayList<Long>();
+        for (Long itemId : itemIds) {
+            if (itemId != null) {
+                validIds.add(itemId);
+            }
+        }
+
+        // two queries for the whole batch: permissions and metadata
+        Map<Long, Boolean> access;
+        Map<Long, ItemMetadata> items = new HashMap<Long, ItemMetadata>();
+        try {
+            access = this.itemDao.findAccessByIds(user.getId(), validIds);
+
+            List<Long> authorizedIds = new ArrayList<Long>();
+            for (Long itemId : validIds) {
+                if (Boolean.TRUE.equals(access.get(itemId))) {
+                    authorizedIds.add(itemId);
+                }
+            }
+
+            if (!authorizedIds.isEmpty()) {
+                for (ItemMetadata item : this.itemDao.findByIds(authorizedIds, includeChunks)) {
+                    items.put(item.getId(), item);
+                }
+            }
+        } catch (DAOException e) {
+            logger.error(e.toString(), e);
+            return new APIGetMetadataBatch(null, false, e.getError().getCode(), e.getError().getMessage());
+        }
+
+        List<APIGetMetadata> results = new ArrayList<APIGetMetadata>();
+        for (Long itemId : itemIds) {
+            ItemMetadata item = items.get(itemId);
+            if (item != null) {
+                results.add(new APIGetMetadata(item, true, 0, ""));
+                continue;
+            }
+
+            DAOError error;
+            if (itemId != null && access.containsKey(itemId)) {
+                error = DAOError.USER_NOT_AUTHORIZED;
+            } else {
+                error = DAOError.FILE_NOT_FOUND;
+            }
+
+            ItemMetadata requested = new ItemMetadata();
+            requested.setId(itemId);
+            results.add(new APIGetMetadata(requested, false, error.getCode(), error.getMessage()));
+        }
+
+        return new APIGetMetadataBatch(results, true, 0, "");
+    }
+
+    @Override
     public APIGetMetadata getFolderContent(User user, Long folderId,
             Boolean includeDeleted) {
 
@@ -138,6 +241,170 @@ public class SQLAPIHandler extends Handler implements APIHandler {
         return response;
     }
 
+    /**
+     * Conditional version of getFolderContent: if nothing has changed in the
+     * folder workspace since the client obtained the given etag only a not
+     * modified response is returned, without listing the folder.
+     */
+    @Override
+    public APIGetMetadata getFolderContent(User user, Long folderId,
+            Boolean includeDeleted, String etag) {
+
+        String currentEtag;
+        try {
+            if (folderId == null) {
+                currentEtag = getRootEtag(user, includeDeleted);
+            } else {
+                currentEtag = getFolderEtag(getAuthorizedItem(user, folderId), includeDeleted);
+            }
+        } catch (DAOException e) {
+            logger.error(e.toString(), e);
+            return new APIGetMetadata(null, false, e.getError().getCode(),
+                    e.getError().getMessage());
+        }
+
+        if (currentEtag.equals(etag)) {
+            return createNotModifiedResponse(currentEtag);
+        }
+
+        APIGetMetadata response = getFolderContent(user, folderId,
+                includeDeleted);
+        response.setEtag(currentEtag);
+        return response;
+    }
+
+    /**
+     * Returns the current revision of a workspace the user is member of and
+     * whether it differs from the given one. Waiting for the next change is
+     * left to the caller so that this handler is not kept busy meanwhile.
+     */
+    @Override
+    public APIWaitForChangesResponse getWorkspaceRevision(User user,
+            UUID workspaceId, Long sinceRevision) {
+
+        try {
+            boolean member = false;
+            for (Workspace workspace : this.workspaceDAO.getByUserId(user.getId())) {
+                if (workspace.getId().equals(workspaceId)) {
+                    member = true;
+                    break;
+                }
+            }
+
+            if (!member) {
+                throw new DAOException(DAOError.USER_NOT_AUTHORIZED);
+            }
+        } catch (DAOException e) {
+            logger.error(e.toString(), e);
+            return new APIWaitForChangesResponse(null, null, false,
+                    e.getError().getCode(), e.getError().getMessage());
+        }
+
+        long revision = WorkspaceRevisions.getInstance().getRevision(workspaceId);
+        boolean changed = sinceRevision == null || revision != sinceRevision;
+        return new APIWaitForChangesResponse(changed, revision, true, 0, "");
+    }
+
+    /**
+     * Returns one page of the folder contents ordered by filename. The cursor
+     * is the one returned as next cursor by the previous page, or null for
+     * the first page, which also carries the number of entries in the folder
+     * (counted up to {@link #MAX_FOLDER_COUNT}).
+     */
+    @Override
+    public APIGetMetadata getFolderContent(User user, Long folderId,
+            Boolean includeDeleted, Integer pageSize, String cursor) {
+
+        if (pageSize == null || pageSize <= 0) {
+            return getFolderContent(user, folderId, includeDeleted);
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        String afterFilename = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            int separator = cursor.indexOf(':');
+            try {
+                afterId = Long.parseLong(cursor.substring(0, separator));
+                afterFilename = cursor.substring(separator + 1);
+            } catch (Exception e) {
+                return new APIGetMetadata(null, false, 400, "Invalid cursor.");
+            }
+        }
+
+        ItemMetadata responseObject = null;
+        Integer errorCode = 0;
+        Boolean success = false;
+        String description = "";
+        String nextCursor = null;
+        Long totalCount = null;
+
+        try {
+
+            List<ItemMetadata> children;
+
+            if (folderId == null) {
+                responseObject = createRootMetadata();
+                children = this.itemDao.findRootChildrenPage(user.getId(),
+                        includeDeleted, afterFilename, afterId, pageSize + 1);
+                if (cursor == null || cursor.isEmpty()) {
+                    totalCount = this.itemDao.countRootChildren(user.getId(),
+                            includeDeleted, MAX_FOLDER_COUNT + 1);
+                }
+            } else {
+
+                // check if user has permission on this file
+                List<User> users = this.userDao.findByItemId(folderId);
+
+                if (users.isEmpty()) {
+                    throw new DAOException(DAOError.FILE_NOT_FOUND);
+                }
+
+                if (!userHasPermission(user, users)) {
+                    throw new DAOException(DAOError.USER_NOT_AUTHORIZED);
+                }
+
+                responseObject = this.itemDao.findById(folderId, false, null,
+                        includeDeleted, false);
+                children = this.itemDao.findChildrenPage(folderId,
+                        responseObject.getWorkspaceId(), includeDeleted,
+                        afterFilename, afterId, pageSize + 1);
+                if (cursor == null || cursor.isEmpty()) {
+                    totalCount = this.itemDao.countChildren(folderId,
+                            responseObject.getWorkspaceId(), includeDeleted,
+                            MAX_FOLDER_COUNT + 1);
+                }
+            }
+
+            // one extra entry is read to know if there is a next page
+            if (children.size() > pageSize) {
+                children = children.subList(0, pageSize);
+                ItemMetadata last = children.get(pageSize - 1);
+                nextCursor = last.getId() + ":" + last.getFilename();
+            }
+
+            for (ItemMetadata child : children) {
+                responseObject.addChild(child);
+            }
+
+            success = true;
+
+        } catch (DAOException e) {
+            description = e.getError().getMessage();
+            errorCode = e.getError().getCode();
+            logger.error(e.toString(), e);
+        }
+
+        APIGetMetadata response = new APIGetMetadata(responseObject, success,
+                errorCode, description);
+        response.setNextCursor(nextCursor);
+        if (totalCount != null) {
+            response.setTotalCount(Math.min(totalCount, MAX_FOLDER_COUNT),
+                    totalCount <= MAX_FOLDER_COUNT);
+        }
+        return response;
+    }
+
     @Override
     public APICommitResponse createFile(User user, ItemMetadata fileToSave) {
 
@@ -160,7 +427,7 @@ public class SQLAPIHandler extends Handler implements APIHandler {
                     "No workspaces found for the user.");
         }
 
-        boolean includeList = true;
+        boolean includeList = false;
         Long version = null;
         boolean includeDeleted = false;
         boolean includeChunks = false;
@@ -185,8 +452,7 @@ public class SQLAPIHandler extends Handler implements APIHandler {
             }
         } else {
             try {
-                parent = this.itemDao
-                        .findByUserId(user.getId(), includeDeleted);
+                parent = createRootMetadata();
                 Workspace parentWorkspace = workspaceDAO
                         .getDefaultWorkspaceByUserId(user.getId());
                 parent.setWorkspaceId(parentWorkspace.getId());
@@ -210,12 +476,12 @@ public class SQLAPIHandler extends Handler implements APIHandler {
         }
 
         // check if there is already a file with the same name
-        boolean repeated = false;
-        for (ItemMetadata child : parent.getChildren()) {
-            if (child.getFilename().equals(fileToSave.getFilename())) {
-                repeated = true;
-                break;
-            }
+        boolean repeated;
+        try {
+            repeated = existsChildWithName(user, parent, fileToSave.getFilename());
+        } catch (DAOException e) {
+            logger.error(e);
+            return new APICommitResponse(fileToSave, false, e.getError().getCode(), e.getMessage());
         }
         if (repeated) {
             return new APICommitResponse(fileToSave, false, 400,
@@ -359,7 +625,7 @@ public class SQLAPIHandler extends Handler implements APIHandler {
         if (fileToUpdate.getParentId() != null) {
             try {
                 parent = itemDao.findById(fileToUpdate.getParentId(),
-                        includeList, version, includeDeleted, includeChunks);
+                        false, version, includeDeleted, false);
 
                 // check if parent is a folder
                 if (!parent.isFolder()) {
@@ -370,11 +636,7 @@ public class SQLAPIHandler extends Handler implements APIHandler {
                 return new APICommitResponse(fileToUpdate, false, 404, "Parent folder not found");
             }
         } else {
-            try {
-                parent = this.itemDao.findByUserId(user.getId(), includeDeleted);
-            } catch (DAOException e) {
-                return new APICommitResponse(fileToUpdate, false, e.getError().getCode(), e.getMessage());
-            }
+            parent = createRootMetadata();
         }
 
         // check if the user has permission on the file and parent
@@ -395,9 +657,12 @@ public class SQLAPIHandler extends Handler implements APIHandler {
 
         // check if there is already a file with the same name
         boolean repeated = false;
-        for (ItemMetadata child : parent.getChildren()) {
-            if (child.getFilename().equals(fileToUpdate.getFilename())) {
-                repeated = true;
+        if (fileToUpdate.getFilename() != null) {
+            try {
+                repeated = existsChildWithName(user, parent, fileToUpdate.getFilename());
+            } catch (DAOException e) {
+                logger.error(e);
+                return new APICommitResponse(fileToUpdate, false, e.getError().getCode(), e.getMessage());
             }
         }
         if (repeated) {
@@ -450,10 +715,28 @@ public class SQLAPIHandler extends Handler implements APIHandler {
             return response;
         }
 
-        // get metadata of the parent item
-        APIGetMetadata parentResponse = this.getFolderContent(user,
-                item.getParentId(), false);
-        ItemMetadata parentMetadata = parentResponse.getItemMetadata();
+        // get metadata of the parent item, without its children
+        ItemMetadata parentMetadata;
+        if (item.getParentId() == null) {
+            parentMetadata = createRootMetadata();
+        } else {
+            try {
+                List<User> users = this.userDao.findByItemId(item.getParentId());
+
+                if (users.isEmpty()) {
+                    throw new DAOException(DAOError.FILE_NOT_FOUND);
+                }
+
+                if (!userHasPermission(user, users)) {
+                    throw new DAOException(DAOError.USER_NOT_AUTHORIZED);
+                }
+
+                parentMetadata = this.itemDao.findById(item.getParentId(), false, null, false, false);
+            } catch (DAOException e) {
+                logger.error(e);
+                return new APICreateFolderResponse(item, false, e.getError().getCode(), e.getError().getMessage());
+            }
+        }
 
         // if it is the root, get the default workspace
         if (parentMetadata.isRoot()) {
@@ -479,21 +762,19 @@ public class SQLAPIHandler extends Handler implements APIHandler {
         }
 
         String folderName = item.getFilename();
-        List<ItemMetadata> files = parentMetadata.getChildren();
 
         // check if there exists a folder with the same name
-        ItemMetadata object = null;
-        for (ItemMetadata file : files) {
-            if (file.getFilename().equals(folderName)
-                    && !file.getStatus().equals("DELETED")) {
-                object = file;
-                break;
-            }
+        boolean repeated;
+        try {
+            repeated = existsChildWithName(user, parentMetadata, folderName);
+        } catch (DAOException e) {
+            logger.error(e);
+            return new APICreateFolderResponse(item, false, e.getError().getCode(), e.getError().getMessage());
         }
 
-        if (object != null) {
+        if (repeated) {
             APICreateFolderResponse response = new APICreateFolderResponse(
-                    object, false, 400, "Folder already exists.");
+                    item, false, 400, "Folder already exists.");
             return response;
         }
 
@@ -536,6 +817,7 @@ public class SQLAPIHandler extends Handler implements APIHandler {
 
                     serverItem.setLatestVersion(restoredObject.getVersion());
                     itemDao.put(serverItem);
+                    updateRevision(serverItem.getWorkspace());
 
                     item.setChecksum(restoredObject.getChecksum());
                     item.setChunks(chunks);
@@ -575,7 +857,7 @@ public class SQLAPIHandler extends Handler implements APIHandler {
 
     @Override
     public APIDeleteResponse deleteItem(User user, ItemMetadata item) {
-        List<ItemMetadata> filesToDelete;
+        ItemMetadata fileToDelete;
 
         // Check the owner
         try {
@@ -597,18 +879,18 @@ public class SQLAPIHandler extends Handler implements APIHandler {
 
         // check that the given file ID exists
         try {
-            filesToDelete = itemDao.getItemsById(item.getId());
+            fileToDelete = itemDao.findById(item.getId(), false, null, true, false);
         } catch (DAOException e) {
             return new APIDeleteResponse(null, false, 404,
                     "File or folder not found");
         }
-        if (filesToDelete.isEmpty()) {
+        if (fileToDelete == null) {
             return new APIDeleteResponse(null, false, 404,
                     "File or folder not found.");
         }
 
         // check if it's a file or a folder
-        if (filesToDelete.get(0).isFolder() != item.isFolder()) {
+        if (fileToDelete.isFolder() != item.isFolder()) {
             return new APIDeleteResponse(null, false, 400,
                     "Type missmatch (file and folder)");
         }
@@ -616,7 +898,7 @@ public class SQLAPIHandler extends Handler implements APIHandler {
         // check if the user has permission on the file and parent
         boolean permission = false;
         for (Workspace w : user.getWorkspaces()) {
-            if (w.getId().equals(filesToDelete.get(0).getWorkspaceId())) {
+            if (w.getId().equals(fileToDelete.getWorkspaceId())) {
                 permission = true;
             }
         }
@@ -625,12 +907,11 @@ public class SQLAPIHandler extends Handler implements APIHandler {
                     "You are not allowed to deleted this file");
         }
 
-        Workspace workspace = new Workspace(filesToDelete.get(0)
-                .getWorkspaceId());
+        Workspace workspace = new Workspace(fileToDelete.getWorkspaceId());
 
         APIDeleteResponse response;
         try {
-            response = deleteItemsAPI(user, workspace, filesToDelete);
+            response = deleteItemsAPI(user, workspace, fileToDelete);
         } catch (DAOException e) {
             logger.error(e.toString(), e);
             response = new APIDeleteResponse(null, false, e.getError()
@@ -836,6 +1117,14 @@ public class SQLAPIHandler extends Handler implements APIHandler {
         workspace.setOwner(workspaceOwner);
         APIGetWorkspaceInfoResponse response = new APIGetWorkspaceInfoResponse(
                 workspace,  true, 0, "");
+
+        try {
+            response.setContainers(workspaceDAO.getContainers(workspace.getId()));
+        } catch (DAOException e) {
+            logger.error(e);
+            return new APIGetWorkspaceInfoResponse(null, false, 500,
+                    "Could not get the workspace containers.");
+        }
         return response;
     }
 
@@ -850,6 +1139,90 @@ public class SQLAPIHandler extends Handler implements APIHandler {
         return hasPermission;
     }
 
+    private ItemMetadata createRootMetadata() {
+        // virtual ItemMetadata for the root folder, without its children
+        ItemMetadata rootMetadata = new ItemMetadata();
+        rootMetadata.setIsFolder(true);
+        rootMetadata.setFilename("root");
+        rootMetadata.setIsRoot(true);
+        return rootMetadata;
+    }
+
+    private boolean existsChildWithName(User user, ItemMetadata parent, String filename) throws DAOException {
+        if (parent.isRoot()) {
+            return itemDao.existsRootChildWithName(user.getId(), filename);
+        }
+        return itemDao.existsChildWithName(parent.getId(), parent.getWorkspaceId(), filename);
+    }
+
+    private Item getAuthorizedItem(User user, Long itemId) throws DAOException {
+        List<User> users = this.userDao.findByItemId(itemId);
+
+        if (users.isEmpty()) {
+            throw new DAOException(DAOError.FILE_NOT_FOUND);
+        }
+
+        if (!userHasPermission(user, users)) {
+            throw new DAOException(DAOError.USER_NOT_AUTHORIZED);
+        }
+
+        Item item = this.itemDao.findById(itemId);
+        if (item == null) {
+            throw new DAOException(DAOError.FILE_NOT_FOUND);
+        }
+        return item;
+    }
+
+    /**
+     * The requested version and chunk flag are part of the etag, as they
+     * change the response for the same item.
+     */
+    private String getItemEtag(Item item, Long version, Boolean includeChunks) {
+        StringBuilder etag = new StringBuilder("v").append(item.getLatestVersion());
+        if (version != null) {
+            etag.append(".").append(version);
+        }
+        if (Boolean.TRUE.equals(includeChunks)) {
+            etag.append(".c");
+        }
+        return etag.toString();
+    }
+
+    /**
+     * Folder etags are built from the in-memory workspace revisions, so they
+     * change whenever the server restarts. The deleted flag is part of them,
+     * as for the item etags.
+     */
+    private String getFolderEtag(Item folder, Boolean includeDeleted) {
+        WorkspaceRevisions revisions = WorkspaceRevisions.getInstance();
+        String etag = String.format("w%x.%d", revisions.getEpoch(),
+                revisions.getRevision(folder.getWorkspace().getId()));
+        return Boolean.TRUE.equals(includeDeleted) ? etag + ".d" : etag;
+    }
+
+    private String getRootEtag(User user, Boolean includeDeleted) throws DAOException {
+        WorkspaceRevisions revisions = WorkspaceRevisions.getInstance();
+        List<Workspace> workspaces = this.workspaceDAO.getByUserId(user.getId());
+
+        long maxRevision = 0L;
+        int membership = 0;
+        for (Workspace workspace : workspaces) {
+            maxRevision = Math.max(maxRevision, revisions.getRevision(workspace.getId()));
+            membership += workspace.getId().hashCode();
+        }
+
+        String etag = String.format("r%x.%d.%d.%x", revisions.getEpoch(), maxRevision,
+                workspaces.size(), membership);
+        return Boolean.TRUE.equals(includeDeleted) ? etag + ".d" : etag;
+    }
+
+    private APIGetMetadata createNotModifiedResponse(String etag) {
+        APIGetMetadata response = new APIGetMetadata(null, true, 0, "");
+        response.setNotModified(true);
+        response.setEtag(etag);
+        return response;
+    }
+
     private CommitNotification saveNewItemAPI(User user, ItemMetadata itemToSave,
             ItemMetadata parent) throws DAOException {
 
@@ -925,43 +1298,54 @@ public class SQLAPIHandler extends Handler implements APIHandler {
     }
 
     private APIDeleteResponse deleteItemsAPI(User user, Workspace workspace,
-            List<ItemMetadata> filesToDelete) throws DAOException {
+            ItemMetadata fileToDelete) throws DAOException {
 
-        List<ItemMetadata> items = new ArrayList<ItemMetadata>();
+        // the quota of a shared workspace is charged to its owner
+        workspace = workspaceDAO.getById(workspace.getId());
+        User quotaUser = user;
+        if (workspace.isShared() && !workspace.getOwner().getId().equals(user.getId())) {
+            quotaUser = userDao.findById(workspace.getOwner().getId());
+        }
 
-        for (ItemMetadata fileToDelete : filesToDelete) {
+        List<ItemMetadata> deletedItems;
 
-            if (fileToDelete.getStatus().equals("DELETED")) {
-                continue;
-            }
+        beginTransaction();
 
-            fileToDelete.setStatus("DELETED");
-            // fileToDelete.setFileSize(0L);
-            fileToDelete.setChunks(new ArrayList<String>());
-            // fileToDelete.setChecksum(0L);
-            fileToDelete.setVersion(fileToDelete.getVersion() + 1);
+        try {
+            deletedItems = itemDao.deleteItemRecursively(fileToDelete.getId(), apiDevice.getId());
 
-            Date date = new Date();
-            fileToDelete.setModifiedAt(date);
+            long freedSize = 0L;
+            for (ItemMetadata deletedItem : deletedItems) {
+                freedSize += deletedItem.getSize();
+                deletedItem.setSize(0L);
+            }
 
-            items.add(fileToDelete);
+            if (freedSize > 0) {
+                long newQuotaUsedLogical = quotaUser.getQuotaUsedLogical() - freedSize;
+                if (newQuotaUsedLogical < 0) {
+                    newQuotaUsedLogical = 0L;
+                }
+                quotaUser.setQuotaUsedLogical(newQuotaUsedLogical);
+                userDao.updateAvailableQuota(quotaUser);
+            }
+
+            commitTransaction();
+        } catch (DAOException e) {
+            rollbackTransaction();
+            throw e;
         }
 
-        Boolean success = false;
-        ItemMetadata fileToDelete = null;
+        if (deletedItems.isEmpty()) {
+            return new APIDeleteResponse(null, false, 404, "File or folder not found.");
+        }
 
-        CommitNotification commitResult = this.doCommit(user, workspace,
-                apiDevice, items);
+        updateRevision(workspace);
 
-        if (!commitResult.getItems().isEmpty()) {
-            fileToDelete = commitResult.getItems().get(0).getMetadata();
-            success = true;
-        }
+        APIDeleteResponse response = new APIDeleteResponse(deletedItems.get(0), true, 0, "");
+        response.setDeletedItems(deletedItems);
+        response.setQuotaLimit(user.getQuotaLimit());
+        response.setQuotaUsed(user.getQuotaUsedLogical());
 
-        APIDeleteResponse response = new APIDeleteResponse(fileToDelete, success, 0, "");
-        response.setQuotaLimit(commitResult.getLimitQuota());
-        response.setQuotaUsed(commitResult.getUsedQuota());
-        
         return response;
     }
 }
@@ -32,10 +32,22 @@ public class SQLSyncHandler extends Handler implements SyncHandler {
 
 	@Override
 	public List<ItemMetadata> doGetChanges(User user, Workspace workspace) {
-		List<ItemMetadata> responseObjects = new ArrayList<ItemMetadata>();
+		ChangesCache cache = ChangesCache.getInstance();
+
+		ChangesCache.Entry entry = cache.get(workspace.getId());
+		if (entry != null) {
+			logger.debug(cache);
+			return entry.getItems();
+		}
 
+		// Read the revision before the items so a commit in between
+		// prevents the entry from being cached
+		long revision = WorkspaceRevisions.getInstance().getRevision(workspace.getId());
+
+		List<ItemMetadata> responseObjects = new ArrayList<ItemMetadata>();
 		try {
 			responseObjects = itemDao.getItemsByWorkspaceId(workspace.getId());
+			cache.put(workspace.getId(), revision, responseObjects);
 		} catch (DAOException e) {
 			logger.error(e.toString(), e);
 		}
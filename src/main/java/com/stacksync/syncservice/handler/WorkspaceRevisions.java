@@ -0,0 +1,141 @@
+package com.stacksync.syncservice.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an in-memory revision number for every workspace modified by this
+ * server. A workspace revision changes every time its items are modified, so
+ * anything derived from the workspace contents can be reused while the
+ * revision stays the same.
+ *
+ * Revisions are local to this process and start at 0 after a restart.
+ */
+public class WorkspaceRevisions {
+
+    private static WorkspaceRevisions instance = null;
+    private final ConcurrentHashMap<UUID, Long> revisions;
+    private final HashMap<UUID, List<RevisionListener>> listeners;
+    private final long epoch;
+    private long sequence;
+
+    private WorkspaceRevisions() {
+        this.revisions = new ConcurrentHashMap<UUID, Long>();
+        this.listeners = new HashMap<UUID, List<RevisionListener>>();
+        this.epoch = System.currentTimeMillis();
+        this.sequence = 0L;
+    }
+
+    public static synchronized WorkspaceRevisions getInstance() {
+        if (instance == null) {
+            instance = new WorkspaceRevisions();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Identifies this set of revisions. Revision numbers are only comparable
+     * when they were obtained with the same epoch.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getRevision(UUID workspaceId) {
+        Long revision = revisions.get(workspaceId);
+        if (revision == null) {
+            return 0L;
+        }
+        return revision;
+    }
+
+    public long increment(UUID workspaceId) {
+        long revision;
+        synchronized (this) {
+            sequence++;
+            revisions.put(workspaceId, sequence);
+            revision = sequence;
+        }
+
+        List<RevisionListener> fired;
+        synchronized (listeners) {
+            fired = listeners.remove(workspaceId);
+        }
+
+        if (fired != null) {
+            for (RevisionListener listener : fired) {
+                listener.revisionChanged(workspaceId, revision);
+            }
+        }
+
+        return revision;
+    }
+
+    /**
+     * Registers a listener called once, from the thread modifying the
+     * workspace, as soon as its revision differs from the given one. Returns
+     * false without registering it if the revision is already different.
+     */
+    public boolean addListener(UUID workspaceId, long sinceRevision, RevisionListener listener) {
+        synchronized (listeners) {
+            if (getRevision(workspaceId) != sinceRevision) {
+                return false;
+            }
+
+            List<RevisionListener> workspaceListeners = listeners.get(workspaceId);
+            if (workspaceListeners == null) {
+                workspaceListeners = new ArrayList<RevisionListener>();
+                listeners.put(workspaceId, workspaceListeners);
+            }
+            workspaceListeners.add(listener);
+            return true;
+        }
+    }
+
+    public void removeListener(UUID workspaceId, RevisionListener listener) {
+        synchronized (listeners) {
+            List<RevisionListener> workspaceListeners = listeners.get(workspaceId);
+            if (workspaceListeners != null) {
+                workspaceListeners.remove(listener);
+                if (workspaceListeners.isEmpty()) {
+                    listeners.remove(workspaceId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks the calling thread until the workspace revision differs from
+     * the given one or the timeout expires, and returns the current revision.
+     */
+    public long awaitChange(UUID workspaceId, long sinceRevision, long timeoutMs) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        RevisionListener listener = new RevisionListener() {
+            @Override
+            public void revisionChanged(UUID workspaceId, long revision) {
+                latch.countDown();
+            }
+        };
+
+        if (addListener(workspaceId, sinceRevision, listener)) {
+            try {
+                latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+            } finally {
+                removeListener(workspaceId, listener);
+            }
+        }
+
+        return getRevision(workspaceId);
+    }
+
+    public interface RevisionListener {
+
+        void revisionChanged(UUID workspaceId, long revision);
+    }
+}
@@ -0,0 +1,277 @@
+package com.stacksync.syncservice.migration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+import com.stacksync.syncservice.exceptions.storage.ChunkTransferException;
+import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
+import com.stacksync.syncservice.storage.BulkDeleteResult;
+import com.stacksync.syncservice.storage.StorageManager;
+
+/**
+ * Copies and deletes chunks with a bounded number of parallel requests to the
+ * storage. Failed requests are retried with an exponential backoff. A chunk
+ * found neither in the sources nor in the destination is skipped and reported
+ * as missing, and a chunk already deleted counts as deleted. Chunks are
+ * deleted in batches, so the storage can remove a batch in a single request.
+ * The listener is called from the calling thread for every chunk as soon as it
+ * is done, so the progress can be saved.
+ */
+public class ChunkTransfer {
+
+    public interface Listener {
+        void transferred(String chunkName) throws DAOException;
+
+        void missing(String chunkName) throws DAOException;
+    }
+
+    private interface Operation {
+        void apply(String chunkName) throws Exception;
+    }
+
+    private static final Logger logger = Logger.getLogger(ChunkTransfer.class.getName());
+
+    private final StorageManager storageManager;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final long retryBackoff;
+    private final int deleteBatch;
+
+    public ChunkTransfer(StorageManager storageManager, int threads, int maxRetries, long retryBackoff,
+            int deleteBatch) {
+        this.storageManager = storageManager;
+        this.deleteBatch = deleteBatch;
+        this.maxInFlight = threads * 2;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ChunkTransfer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void copy(Workspace source, Workspace destination, List<String> chunks, Listener listener)
+            throws DAOException, ChunkTransferException {
+        copy(Collections.singletonList(source), destination, chunks, listener);
+    }
+
+    /**
+     * Every chunk is copied from the first of the sources that has it.
+     */
+    public void copy(final List<Workspace> sources, final Workspace destination, List<String> chunks,
+            Listener listener) throws DAOException, ChunkTransferException {
+        run(chunks, new Operation() {
+            @Override
+            public void apply(String chunkName) throws Exception {
+                ObjectNotFoundException notFound = null;
+                for (Workspace source : sources) {
+                    try {
+                        storageManager.copyChunk(source, destination, chunkName);
+                        return;
+                    } catch (ObjectNotFoundException e) {
+                        notFound = e;
+                    }
+                }
+
+                // copied by a previous run, which may have deleted the source
+                if (!storageManager.hasChunk(destination, chunkName)) {
+                    throw notFound;
+                }
+            }
+        }, listener);
+    }
+
+    public void delete(Workspace workspace, List<String> chunks, Listener listener) throws DAOException,
+            ChunkTransferException {
+
+        CompletionService<BulkDeleteResult> completion = new ExecutorCompletionService<BulkDeleteResult>(executor);
+        int next = 0;
+        int inFlight = 0;
+        int failed = 0;
+        String lastError = null;
+
+        try {
+            while (next < chunks.size() || inFlight > 0) {
+                while (inFlight < maxInFlight && next < chunks.size()) {
+                    int end = Math.min(next + deleteBatch, chunks.size());
+                    completion.submit(new BatchDelete(workspace, new ArrayList<String>(chunks.subList(next, end))));
+                    next = end;
+                    inFlight++;
+                }
+
+                BulkDeleteResult result = completion.take().get();
+                inFlight--;
+                for (String chunkName : result.getDeleted()) {
+                    listener.transferred(chunkName);
+                }
+                if (!result.getFailed().isEmpty()) {
+                    failed += result.getFailed().size();
+                    lastError = result.getFailed().values().iterator().next();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChunkTransferException("Chunk transfer interrupted", e);
+        } catch (ExecutionException e) {
+            throw new ChunkTransferException("Chunk transfer failed", e.getCause());
+        }
+
+        if (failed > 0) {
+            throw new ChunkTransferException(String.format("%d of %d chunks could not be deleted: %s", failed,
+                    chunks.size(), lastError));
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(List<String> chunks, Operation operation, Listener listener) throws DAOException,
+            ChunkTransferException {
+
+        CompletionService<Attempt> completion = new ExecutorCompletionService<Attempt>(executor);
+        Iterator<String> pending = chunks.iterator();
+        int inFlight = 0;
+        int failed = 0;
+        Throwable lastError = null;
+
+        try {
+            while (pending.hasNext() || inFlight > 0) {
+                while (inFlight < maxInFlight && pending.hasNext()) {
+                    completion.submit(new Attempt(operation, pending.next()));
+                    inFlight++;
+                }
+
+                Future<Attempt> done = completion.take();
+                inFlight--;
+                try {
+                    Attempt attempt = done.get();
+                    if (attempt.missing) {
+                        listener.missing(attempt.chunkName);
+                    } else {
+                        listener.transferred(attempt.chunkName);
+                    }
+                } catch (ExecutionException e) {
+                    failed++;
+                    lastError = e.getCause();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChunkTransferException("Chunk transfer interrupted", e);
+        }
+
+        if (failed > 0) {
+            throw new ChunkTransferException(String.format("%d of %d chunks could not be transferred", failed,
+                    chunks.size()), lastError);
+        }
+    }
+
+    private class Attempt implements Callable<Attempt> {
+
+        private final Operation operation;
+        private final String chunkName;
+        private boolean missing;
+
+        private Attempt(Operation operation, String chunkName) {
+            this.operation = operation;
+            this.chunkName = chunkName;
+        }
+
+        @Override
+        public Attempt call() throws Exception {
+            for (int attempt = 0;; attempt++) {
+                try {
+                    operation.apply(chunkName);
+                    return this;
+                } catch (ObjectNotFoundException e) {
+                    logger.warn(String.format("Chunk %s not found, skipped.", chunkName));
+                    missing = true;
+                    return this;
+                } catch (Exception e) {
+                    if (attempt >= maxRetries) {
+                        logger.error(String.format("Chunk %s failed after %d attempts", chunkName, attempt + 1), e);
+                        throw e;
+                    }
+                    logger.debug(String.format("Chunk %s failed, retrying: %s", chunkName, e));
+                    Thread.sleep(retryBackoff << Math.min(attempt, 10));
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a batch, retrying the chunks that failed.
+     */
+    private class BatchDelete implements Callable<BulkDeleteResult> {
+
+        private final Workspace workspace;
+        private final List<String> chunks;
+
+        private BatchDelete(Workspace workspace, List<String> chunks) {
+            this.workspace = workspace;
+            this.chunks = chunks;
+        }
+
+        @Override
+        public BulkDeleteResult call() throws Exception {
+            BulkDeleteResult total = new BulkDeleteResult();
+            List<String> pending = chunks;
+
+            for (int attempt = 0;; attempt++) {
+                BulkDeleteResult result;
+                try {
+                    result = storageManager.deleteChunks(workspace, pending);
+                } catch (Exception e) {
+                    result = new BulkDeleteResult();
+                    for (String chunkName : pending) {
+                        result.failed(chunkName, e.toString());
+                    }
+                }
+
+                for (String chunkName : result.getDeleted()) {
+                    total.deleted(chunkName);
+                }
+
+                if (result.getFailed().isEmpty()) {
+                    return total;
+                }
+
+                if (attempt >= maxRetries) {
+                    logger.error(String.format("%d chunks failed after %d attempts", result.getFailed().size(),
+                            attempt + 1));
+                    for (String chunkName : result.getFailed().keySet()) {
+                        total.failed(chunkName, result.getFailed().get(chunkName));
+                    }
+                    return total;
+                }
+
+                logger.debug(String.format("%d chunks failed, retrying", result.getFailed().size()));
+                pending = new ArrayList<String>(result.getFailed().keySet());
+                Thread.sleep(retryBackoff << Math.min(attempt, 10));
+            }
+        }
+    }
+}
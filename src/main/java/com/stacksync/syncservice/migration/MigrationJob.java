@@ -0,0 +1,133 @@
+package com.stacksync.syncservice.migration;
+
+import java.util.UUID;
+
+import com.stacksync.commons.models.Workspace;
+
+/**
+ * Move of a folder, metadata and chunks, from one workspace to another.
+ */
+public class MigrationJob {
+
+    public enum Status {
+
+        COPYING, SWITCHED, DONE, FAILED
+    }
+
+    private UUID id;
+    private Long itemId;
+    private UUID sourceWorkspaceId;
+    private String sourceContainer;
+    private UUID destinationWorkspaceId;
+    private String destinationContainer;
+    private boolean deleteSource;
+    private Status status;
+    private String error;
+
+    public MigrationJob() {
+    }
+
+    public MigrationJob(Long itemId, Workspace source, Workspace destination, boolean deleteSource) {
+        this.id = UUID.randomUUID();
+        this.itemId = itemId;
+        this.sourceWorkspaceId = source.getId();
+        this.sourceContainer = source.getSwiftContainer();
+        this.destinationWorkspaceId = destination.getId();
+        this.destinationContainer = destination.getSwiftContainer();
+        this.deleteSource = deleteSource;
+        this.status = Status.COPYING;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public UUID getSourceWorkspaceId() {
+        return sourceWorkspaceId;
+    }
+
+    public void setSourceWorkspaceId(UUID sourceWorkspaceId) {
+        this.sourceWorkspaceId = sourceWorkspaceId;
+    }
+
+    public String getSourceContainer() {
+        return sourceContainer;
+    }
+
+    public void setSourceContainer(String sourceContainer) {
+        this.sourceContainer = sourceContainer;
+    }
+
+    public UUID getDestinationWorkspaceId() {
+        return destinationWorkspaceId;
+    }
+
+    public void setDestinationWorkspaceId(UUID destinationWorkspaceId) {
+        this.destinationWorkspaceId = destinationWorkspaceId;
+    }
+
+    public String getDestinationContainer() {
+        return destinationContainer;
+    }
+
+    public void setDestinationContainer(String destinationContainer) {
+        this.destinationContainer = destinationContainer;
+    }
+
+    public boolean isDeleteSource() {
+        return deleteSource;
+    }
+
+    public void setDeleteSource(boolean deleteSource) {
+        this.deleteSource = deleteSource;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Only the id and the container are needed to move the chunks.
+     */
+    public Workspace getSourceWorkspace() {
+        Workspace workspace = new Workspace(sourceWorkspaceId);
+        workspace.setSwiftContainer(sourceContainer);
+        return workspace;
+    }
+
+    public Workspace getDestinationWorkspace() {
+        Workspace workspace = new Workspace(destinationWorkspaceId);
+        workspace.setSwiftContainer(destinationContainer);
+        return workspace;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MigrationJob[id=%s, item=%s, source=%s, destination=%s, status=%s]", id, itemId,
+                sourceWorkspaceId, destinationWorkspaceId, status);
+    }
+}
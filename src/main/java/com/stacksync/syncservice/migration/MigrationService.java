@@ -0,0 +1,321 @@
+package com.stacksync.syncservice.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.db.ConnectionPool;
+import com.stacksync.syncservice.db.DAOFactory;
+import com.stacksync.syncservice.db.ItemDAO;
+import com.stacksync.syncservice.db.MigrationJobDAO;
+import com.stacksync.syncservice.db.WorkspaceDAO;
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+import com.stacksync.syncservice.exceptions.dao.NoRowsAffectedDAOException;
+import com.stacksync.syncservice.exceptions.storage.ChunkTransferException;
+import com.stacksync.syncservice.handler.WorkspaceRevisions;
+import com.stacksync.syncservice.migration.MigrationJob.Status;
+import com.stacksync.syncservice.storage.StorageManager;
+import com.stacksync.syncservice.util.Config;
+
+/**
+ * Runs the migration jobs created when a folder is shared or unshared, one at
+ * a time and out of the request threads.
+ *
+ * The chunks are first copied to the destination container, then the items
+ * are switched to the destination workspace in a transaction, and only then
+ * the chunks are deleted from the source container. The progress is saved in
+ * the database, so the unfinished jobs are resumed when the service starts.
+ * A failed job is run again later, waiting twice as long after every failure,
+ * and left as FAILED after maxAttempts runs. The chunks found in no container
+ * are skipped and kept in the job as missing.
+ */
+public class MigrationService {
+
+    private static final Logger logger = Logger.getLogger(MigrationService.class.getName());
+    private static final int PROGRESS_BATCH = 100;
+    private static final long SHUTDOWN_TIMEOUT = 10000L;
+    private static final long JOB_RETRY_DELAY = 60000L;
+    private static final int JOB_RETRY_MAX_DOUBLINGS = 6;
+
+    private static MigrationService instance = null;
+
+    private final Connection connection;
+    private final MigrationJobDAO jobDao;
+    private final ItemDAO itemDao;
+    private final WorkspaceDAO workspaceDao;
+    private final StorageManager storageManager;
+    private final ChunkTransfer transfer;
+    private final ScheduledExecutorService jobs;
+    private final int maxAttempts;
+
+    private MigrationService(ConnectionPool pool, StorageManager storageManager, int threads, int maxRetries,
+            long retryBackoff, int maxAttempts) throws SQLException {
+        this.connection = pool.getConnection();
+        this.storageManager = storageManager;
+        this.maxAttempts = maxAttempts;
+
+        DAOFactory factory = new DAOFactory(Config.getDatasource());
+        this.jobDao = factory.getMigrationJobDAO(connection);
+        this.itemDao = factory.getItemDAO(connection);
+        this.workspaceDao = factory.getWorkspaceDao(connection);
+
+        this.transfer = new ChunkTransfer(storageManager, threads, maxRetries, retryBackoff,
+                Config.getSwiftBulkDeleteSize());
+        this.jobs = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MigrationService");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts the service and schedules the jobs left unfinished.
+     */
+    public static synchronized MigrationService start(ConnectionPool pool, StorageManager storageManager,
+            int threads, int maxRetries, long retryBackoff, int maxAttempts) throws SQLException, DAOException {
+        if (instance == null) {
+            instance = new MigrationService(pool, storageManager, threads, maxRetries, retryBackoff, maxAttempts);
+            instance.resume();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns null when the service has not been started.
+     */
+    public static synchronized MigrationService getInstance() {
+        return instance;
+    }
+
+    public static synchronized void stop() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * The job must already be stored.
+     */
+    public void schedule(MigrationJob job) {
+        schedule(job, 0, 0);
+    }
+
+    private void schedule(final MigrationJob job, final int failures, long delay) {
+        jobs.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (process(job) || jobs.isShutdown()) {
+                    return;
+                }
+
+                if (failures + 1 >= maxAttempts) {
+                    giveUp(job, failures + 1);
+                } else {
+                    long retryDelay = JOB_RETRY_DELAY << Math.min(failures, JOB_RETRY_MAX_DOUBLINGS);
+                    logger.info(String.format("Retrying %s in %d ms", job, retryDelay));
+                    schedule(job, failures + 1, retryDelay);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void resume() throws DAOException {
+        List<MigrationJob> unfinished = jobDao.findUnfinished();
+        for (MigrationJob job : unfinished) {
+            logger.info("Resuming " + job);
+            schedule(job);
+        }
+    }
+
+    private void shutdown() {
+        // interrupted and waiting jobs are resumed on the next start
+        jobs.shutdownNow();
+        transfer.shutdown();
+        try {
+            jobs.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error(e);
+        }
+    }
+
+    /**
+     * Returns false when the job failed.
+     */
+    private boolean process(MigrationJob job) {
+        logger.info("Starting " + job);
+        long start = System.currentTimeMillis();
+
+        try {
+            if (job.getStatus() == Status.COPYING) {
+                copy(job);
+                switchWorkspace(job);
+            }
+
+            // the chunks committed while the first copy was running
+            copy(job);
+            delete(job);
+
+            if (job.isDeleteSource()) {
+                deleteSourceWorkspace(job);
+            }
+
+            job.setStatus(Status.DONE);
+            job.setError(null);
+            jobDao.updateStatus(job);
+            logger.info(String.format("Finished %s in %d ms", job, System.currentTimeMillis() - start));
+            return true;
+
+        } catch (Exception e) {
+            logger.error(String.format("%s failed", job), e);
+            job.setError(e.toString());
+            try {
+                jobDao.updateStatus(job);
+            } catch (DAOException e1) {
+                logger.error(e1);
+            }
+            return false;
+        }
+    }
+
+    private void giveUp(MigrationJob job, int attempts) {
+        logger.error(String.format("%s failed %d times, giving up: %s", job, attempts, job.getError()));
+        job.setStatus(Status.FAILED);
+        try {
+            jobDao.updateStatus(job);
+        } catch (DAOException e) {
+            logger.error(e);
+        }
+    }
+
+    private void copy(MigrationJob job) throws DAOException, ChunkTransferException {
+        List<String> chunks = jobDao.findChunksToCopy(job.getId());
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        // chunks left in other containers by an unshare are copied from there
+        List<Workspace> sources = new ArrayList<Workspace>();
+        sources.add(job.getSourceWorkspace());
+        for (String container : workspaceDao.getContainers(job.getSourceWorkspaceId())) {
+            Workspace source = new Workspace(job.getSourceWorkspaceId());
+            source.setSwiftContainer(container);
+            sources.add(source);
+        }
+
+        Progress progress = new Progress(job, true);
+        try {
+            transfer.copy(sources, job.getDestinationWorkspace(), chunks, progress);
+        } finally {
+            progress.flush();
+        }
+    }
+
+    private void delete(MigrationJob job) throws DAOException, ChunkTransferException {
+        List<String> chunks = jobDao.findChunksToDelete(job.getId());
+        Progress progress = new Progress(job, false);
+        try {
+            transfer.delete(job.getSourceWorkspace(), chunks, progress);
+        } finally {
+            progress.flush();
+        }
+    }
+
+    private void switchWorkspace(MigrationJob job) throws DAOException, SQLException {
+        boolean committed = false;
+        connection.setAutoCommit(false);
+        try {
+            List<String> chunks = itemDao.migrateItem(job.getItemId(), job.getDestinationWorkspaceId());
+            jobDao.addChunks(job.getId(), chunks);
+            job.setStatus(Status.SWITCHED);
+            jobDao.updateStatus(job);
+            connection.commit();
+            committed = true;
+        } finally {
+            if (!committed) {
+                job.setStatus(Status.COPYING);
+                connection.rollback();
+            }
+            connection.setAutoCommit(true);
+        }
+
+        WorkspaceRevisions.getInstance().increment(job.getSourceWorkspaceId());
+        WorkspaceRevisions.getInstance().increment(job.getDestinationWorkspaceId());
+    }
+
+    private void deleteSourceWorkspace(MigrationJob job) throws DAOException {
+        try {
+            workspaceDao.delete(job.getSourceWorkspaceId());
+        } catch (NoRowsAffectedDAOException e) {
+            // already deleted by a previous run
+        }
+
+        try {
+            storageManager.deleteWorkspace(job.getSourceWorkspace());
+        } catch (Exception e) {
+            logger.warn(String.format("Could not delete container %s", job.getSourceContainer()), e);
+        }
+    }
+
+    /**
+     * Saves the transferred chunks in batches.
+     */
+    private class Progress implements ChunkTransfer.Listener {
+
+        private final MigrationJob job;
+        private final boolean copied;
+        private final List<String> pending = new ArrayList<String>();
+        private final List<String> missing = new ArrayList<String>();
+
+        private Progress(MigrationJob job, boolean copied) {
+            this.job = job;
+            this.copied = copied;
+        }
+
+        @Override
+        public void transferred(String chunkName) throws DAOException {
+            pending.add(chunkName);
+            if (pending.size() >= PROGRESS_BATCH) {
+                flush();
+            }
+        }
+
+        @Override
+        public void missing(String chunkName) throws DAOException {
+            missing.add(chunkName);
+            if (missing.size() >= PROGRESS_BATCH) {
+                flush();
+            }
+        }
+
+        private void flush() throws DAOException {
+            if (!missing.isEmpty()) {
+                logger.warn(String.format("%s: %d chunks not found, skipped", job, missing.size()));
+                jobDao.setMissing(job.getId(), missing);
+                missing.clear();
+            }
+            if (copied) {
+                jobDao.setCopied(job.getId(), pending);
+            } else {
+                jobDao.setDeleted(job.getId(), pending);
+            }
+            pending.clear();
+        }
+    }
+}
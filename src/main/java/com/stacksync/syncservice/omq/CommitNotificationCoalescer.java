@@ -0,0 +1,249 @@
+package com.stacksync.syncservice.omq;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.commons.models.CommitInfo;
+import com.stacksync.commons.notifications.CommitNotification;
+
+/**
+ * Merges the commit notifications of a workspace produced within a short
+ * window into a single multicast.
+ *
+ * The first notification of a quiet workspace is published right away, so
+ * isolated commits are not delayed, and opens a window. Notifications arriving
+ * while the window is open are queued and published together when it closes
+ * or when they reach the maximum number of items.
+ *
+ * A notification with a request id is the response its device waits for, so
+ * it is never merged: it is published at once, after the queued ones. Only
+ * the notifications without one, such as those of the API commits, are
+ * merged.
+ *
+ * The notifications of a workspace are published by one thread at a time, in
+ * the order they were released, so a later batch never overtakes an earlier
+ * one.
+ */
+public class CommitNotificationCoalescer {
+
+	public interface Publisher {
+		void publish(UUID workspaceId, CommitNotification notification);
+	}
+
+	private static final Logger logger = Logger.getLogger(CommitNotificationCoalescer.class.getName());
+
+	private final long window;
+	private final int maxItems;
+	private final Publisher publisher;
+	private final ScheduledExecutorService timer;
+	private final Map<UUID, Batch> batches;
+
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong published = new AtomicLong();
+
+	public CommitNotificationCoalescer(long window, int maxItems, Publisher publisher) {
+		this.window = window;
+		this.maxItems = maxItems;
+		this.publisher = publisher;
+		this.batches = new HashMap<UUID, Batch>();
+		this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "CommitNotificationCoalescer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public void submit(UUID workspaceId, CommitNotification notification) {
+		received.incrementAndGet();
+		boolean response = notification.getRequestId() != null && notification.getRequestId().length() > 0;
+
+		Batch publishing;
+		synchronized (batches) {
+			Batch batch = batches.get(workspaceId);
+			if (batch == null) {
+				batch = new Batch();
+				batches.put(workspaceId, batch);
+				scheduleFlush(workspaceId);
+				batch.release(notification);
+			} else if (response) {
+				if (!batch.isEmpty()) {
+					batch.release(batch.drain());
+				}
+				batch.release(notification);
+			} else {
+				batch.add(notification);
+				if (batch.items >= maxItems) {
+					batch.release(batch.drain());
+				}
+			}
+			publishing = batch.startPublishing();
+		}
+
+		if (publishing != null) {
+			publishReleased(workspaceId, publishing);
+		}
+	}
+
+	public long getReceived() {
+		return received.get();
+	}
+
+	public long getPublished() {
+		return published.get();
+	}
+
+	/**
+	 * Publishes the pending notifications and stops the timer.
+	 */
+	public void shutdown() {
+		timer.shutdownNow();
+
+		Map<UUID, Batch> pending = new HashMap<UUID, Batch>();
+		synchronized (batches) {
+			for (Map.Entry<UUID, Batch> entry : batches.entrySet()) {
+				Batch batch = entry.getValue();
+				if (!batch.isEmpty()) {
+					batch.release(batch.drain());
+				}
+				if (batch.startPublishing() != null) {
+					pending.put(entry.getKey(), batch);
+				}
+			}
+			batches.clear();
+		}
+
+		for (Map.Entry<UUID, Batch> entry : pending.entrySet()) {
+			publishReleased(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void scheduleFlush(final UUID workspaceId) {
+		timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				flush(workspaceId);
+			}
+		}, window, TimeUnit.MILLISECONDS);
+	}
+
+	private void flush(UUID workspaceId) {
+		Batch publishing;
+		synchronized (batches) {
+			Batch batch = batches.get(workspaceId);
+			if (batch == null) {
+				return;
+			}
+			if (batch.isEmpty() && !batch.publishing) {
+				// the workspace was quiet during the whole window
+				batches.remove(workspaceId);
+				return;
+			}
+			if (!batch.isEmpty()) {
+				batch.release(batch.drain());
+			}
+			scheduleFlush(workspaceId);
+			publishing = batch.startPublishing();
+		}
+
+		if (publishing != null) {
+			publishReleased(workspaceId, publishing);
+		}
+	}
+
+	/**
+	 * Publishes the released notifications of the batch until none is left.
+	 * Only the thread that started publishing calls it.
+	 */
+	private void publishReleased(UUID workspaceId, Batch batch) {
+		while (true) {
+			CommitNotification notification;
+			synchronized (batches) {
+				notification = batch.released.poll();
+				if (notification == null) {
+					batch.publishing = false;
+					return;
+				}
+			}
+			publish(workspaceId, notification);
+		}
+	}
+
+	private void publish(UUID workspaceId, CommitNotification notification) {
+		published.incrementAndGet();
+		try {
+			publisher.publish(workspaceId, notification);
+		} catch (Exception e) {
+			logger.error(String.format("Could not notify workspace: '%s'", workspaceId), e);
+		}
+	}
+
+	/**
+	 * Guarded by the batches lock.
+	 */
+	private static class Batch {
+
+		private final List<CommitNotification> notifications = new ArrayList<CommitNotification>();
+		private int items;
+		// waiting to be published, in order
+		private final LinkedList<CommitNotification> released = new LinkedList<CommitNotification>();
+		private boolean publishing;
+
+		private void add(CommitNotification notification) {
+			notifications.add(notification);
+			items += notification.getItems().size();
+		}
+
+		private boolean isEmpty() {
+			return notifications.isEmpty();
+		}
+
+		private void release(CommitNotification notification) {
+			released.add(notification);
+		}
+
+		/**
+		 * Returns this batch when the caller has to publish the released
+		 * notifications, or null when another thread is already doing it.
+		 */
+		private Batch startPublishing() {
+			if (publishing || released.isEmpty()) {
+				return null;
+			}
+			publishing = true;
+			return this;
+		}
+
+		private CommitNotification drain() {
+			CommitNotification result;
+			if (notifications.size() == 1) {
+				result = notifications.get(0);
+			} else {
+				List<CommitInfo> merged = new ArrayList<CommitInfo>(items);
+				for (CommitNotification notification : notifications) {
+					merged.addAll(notification.getItems());
+				}
+				// the quota of the last commit is the current one
+				CommitNotification last = notifications.get(notifications.size() - 1);
+				result = new CommitNotification("", merged, last.getLimitQuota(), last.getUsedQuota());
+			}
+
+			notifications.clear();
+			items = 0;
+			return result;
+		}
+	}
+}
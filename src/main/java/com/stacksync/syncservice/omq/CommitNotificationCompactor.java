@@ -0,0 +1,40 @@
+package com.stacksync.syncservice.omq;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.stacksync.commons.models.CommitInfo;
+import com.stacksync.commons.models.ItemMetadata;
+import com.stacksync.commons.notifications.CommitNotification;
+
+/**
+ * Strips the metadata of the committed items of a notification down to what
+ * the devices need to match it with their local state: id, version,
+ * temporal id and status. Items that were not committed keep the full server
+ * metadata, the devices need it to solve the conflict.
+ */
+public class CommitNotificationCompactor {
+
+	public static CommitNotification compact(CommitNotification notification) {
+		List<CommitInfo> items = new ArrayList<CommitInfo>(notification.getItems().size());
+
+		for (CommitInfo info : notification.getItems()) {
+			ItemMetadata metadata = info.getMetadata();
+			if (!info.isCommitSucceed() || metadata == null) {
+				items.add(info);
+				continue;
+			}
+
+			ItemMetadata compact = new ItemMetadata();
+			compact.setId(metadata.getId());
+			compact.setVersion(metadata.getVersion());
+			compact.setTempId(metadata.getTempId());
+			compact.setStatus(metadata.getStatus());
+
+			items.add(new CommitInfo(info.getCommittedVersion(), true, compact));
+		}
+
+		return new CommitNotification(notification.getRequestId(), items, notification.getLimitQuota(),
+				notification.getUsedQuota());
+	}
+}
@@ -0,0 +1,322 @@
+package com.stacksync.syncservice.omq;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import omq.common.broker.Broker;
+import omq.exception.RemoteException;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.commons.notifications.CommitNotification;
+import com.stacksync.commons.notifications.ShareProposalNotification;
+import com.stacksync.commons.notifications.UnshareNotification;
+import com.stacksync.commons.notifications.UpdateWorkspaceNotification;
+import com.stacksync.commons.omq.RemoteClient;
+import com.stacksync.commons.omq.RemoteWorkspace;
+
+/**
+ * Sends the notifications to the clients out of the request threads.
+ *
+ * Notifications are queued in one of several single threaded lanes chosen by
+ * addressee, so notifications to different addressees are sent in parallel
+ * while the ones to the same addressee keep their order. When a lane is full
+ * the calling thread waits for room in it, and after a few seconds drops the
+ * notification, as sending it out of the lane would break the order. The
+ * broker proxies of the most recent addressees are
+ * cached. With no threads, notifications are sent inline.
+ *
+ * With a coalescing window, the commit notifications go through a
+ * {@link CommitNotificationCoalescer} first.
+ */
+public class NotificationPublisher {
+
+	private static final Logger logger = Logger.getLogger(NotificationPublisher.class.getName());
+	private static final long SHUTDOWN_TIMEOUT = 10000L;
+	private static final long SUBMIT_TIMEOUT = 5000L;
+	private static final int MAX_PROXIES = 10000;
+
+	private final Broker broker;
+	private final ThreadPoolExecutor[] lanes;
+	private final Semaphore[] slots;
+	private final CommitNotificationCoalescer coalescer;
+	private final Map<String, RemoteWorkspace> workspaces;
+	private final Map<String, RemoteClient> clients;
+
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong blocked = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	public NotificationPublisher(Broker broker, int threads, int queueSize, long coalesceWindow,
+			int coalesceMaxItems) {
+		this.broker = broker;
+		this.workspaces = createProxyCache();
+		this.clients = createProxyCache();
+		this.lanes = new ThreadPoolExecutor[threads];
+		this.slots = new Semaphore[threads];
+
+		int laneSize = Math.max(1, queueSize / Math.max(1, threads));
+		for (int i = 0; i < threads; i++) {
+			final String name = "NotificationPublisher-" + i;
+			lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, name);
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			slots[i] = new Semaphore(laneSize);
+		}
+
+		if (coalesceWindow > 0) {
+			this.coalescer = new CommitNotificationCoalescer(coalesceWindow, coalesceMaxItems,
+					new CommitNotificationCoalescer.Publisher() {
+						@Override
+						public void publish(UUID workspaceId, CommitNotification notification) {
+							submitCommit(workspaceId, notification);
+						}
+					});
+		} else {
+			this.coalescer = null;
+		}
+	}
+
+	public void notifyCommit(UUID workspaceId, CommitNotification notification) {
+		if (coalescer != null) {
+			coalescer.submit(workspaceId, notification);
+		} else {
+			submitCommit(workspaceId, notification);
+		}
+	}
+
+	private void submitCommit(UUID workspaceId, final CommitNotification notification) {
+		submit(new Delivery(workspaceId.toString()) {
+			@Override
+			protected void deliver() throws RemoteException {
+				getWorkspace(addressee).notifyCommit(notification);
+			}
+		});
+	}
+
+	public void notifyShareProposal(Collection<UUID> userIds, final ShareProposalNotification notification) {
+		for (UUID userId : userIds) {
+			submit(new Delivery(userId.toString()) {
+				@Override
+				protected void deliver() throws RemoteException {
+					getClient(addressee).notifyShareProposal(notification);
+				}
+			});
+		}
+	}
+
+	public void notifyUnshare(Collection<UUID> userIds, final UnshareNotification notification) {
+		for (UUID userId : userIds) {
+			submit(new Delivery(userId.toString()) {
+				@Override
+				protected void deliver() throws RemoteException {
+					getClient(addressee).notifyUnshare(notification);
+				}
+			});
+		}
+	}
+
+	public void notifyUpdateWorkspace(UUID userId, final UpdateWorkspaceNotification notification) {
+		submit(new Delivery(userId.toString()) {
+			@Override
+			protected void deliver() throws RemoteException {
+				getClient(addressee).notifyUpdateWorkspace(notification);
+			}
+		});
+	}
+
+	public int getQueueDepth() {
+		int depth = 0;
+		for (ThreadPoolExecutor lane : lanes) {
+			depth += lane.getQueue().size();
+		}
+		return depth;
+	}
+
+	public long getPublished() {
+		return published.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getBlocked() {
+		return blocked.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Average time from the notification being queued to being sent.
+	 */
+	public long getAverageLatencyMillis() {
+		long count = published.get() + failed.get();
+		return count == 0 ? 0 : totalLatency.get() / count / 1000000L;
+	}
+
+	public long getMaxLatencyMillis() {
+		return maxLatency.get() / 1000000L;
+	}
+
+	/**
+	 * Sends the queued notifications, waiting at most a few seconds.
+	 */
+	public void shutdown() {
+		if (coalescer != null) {
+			coalescer.shutdown();
+		}
+		for (ThreadPoolExecutor lane : lanes) {
+			lane.shutdown();
+		}
+		try {
+			for (ThreadPoolExecutor lane : lanes) {
+				lane.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		logger.info("Notification publisher stopped: " + this);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("NotificationPublisher[lanes=%d, queued=%d, published=%d, failed=%d, blocked=%d, "
+				+ "dropped=%d, avgLatency=%dms, maxLatency=%dms]", lanes.length, getQueueDepth(), getPublished(),
+				getFailed(), getBlocked(), getDropped(), getAverageLatencyMillis(), getMaxLatencyMillis());
+	}
+
+	/**
+	 * The lane queues are bounded by the slots, so a full lane makes the
+	 * caller wait for a slot, up to SUBMIT_TIMEOUT. Only the lane sends to an
+	 * addressee, so the notifications that cannot be queued are dropped.
+	 */
+	private void submit(final Delivery delivery) {
+		if (lanes.length == 0) {
+			delivery.run();
+			return;
+		}
+
+		int index = (delivery.addressee.hashCode() & Integer.MAX_VALUE) % lanes.length;
+		final Semaphore slot = slots[index];
+
+		boolean acquired = slot.tryAcquire();
+		if (!acquired) {
+			blocked.incrementAndGet();
+			try {
+				acquired = slot.tryAcquire(SUBMIT_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (!acquired) {
+			dropped.incrementAndGet();
+			logger.warn(String.format("Notification lane full, notification to '%s' dropped", delivery.addressee));
+			return;
+		}
+
+		try {
+			lanes[index].execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						delivery.run();
+					} finally {
+						slot.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			slot.release();
+			dropped.incrementAndGet();
+			logger.warn(String.format("Notification publisher shut down, notification to '%s' dropped",
+					delivery.addressee));
+		}
+	}
+
+	private static <T> Map<String, T> createProxyCache() {
+		return Collections.synchronizedMap(new LinkedHashMap<String, T>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+				return size() > MAX_PROXIES;
+			}
+		});
+	}
+
+	private RemoteWorkspace getWorkspace(String workspaceId) throws RemoteException {
+		RemoteWorkspace workspace = workspaces.get(workspaceId);
+		if (workspace == null) {
+			workspace = broker.lookupMulti(workspaceId, RemoteWorkspace.class);
+			workspaces.put(workspaceId, workspace);
+		}
+		return workspace;
+	}
+
+	private RemoteClient getClient(String userId) throws RemoteException {
+		RemoteClient client = clients.get(userId);
+		if (client == null) {
+			client = broker.lookupMulti(userId, RemoteClient.class);
+			clients.put(userId, client);
+		}
+		return client;
+	}
+
+	private abstract class Delivery implements Runnable {
+
+		protected final String addressee;
+		private final long queuedAt;
+
+		private Delivery(String addressee) {
+			this.addressee = addressee;
+			this.queuedAt = System.nanoTime();
+		}
+
+		protected abstract void deliver() throws RemoteException;
+
+		@Override
+		public void run() {
+			try {
+				deliver();
+				published.incrementAndGet();
+				logger.debug(String.format("Notification sent to '%s'", addressee));
+			} catch (Exception e) {
+				failed.incrementAndGet();
+				// the proxy is looked up again next time
+				workspaces.remove(addressee);
+				clients.remove(addressee);
+				logger.error(String.format("Could not notify: '%s'", addressee), e);
+			} finally {
+				long latency = System.nanoTime() - queuedAt;
+				totalLatency.addAndGet(latency);
+				long max = maxLatency.get();
+				while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+					max = maxLatency.get();
+				}
+			}
+		}
+	}
+}
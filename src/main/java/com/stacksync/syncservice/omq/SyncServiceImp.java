@@ -1,11 +1,11 @@
 package com.stacksync.syncservice.omq;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import omq.common.broker.Broker;
 import omq.common.util.ParameterQueue;
-import omq.exception.RemoteException;
 import omq.server.RemoteObject;
 
 import org.apache.log4j.Logger;
@@ -21,8 +21,6 @@ import com.stacksync.commons.notifications.CommitNotification;
 import com.stacksync.commons.notifications.ShareProposalNotification;
 import com.stacksync.commons.notifications.UpdateWorkspaceNotification;
 import com.stacksync.commons.omq.ISyncService;
-import com.stacksync.commons.omq.RemoteClient;
-import com.stacksync.commons.omq.RemoteWorkspace;
 import com.stacksync.commons.requests.CommitRequest;
 import com.stacksync.commons.requests.GetAccountRequest;
 import com.stacksync.commons.requests.GetChangesRequest;
@@ -50,11 +48,15 @@ public class SyncServiceImp extends RemoteObject implements ISyncService {
 	private transient ConnectionPool pool;
 	private transient SyncHandler[] handlers;
 	private transient Broker broker;
+	private transient NotificationPublisher publisher;
+	private transient boolean compactNotifications;
 
-	public SyncServiceImp(Broker broker, ConnectionPool pool) throws Exception {
+	public SyncServiceImp(Broker broker, ConnectionPool pool, NotificationPublisher publisher) throws Exception {
 		super();
 		this.broker = broker;
 		this.pool = pool;
+		this.publisher = publisher;
+		this.compactNotifications = Config.getNotificationsCompact();
 
 		index = 0;
 		// Create handlers
@@ -105,13 +107,12 @@ public class SyncServiceImp extends RemoteObject implements ISyncService {
 
 			CommitNotification result = getHandler().doCommit(user, workspace, device, request.getItems());
                         result.setRequestId(request.getRequestId());
-                        
-			UUID id = workspace.getId();
 
-			RemoteWorkspace commitNotifier = broker.lookupMulti(id.toString(), RemoteWorkspace.class);
-			commitNotifier.notifyCommit(result);
+			if (compactNotifications) {
+				result = CommitNotificationCompactor.compact(result);
+			}
 
-			logger.debug("Consumer: Response sent to workspace \"" + workspace + "\"");
+			publisher.notifyCommit(workspace.getId(), result);
 
 		} catch (Exception e) {
 			logger.error(e);
@@ -167,24 +168,13 @@ public class SyncServiceImp extends RemoteObject implements ISyncService {
 
 		notification.setRequestId(request.getRequestId());
 
-		// Send notification to owner
-		RemoteClient client;
-		try {
-			client = broker.lookupMulti(user.getId().toString(), RemoteClient.class);
-			client.notifyShareProposal(notification);
-		} catch (RemoteException e1) {
-			logger.error(String.format("Could not notify user: '%s'", user.getId()), e1);
-		}
-
-		// Send notifications to users
+		// Send notification to owner and users
+		List<UUID> addressees = new ArrayList<UUID>();
+		addressees.add(user.getId());
 		for (User addressee : workspace.getUsers()) {
-			try {
-				client = broker.lookupMulti(addressee.getId().toString(), RemoteClient.class);
-				client.notifyShareProposal(notification);
-			} catch (RemoteException e) {
-				logger.error(String.format("Could not notify user: '%s'", addressee.getId()), e);
-			}
+			addressees.add(addressee.getId());
 		}
+		publisher.notifyShareProposal(addressees, notification);
 	}
 
 	@Override
@@ -208,13 +198,7 @@ public class SyncServiceImp extends RemoteObject implements ISyncService {
 		notification.setRequestId(request.getRequestId());
 
 		// Send notification to owner
-		RemoteClient client;
-		try {
-			client = broker.lookupMulti(user.getId().toString(), RemoteClient.class);
-			client.notifyUpdateWorkspace(notification);
-		} catch (RemoteException e1) {
-			logger.error(String.format("Could not notify user: '%s'", user.getId()), e1);
-		}
+		publisher.notifyUpdateWorkspace(user.getId(), notification);
 	}
 
 	@Override
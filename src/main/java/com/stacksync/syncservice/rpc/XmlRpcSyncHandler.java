@@ -6,9 +6,6 @@ import java.util.List;
 import java.util.Random;
 import java.util.UUID;
 
-import omq.common.broker.Broker;
-import omq.exception.RemoteException;
-
 import org.apache.log4j.Logger;
 
 import com.stacksync.commons.models.CommitInfo;
@@ -19,36 +16,42 @@ import com.stacksync.commons.models.Workspace;
 import com.stacksync.commons.notifications.CommitNotification;
 import com.stacksync.commons.notifications.ShareProposalNotification;
 import com.stacksync.commons.notifications.UnshareNotification;
-import com.stacksync.commons.omq.RemoteClient;
-import com.stacksync.commons.omq.RemoteWorkspace;
 import com.stacksync.syncservice.db.ConnectionPool;
-import com.stacksync.syncservice.handler.SQLAPIHandler;
+import com.stacksync.syncservice.handler.APIHandler;
+import com.stacksync.syncservice.handler.PooledAPIHandler;
+import com.stacksync.syncservice.handler.WorkspaceRevisions;
 import com.stacksync.syncservice.handler.Handler.Status;
+import com.stacksync.syncservice.omq.NotificationPublisher;
 import com.stacksync.syncservice.rpc.messages.APICommitResponse;
 import com.stacksync.syncservice.rpc.messages.APICreateFolderResponse;
 import com.stacksync.syncservice.rpc.messages.APIDeleteResponse;
 import com.stacksync.syncservice.rpc.messages.APIGetFolderMembersResponse;
 import com.stacksync.syncservice.rpc.messages.APIGetMetadata;
+import com.stacksync.syncservice.rpc.messages.APIGetMetadataBatch;
 import com.stacksync.syncservice.rpc.messages.APIGetVersions;
 import com.stacksync.syncservice.rpc.messages.APIGetWorkspaceInfoResponse;
 import com.stacksync.syncservice.rpc.messages.APIResponse;
 import com.stacksync.syncservice.rpc.messages.APIRestoreMetadata;
 import com.stacksync.syncservice.rpc.messages.APIShareFolderResponse;
 import com.stacksync.syncservice.rpc.messages.APIUnshareFolderResponse;
+import com.stacksync.syncservice.rpc.messages.APIWaitForChangesResponse;
 import com.stacksync.syncservice.rpc.parser.IParser;
+import com.stacksync.syncservice.util.Config;
 import com.stacksync.syncservice.util.Constants;
 
 public class XmlRpcSyncHandler {
 
     private static final Logger logger = Logger.getLogger(XmlRpcSyncHandler.class.getName());
-    private SQLAPIHandler apiHandler;
+    public static final long MAX_WAIT_TIMEOUT = 300000L;
+    private APIHandler apiHandler;
     private IParser parser;
-    private Broker broker;
+    private NotificationPublisher publisher;
 
-    public XmlRpcSyncHandler(Broker broker, ConnectionPool pool) {
+    public XmlRpcSyncHandler(NotificationPublisher publisher, ConnectionPool pool) {
         try {
-            this.apiHandler = new SQLAPIHandler(pool);
-            this.broker = broker;
+            this.apiHandler = new PooledAPIHandler(pool, Config.getApiHandlerPoolSize(),
+                    Config.getApiHandlerTimeout());
+            this.publisher = publisher;
             this.parser = Reader.getInstance("com.stacksync.syncservice.rpc.parser.JSONParser");
 
             logger.info("XMLRPC server set up done.");
@@ -84,9 +87,78 @@ public class XmlRpcSyncHandler {
 
         APIGetMetadata response = this.apiHandler.getMetadata(user, fileId, includeChunks, version, isFolder);
 
-        logger.debug(String.format("XMLRPC Response. %s", response.toString()));
+        String strResponse = response.toString();
+        logger.debug(String.format("XMLRPC Response. %s", strResponse));
+
+        return strResponse;
+    }
+
+    public String getMetadata(String strUserId, String strItemId, String strIncludeChunks, String strVersion,
+            String strIsFolder, String strEtag) {
+
+        logger.debug(String.format(
+                "XMLRPC Request. getMetadata [userId: %s, fileId: %s, chunks: %s, version: %s, etag: %s]",
+                strUserId, strItemId, strIncludeChunks, strVersion, strEtag));
+
+        Long fileId = null;
+        try {
+            fileId = Long.parseLong(strItemId);
+        } catch (NumberFormatException ex) {
+        }
+
+        Boolean isFolder = Boolean.parseBoolean(strIsFolder);
+
+        Boolean includeChunks = Boolean.parseBoolean(strIncludeChunks);
+
+        Long version = null;
+        try {
+            version = Long.parseLong(strVersion);
+        } catch (NumberFormatException ex) {
+        }
 
-        return response.toString();
+        User user = new User();
+        user.setId(UUID.fromString(strUserId));
+
+        APIGetMetadata response = this.apiHandler.getMetadata(user, fileId, includeChunks, version, isFolder,
+                strEtag);
+
+        String strResponse = response.toString();
+        logger.debug(String.format("XMLRPC Response. %s", strResponse));
+
+        return strResponse;
+    }
+
+    /**
+     * The ids may come as strings or as XML-RPC integers.
+     */
+    public String getMetadataBatch(String strUserId, List<Object> strItemIds, String strIncludeChunks) {
+
+        logger.debug(String.format("XMLRPC Request. getMetadataBatch [userId: %s, itemIds: %s, chunks: %s]",
+                strUserId, strItemIds, strIncludeChunks));
+
+        List<Long> itemIds = new ArrayList<Long>();
+        for (Object strItemId : strItemIds) {
+            try {
+                itemIds.add(Long.valueOf(String.valueOf(strItemId)));
+            } catch (NumberFormatException ex) {
+                String strResponse = new APIGetMetadataBatch(null, false, 400, "Invalid item id: " + strItemId)
+                        .toString();
+                logger.debug(String.format("XMLRPC Response. %s", strResponse));
+                return strResponse;
+            }
+        }
+
+        Boolean includeChunks = Boolean.parseBoolean(strIncludeChunks);
+
+        User user = new User();
+        user.setId(UUID.fromString(strUserId));
+
+        APIGetMetadataBatch response = this.apiHandler.getMetadataBatch(user, itemIds, includeChunks);
+
+        String strResponse = response.toString();
+        logger.debug(String.format("XMLRPC Response. %s", strResponse));
+
+        return strResponse;
     }
 
     public String getFolderContents(String strUserId, String strFolderId, String strIncludeDeleted) {
@@ -109,9 +181,119 @@ public class XmlRpcSyncHandler {
 
         APIGetMetadata response = this.apiHandler.getFolderContent(user, folderId, includeDeleted);
 
-        logger.debug(String.format("XMLRPC Response. %s", response.toString()));
+        String strResponse = response.toString();
+        logger.debug(String.format("XMLRPC Response. %s", strResponse));
 
-        return response.toString();
+        return strResponse;
+    }
+
+    public String getFolderContents(String strUserId, String strFolderId, String strIncludeDeleted,
+            String strEtag) {
+
+        logger.debug(String.format(
+                "XMLRPC Request. getFolderContents [userId: %s, folderId: %s, includeDeleted: %s, etag: %s]",
+                strUserId, strFolderId, strIncludeDeleted, strEtag));
+
+        Long folderId = null;
+        try {
+            folderId = Long.parseLong(strFolderId);
+        } catch (NumberFormatException ex) {
+        }
+
+        Boolean includeDeleted = Boolean.parseBoolean(strIncludeDeleted);
+
+        User user = new User();
+        user.setId(UUID.fromString(strUserId));
+
+        APIGetMetadata response = this.apiHandler.getFolderContent(user, folderId, includeDeleted, strEtag);
+
+        String strResponse = response.toString();
+        logger.debug(String.format("XMLRPC Response. %s", strResponse));
+
+        return strResponse;
+    }
+
+    public String getFolderContents(String strUserId, String strFolderId, String strIncludeDeleted,
+            String strPageSize, String strCursor) {
+
+        logger.debug(String.format(
+                "XMLRPC Request. getFolderContents [userId: %s, folderId: %s, includeDeleted: %s, pageSize: %s, cursor: %s]",
+                strUserId, strFolderId, strIncludeDeleted, strPageSize, strCursor));
+
+        Long folderId = null;
+        try {
+            folderId = Long.parseLong(strFolderId);
+        } catch (NumberFormatException ex) {
+        }
+
+        Integer pageSize = null;
+        try {
+            pageSize = Integer.parseInt(strPageSize);
+        } catch (NumberFormatException ex) {
+        }
+
+        Boolean includeDeleted = Boolean.parseBoolean(strIncludeDeleted);
+
+        User user = new User();
+        user.setId(UUID.fromString(strUserId));
+
+        APIGetMetadata response = this.apiHandler.getFolderContent(user, folderId, includeDeleted, pageSize,
+                strCursor);
+
+        String strResponse = response.toString();
+        logger.debug(String.format("XMLRPC Response. %s", strResponse));
+
+        return strResponse;
+    }
+
+    public String waitForChanges(String strUserId, String strWorkspaceId, String strSinceRevision,
+            String strTimeoutMs) {
+
+        logger.debug(String.format(
+                "XMLRPC Request. waitForChanges [userId: %s, workspaceId: %s, sinceRevision: %s, timeout: %s]",
+                strUserId, strWorkspaceId, strSinceRevision, strTimeoutMs));
+
+        UUID workspaceId;
+        try {
+            workspaceId = UUID.fromString(strWorkspaceId);
+        } catch (IllegalArgumentException ex) {
+            return new APIWaitForChangesResponse(null, null, false, 400, "Invalid workspace id.").toString();
+        }
+
+        Long sinceRevision = null;
+        try {
+            sinceRevision = Long.parseLong(strSinceRevision);
+        } catch (NumberFormatException ex) {
+        }
+
+        long timeout = 0L;
+        try {
+            timeout = Math.min(Math.max(Long.parseLong(strTimeoutMs), 0L), MAX_WAIT_TIMEOUT);
+        } catch (NumberFormatException ex) {
+        }
+
+        User user = new User();
+        user.setId(UUID.fromString(strUserId));
+
+        APIWaitForChangesResponse response = this.apiHandler.getWorkspaceRevision(user, workspaceId,
+                sinceRevision);
+
+        // wait outside the handler, no connection is used while parked
+        if (response.getSuccess() && !response.getChanged() && timeout > 0) {
+            long revision;
+            try {
+                revision = WorkspaceRevisions.getInstance().awaitChange(workspaceId, sinceRevision, timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                revision = WorkspaceRevisions.getInstance().getRevision(workspaceId);
+            }
+            response = new APIWaitForChangesResponse(revision != sinceRevision, revision, true, 0, "");
+        }
+
+        String strResponse = response.toString();
+        logger.debug(String.format("XMLRPC Response. %s", strResponse));
+
+        return strResponse;
     }
 
     public String getVersions(String strUserId, String strFileId) {
@@ -133,8 +315,9 @@ public class XmlRpcSyncHandler {
 
         APIGetVersions response = this.apiHandler.getVersions(user, item);
 
-        logger.debug("XMLRPC -> resp -->[" + response.toString() + "]");
-        return response.toString();
+        String strResponse = response.toString();
+        logger.debug("XMLRPC -> resp -->[" + strResponse + "]");
+        return strResponse;
     }
 
     public String newFolder(String strUserId, String strFolderName, String strParentId) {
@@ -170,9 +353,9 @@ public class XmlRpcSyncHandler {
             this.sendMessageToClients(workspace, response);
         }
 
-        logger.debug("XMLRPC -> resp -->[" + response.toString() + "]");
-
-        return response.toString();
+        String strResponse = response.toString();
+        logger.debug("XMLRPC -> resp -->[" + strResponse + "]");
+        return strResponse;
     }
 
     public String newFile(String strUserId, String strFileName, String strParentId, String strChecksum,
@@ -205,8 +388,9 @@ public class XmlRpcSyncHandler {
         APICommitResponse parentResponse = checkParentMetadata(parentId, metadataResponse);
 
         if (!parentResponse.getSuccess()) {// error
-            logger.debug("XMLRPC -> Error resp -->[" + parentResponse.toString() + "]");
-            return parentResponse.toString();
+            String strResponse = parentResponse.toString();
+            logger.debug("XMLRPC -> Error resp -->[" + strResponse + "]");
+            return strResponse;
         }
 
         ItemMetadata item = new ItemMetadata();
@@ -358,11 +542,14 @@ public class XmlRpcSyncHandler {
         APIDeleteResponse response = this.apiHandler.deleteItem(user, object);
 
         if (response.getSuccess()) {
-            this.sendMessageToClients(response.getMetadata().getWorkspaceId().toString(), response);
+            // one notification for the whole deleted subtree
+            this.sendMessageToClients(response.getMetadata().getWorkspaceId().toString(),
+                    response.getDeletedItems(), response.getQuotaLimit(), response.getQuotaUsed());
         }
 
-        logger.debug("XMLRPC -> resp -->[" + response.toString() + "]");
-        return response.toString();
+        String strResponse = response.toString();
+        logger.debug("XMLRPC -> resp -->[" + strResponse + "]");
+        return strResponse;
     }
 
     // necessary?
@@ -517,8 +704,9 @@ public class XmlRpcSyncHandler {
 
         APIGetWorkspaceInfoResponse response = this.apiHandler.getWorkspaceInfo(user, item);
 
-        logger.debug("XMLRPC -> resp --> [" + response.toString() + "]");
-        return response.toString();
+        String strResponse = response.toString();
+        logger.debug("XMLRPC -> resp --> [" + strResponse + "]");
+        return strResponse;
 
     }
 
@@ -560,25 +748,13 @@ public class XmlRpcSyncHandler {
 
         notification.setRequestId("");
 
-        // Send notification to owner
-        RemoteClient client;
-        try {
-            client = broker.lookupMulti(workspace.getOwner().getId().toString(), RemoteClient.class);
-            client.notifyShareProposal(notification);
-        } catch (RemoteException e1) {
-            logger.error(String.format("Could not notify user: '%s'", workspace.getOwner().getId()), e1);
-        }
-
-        // Send notifications to users
+        // Send notification to owner and users
+        List<UUID> addressees = new ArrayList<UUID>();
+        addressees.add(workspace.getOwner().getId());
         for (User addressee : workspace.getUsers()) {
-            try {
-                client = broker.lookupMulti(addressee.getId().toString(), RemoteClient.class);
-                client.notifyShareProposal(notification);
-            } catch (RemoteException e) {
-                logger.error(String.format("Could not notify user: '%s'", addressee.getId()), e);
-            }
+            addressees.add(addressee.getId());
         }
-
+        publisher.notifyShareProposal(addressees, notification);
     }
 
     private void unBindUsersToWorkspace(Workspace workspace, List<User> usersToRemove, boolean isUnshared, Long folderId) {
@@ -589,27 +765,16 @@ public class XmlRpcSyncHandler {
                 workspace.getSwiftContainer(), workspace.getSwiftUrl(), workspace.isEncrypted());
 
         notification.setRequestId("");
-        RemoteClient client;
-        // Send notification to owner
+
+        // Send notification to owner and removed users
+        List<UUID> addressees = new ArrayList<UUID>();
         if (isUnshared) {
-            try {
-                client = broker.lookupMulti(workspace.getOwner().getId().toString(), RemoteClient.class);
-                client.notifyUnshare(notification);
-            } catch (RemoteException e1) {
-                logger.error(String.format("Could not notify user: '%s'", workspace.getOwner().getId()), e1);
-            }
+            addressees.add(workspace.getOwner().getId());
         }
-
-
-        // Send notifications to users
         for (User addressee : usersToRemove) {
-            try {
-                client = broker.lookupMulti(addressee.getId().toString(), RemoteClient.class);
-                client.notifyUnshare(notification);
-            } catch (RemoteException e) {
-                logger.error(String.format("Could not notify user: '%s'", addressee.getId()), e);
-            }
+            addressees.add(addressee.getId());
         }
+        publisher.notifyUnshare(addressees, notification);
     }
 
     private void sendMessageToClients(String workspaceName, APIResponse generalResponse) {
@@ -617,16 +782,15 @@ public class XmlRpcSyncHandler {
         CommitInfo info = generalResponse.getItem();
         List<CommitInfo> responseObjects = new ArrayList<CommitInfo>();
         responseObjects.add(info);
-        CommitNotification result = new CommitNotification("", responseObjects, generalResponse.getQuotaLimit(), generalResponse.getQuotaUsed());
+        sendMessageToClients(workspaceName, responseObjects, generalResponse.getQuotaLimit(),
+                generalResponse.getQuotaUsed());
+    }
 
-        RemoteWorkspace commitNotifier;
-        try {
-            commitNotifier = broker.lookupMulti(workspaceName, RemoteWorkspace.class);
-            commitNotifier.notifyCommit(result);
-        } catch (RemoteException e) {
-            // e.printStackTrace();
-            logger.error("Error sending the notification to the clients: " + e);
-        }
+    private void sendMessageToClients(String workspaceName, List<CommitInfo> responseObjects, Long quotaLimit,
+            Long quotaUsed) {
+
+        CommitNotification result = new CommitNotification("", responseObjects, quotaLimit, quotaUsed);
 
+        publisher.notifyCommit(UUID.fromString(workspaceName), result);
     }
 }
@@ -0,0 +1,348 @@
+package com.stacksync.syncservice.rpc.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.google.gson.JsonObject;
+
+import com.stacksync.syncservice.exceptions.InvalidHttpRequestException;
+
+/**
+ * Non-blocking HTTP/1.1 server. A single selector thread accepts connections,
+ * reads and parses requests and writes responses, while requests are handled
+ * by a bounded pool of workers. Connections are kept alive and pipelined
+ * requests are handled one after the other, so responses are sent in request
+ * order. Responses are compressed when the client accepts it and a
+ * {@link ResponseCompressor} is configured, and server statistics are served
+ * on GET /metrics.
+ */
+public class HttpJsonServer implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(HttpJsonServer.class.getName());
+    private static final long SELECT_TIMEOUT = 1000L;
+    private static final String METRICS_PATH = "/metrics";
+
+    private final int port;
+    private final HttpRequestHandler handler;
+    private final ResponseCompressor compressor;
+    private final ThreadPoolExecutor workers;
+    private final int maxRequestBytes;
+    private final long keepAliveTimeout;
+    private final ConcurrentLinkedQueue<Connection> completed;
+    private final ByteBuffer readBuffer;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public HttpJsonServer(int port, HttpRequestHandler handler, int workerThreads, int queueSize,
+            int maxRequestBytes, long keepAliveTimeout, ResponseCompressor compressor) {
+        this.port = port;
+        this.handler = handler;
+        this.compressor = compressor;
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize));
+        this.maxRequestBytes = maxRequestBytes;
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.completed = new ConcurrentLinkedQueue<Connection>();
+        this.readBuffer = ByteBuffer.allocate(16384);
+    }
+
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this, "HttpJsonServer-" + port);
+        selectorThread.start();
+        logger.info(String.format("HTTP server listening on port %d", port));
+    }
+
+    public void stop() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        workers.shutdown();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getActiveWorkers() {
+        return workers.getActiveCount();
+    }
+
+    public int getQueuedRequests() {
+        return workers.getQueue().size();
+    }
+
+    public HttpResponse getMetrics() {
+        JsonObject jMetrics = new JsonObject();
+        jMetrics.addProperty("active_workers", getActiveWorkers());
+        jMetrics.addProperty("queued_requests", getQueuedRequests());
+
+        if (compressor != null) {
+            JsonObject jCompression = new JsonObject();
+            jCompression.addProperty("compressed_responses", compressor.getCompressedResponses());
+            jCompression.addProperty("uncompressed_responses", compressor.getUncompressedResponses());
+            jCompression.addProperty("bytes_in", compressor.getBytesIn());
+            jCompression.addProperty("bytes_out", compressor.getBytesOut());
+            jCompression.addProperty("ratio", compressor.getCompressionRatio());
+            jCompression.addProperty("cpu_time_ms", compressor.getCpuTimeMillis());
+            jMetrics.add("compression", jCompression);
+        }
+        return HttpResponse.json(jMetrics.toString());
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT);
+                writeCompletedResponses();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        if (key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        logger.debug("Closing HTTP connection: " + e.getMessage());
+                        close(key);
+                    }
+                }
+
+                closeIdleConnections();
+            } catch (IOException e) {
+                logger.error("Error in the HTTP selector loop", e);
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.error("Error closing the HTTP server", e);
+        }
+        logger.info("HTTP server stopped");
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(key, new HttpRequestParser(maxRequestBytes)));
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+
+        readBuffer.clear();
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            close(key);
+            return;
+        }
+        readBuffer.flip();
+        connection.parser.append(readBuffer);
+        connection.lastActivity = System.currentTimeMillis();
+
+        handleNextRequest(connection);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+
+        channel.write(connection.output);
+        connection.lastActivity = System.currentTimeMillis();
+        if (connection.output.hasRemaining()) {
+            return;
+        }
+
+        connection.output = null;
+        if (connection.closeAfterWrite) {
+            close(key);
+            return;
+        }
+
+        connection.busy = false;
+        key.interestOps(SelectionKey.OP_READ);
+        handleNextRequest(connection);
+    }
+
+    private void handleNextRequest(Connection connection) {
+        if (connection.busy) {
+            // stop reading pipelined requests once enough is buffered
+            if (connection.parser.getBufferedBytes() > maxRequestBytes) {
+                connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            return;
+        }
+
+        final HttpRequest request;
+        try {
+            request = connection.parser.next();
+        } catch (InvalidHttpRequestException e) {
+            connection.busy = true;
+            complete(connection, HttpResponse.error(e.getStatus(), e.getReason(), e.getMessage()), false, null);
+            return;
+        }
+
+        if (request == null) {
+            return;
+        }
+
+        connection.busy = true;
+        final Connection target = connection;
+        final boolean keepAlive = request.isKeepAlive();
+        final String acceptEncoding = request.getHeader("accept-encoding");
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if ("GET".equals(request.getMethod()) && METRICS_PATH.equals(request.getPath())) {
+                            HttpJsonServer.this.complete(target, getMetrics(), keepAlive, acceptEncoding);
+                            return;
+                        }
+                        handler.handle(request, new HttpRequestHandler.ResponseCallback() {
+                            @Override
+                            public void complete(HttpResponse response) {
+                                HttpJsonServer.this.complete(target, response, keepAlive, acceptEncoding);
+                            }
+                        });
+                    } catch (Exception e) {
+                        logger.error(String.format("Error handling %s %s", request.getMethod(), request.getPath()),
+                                e);
+                        HttpJsonServer.this.complete(target,
+                                HttpResponse.error(500, "Internal Server Error", "Internal server error."),
+                                keepAlive, null);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("HTTP worker queue is full, rejecting request");
+            complete(connection, HttpResponse.error(503, "Service Unavailable", "Server too busy."), keepAlive,
+                    null);
+        }
+    }
+
+    /**
+     * Queues the response of the connection current request. May be called
+     * from any thread, only the first response of a request is sent. The body
+     * is compressed on the calling thread, never on the selector thread.
+     */
+    private void complete(Connection connection, HttpResponse response, boolean keepAlive, String acceptEncoding) {
+        if (compressor != null && acceptEncoding != null) {
+            compressor.compress(response, acceptEncoding);
+        }
+
+        synchronized (connection) {
+            if (connection.response != null || connection.output != null) {
+                return;
+            }
+            connection.response = ByteBuffer.wrap(response.toBytes(keepAlive));
+            connection.closeAfterWrite = !keepAlive;
+        }
+        completed.add(connection);
+        selector.wakeup();
+    }
+
+    private void writeCompletedResponses() {
+        Connection connection;
+        while ((connection = completed.poll()) != null) {
+            synchronized (connection) {
+                connection.output = connection.response;
+                connection.response = null;
+            }
+            if (connection.key.isValid()) {
+                connection.key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        List<SelectionKey> idle = new ArrayList<SelectionKey>();
+        for (SelectionKey key : selector.keys()) {
+            Connection connection = (Connection) key.attachment();
+            if (connection != null && !connection.busy && now - connection.lastActivity > keepAliveTimeout) {
+                idle.add(key);
+            }
+        }
+        for (SelectionKey key : idle) {
+            close(key);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            logger.debug("Error closing HTTP connection: " + e.getMessage());
+        }
+    }
+
+    private static class Connection {
+
+        private final SelectionKey key;
+        private final HttpRequestParser parser;
+        private ByteBuffer response;
+        private ByteBuffer output;
+        private boolean busy;
+        private boolean closeAfterWrite;
+        private long lastActivity;
+
+        private Connection(SelectionKey key, HttpRequestParser parser) {
+            this.key = key;
+            this.parser = parser;
+            this.lastActivity = System.currentTimeMillis();
+        }
+    }
+}
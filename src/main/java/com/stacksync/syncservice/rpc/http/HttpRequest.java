@@ -0,0 +1,51 @@
+package com.stacksync.syncservice.rpc.http;
+
+import java.util.Map;
+
+public class HttpRequest {
+
+    private final String method;
+    private final String path;
+    private final String version;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    public HttpRequest(String method, String path, String version, Map<String, String> headers, byte[] body) {
+        this.method = method;
+        this.path = path;
+        this.version = version;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Header names are lower case.
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public boolean isKeepAlive() {
+        String connection = getHeader("connection");
+        if ("HTTP/1.0".equals(version)) {
+            return "keep-alive".equalsIgnoreCase(connection);
+        }
+        return !"close".equalsIgnoreCase(connection);
+    }
+}
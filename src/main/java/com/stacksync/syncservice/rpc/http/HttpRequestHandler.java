@@ -0,0 +1,16 @@
+package com.stacksync.syncservice.rpc.http;
+
+/**
+ * Handles the requests received by {@link HttpJsonServer}. Requests are
+ * handed over from a worker thread; the response may be completed from that
+ * thread or later from any other one.
+ */
+public interface HttpRequestHandler {
+
+    void handle(HttpRequest request, ResponseCallback callback);
+
+    public interface ResponseCallback {
+
+        void complete(HttpResponse response);
+    }
+}
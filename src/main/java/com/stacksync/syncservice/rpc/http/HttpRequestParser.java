@@ -0,0 +1,129 @@
+package com.stacksync.syncservice.rpc.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.stacksync.syncservice.exceptions.InvalidHttpRequestException;
+
+/**
+ * Incremental HTTP/1.1 request parser. Bytes are appended as they are read
+ * from the socket and complete requests are taken out in arrival order, which
+ * is what allows pipelined requests on a keep-alive connection.
+ */
+public class HttpRequestParser {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final int MAX_HEADER_BYTES = 16384;
+
+    private final int maxBodyBytes;
+    private byte[] data;
+    private int start;
+    private int end;
+
+    public HttpRequestParser(int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.data = new byte[4096];
+        this.start = 0;
+        this.end = 0;
+    }
+
+    public void append(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (end + length > data.length) {
+            int pending = end - start;
+            if (pending + length > data.length) {
+                byte[] grown = new byte[Math.max(data.length * 2, pending + length)];
+                System.arraycopy(data, start, grown, 0, pending);
+                data = grown;
+            } else {
+                System.arraycopy(data, start, data, 0, pending);
+            }
+            start = 0;
+            end = pending;
+        }
+        buffer.get(data, end, length);
+        end += length;
+    }
+
+    public int getBufferedBytes() {
+        return end - start;
+    }
+
+    /**
+     * Returns the next complete request, or null if more bytes are needed.
+     */
+    public HttpRequest next() throws InvalidHttpRequestException {
+        int headerEnd = indexOfHeaderEnd();
+        if (headerEnd < 0) {
+            if (end - start > MAX_HEADER_BYTES) {
+                throw new InvalidHttpRequestException(431, "Request Header Fields Too Large",
+                        "Request headers are too large.");
+            }
+            return null;
+        }
+
+        String[] lines = new String(data, start, headerEnd - start, ISO_8859_1).split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            throw new InvalidHttpRequestException(400, "Bad Request", "Malformed request line.");
+        }
+
+        Map<String, String> headers = new HashMap<String, String>();
+        for (int i = 1; i < lines.length; i++) {
+            int separator = lines[i].indexOf(':');
+            if (separator <= 0) {
+                throw new InvalidHttpRequestException(400, "Bad Request", "Malformed header.");
+            }
+            headers.put(lines[i].substring(0, separator).trim().toLowerCase(), lines[i].substring(separator + 1)
+                    .trim());
+        }
+
+        if (headers.containsKey("transfer-encoding")) {
+            throw new InvalidHttpRequestException(411, "Length Required",
+                    "Chunked request bodies are not supported.");
+        }
+
+        int contentLength = 0;
+        String strContentLength = headers.get("content-length");
+        if (strContentLength != null) {
+            try {
+                contentLength = Integer.parseInt(strContentLength);
+            } catch (NumberFormatException e) {
+                throw new InvalidHttpRequestException(400, "Bad Request", "Invalid Content-Length.");
+            }
+            if (contentLength < 0) {
+                throw new InvalidHttpRequestException(400, "Bad Request", "Invalid Content-Length.");
+            }
+            if (contentLength > maxBodyBytes) {
+                throw new InvalidHttpRequestException(413, "Request Entity Too Large",
+                        "Request body is too large.");
+            }
+        }
+
+        int bodyStart = headerEnd + 4;
+        if (end - bodyStart < contentLength) {
+            return null;
+        }
+
+        byte[] body = new byte[contentLength];
+        System.arraycopy(data, bodyStart, body, 0, contentLength);
+        start = bodyStart + contentLength;
+        if (start == end) {
+            start = 0;
+            end = 0;
+        }
+
+        return new HttpRequest(requestLine[0], requestLine[1], requestLine[2], headers, body);
+    }
+
+    private int indexOfHeaderEnd() {
+        for (int i = start; i + 3 < end; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n' && data[i + 2] == '\r' && data[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
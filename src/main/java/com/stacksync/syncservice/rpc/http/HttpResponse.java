@@ -0,0 +1,71 @@
+package com.stacksync.syncservice.rpc.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gson.JsonObject;
+
+public class HttpResponse {
+
+    public static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final int status;
+    private final String reason;
+    private final Map<String, String> headers;
+    private byte[] body;
+
+    public HttpResponse(int status, String reason, String contentType, byte[] body) {
+        this.status = status;
+        this.reason = reason;
+        this.headers = new LinkedHashMap<String, String>();
+        this.body = body;
+        this.headers.put("Content-Type", contentType);
+    }
+
+    public static HttpResponse json(String json) {
+        return new HttpResponse(200, "OK", JSON_CONTENT_TYPE, json.getBytes(UTF8));
+    }
+
+    public static HttpResponse error(int status, String reason, String description) {
+        JsonObject jResponse = new JsonObject();
+        jResponse.addProperty("error", status);
+        jResponse.addProperty("description", description);
+        return new HttpResponse(status, reason, JSON_CONTENT_TYPE, jResponse.toString().getBytes(UTF8));
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public byte[] toBytes(boolean keepAlive) {
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append("Content-Length: ").append(body.length).append("\r\n");
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+
+        byte[] headBytes = head.toString().getBytes(ASCII);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(headBytes.length + body.length);
+        out.write(headBytes, 0, headBytes.length);
+        out.write(body, 0, body.length);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,198 @@
+package com.stacksync.syncservice.rpc.http;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses response bodies with gzip or deflate when the client accepts it
+ * and the body is bigger than a threshold. Deflaters hold native memory, so
+ * they are kept in a pool and reused instead of allocated per response.
+ */
+public class ResponseCompressor {
+
+    private static final byte[] GZIP_HEADER = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0,
+            0 };
+
+    private final int threshold;
+    private final int level;
+    private final BlockingQueue<Deflater> gzipDeflaters;
+    private final BlockingQueue<Deflater> zlibDeflaters;
+    private final ThreadMXBean threads;
+
+    private final AtomicLong compressedResponses = new AtomicLong();
+    private final AtomicLong uncompressedResponses = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong cpuNanos = new AtomicLong();
+
+    public ResponseCompressor(int threshold, int level, int poolSize) {
+        this.threshold = threshold;
+        this.level = level;
+        this.gzipDeflaters = new ArrayBlockingQueue<Deflater>(poolSize);
+        this.zlibDeflaters = new ArrayBlockingQueue<Deflater>(poolSize);
+        this.threads = ManagementFactory.getThreadMXBean();
+    }
+
+    /**
+     * Replaces the body of the response with its compressed form if the
+     * Accept-Encoding header of the request allows it.
+     */
+    public void compress(HttpResponse response, String acceptEncoding) {
+        byte[] body = response.getBody();
+        String encoding = negotiate(acceptEncoding);
+
+        if (encoding == null || body.length < threshold) {
+            uncompressedResponses.incrementAndGet();
+            return;
+        }
+
+        long start = getCpuTime();
+        byte[] compressed = deflate(body, "gzip".equals(encoding));
+        cpuNanos.addAndGet(getCpuTime() - start);
+
+        compressedResponses.incrementAndGet();
+        bytesIn.addAndGet(body.length);
+        bytesOut.addAndGet(compressed.length);
+
+        response.setBody(compressed);
+        response.setHeader("Content-Encoding", encoding);
+        response.setHeader("Vary", "Accept-Encoding");
+    }
+
+    public long getCompressedResponses() {
+        return compressedResponses.get();
+    }
+
+    public long getUncompressedResponses() {
+        return uncompressedResponses.get();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /**
+     * Compressed size divided by original size of the compressed responses.
+     */
+    public double getCompressionRatio() {
+        long in = bytesIn.get();
+        return in == 0 ? 1.0 : (double) bytesOut.get() / in;
+    }
+
+    public long getCpuTimeMillis() {
+        return cpuNanos.get() / 1000000L;
+    }
+
+    /**
+     * Returns gzip or deflate, preferring gzip, or null if the client accepts
+     * neither of them.
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        Boolean gzip = null;
+        Boolean deflate = null;
+        Boolean any = null;
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim().toLowerCase();
+
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = accepted;
+            } else if (coding.equals("deflate")) {
+                deflate = accepted;
+            } else if (coding.equals("*")) {
+                any = accepted;
+            }
+        }
+
+        // codings not listed explicitly take the value of *
+        if (gzip == null) {
+            gzip = any;
+        }
+        if (deflate == null) {
+            deflate = any;
+        }
+
+        if (Boolean.TRUE.equals(gzip)) {
+            return "gzip";
+        }
+        return Boolean.TRUE.equals(deflate) ? "deflate" : null;
+    }
+
+    private byte[] deflate(byte[] data, boolean gzip) {
+        BlockingQueue<Deflater> pool = gzip ? gzipDeflaters : zlibDeflaters;
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            // gzip carries raw deflate data, deflate uses the zlib format
+            deflater = new Deflater(level, gzip);
+        }
+
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 32);
+            if (gzip) {
+                out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            }
+
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+
+            if (gzip) {
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                writeIntLE(out, crc.getValue());
+                writeIntLE(out, data.length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.reset();
+            if (!pool.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, long value) {
+        out.write((int) (value & 0xff));
+        out.write((int) ((value >> 8) & 0xff));
+        out.write((int) ((value >> 16) & 0xff));
+        out.write((int) ((value >> 24) & 0xff));
+    }
+
+    private long getCpuTime() {
+        if (threads.isCurrentThreadCpuTimeSupported()) {
+            return threads.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,204 @@
+package com.stacksync.syncservice.rpc.http;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.stacksync.syncservice.handler.WorkspaceRevisions;
+import com.stacksync.syncservice.handler.WorkspaceRevisions.RevisionListener;
+import com.stacksync.syncservice.rpc.XmlRpcSyncHandler;
+import com.stacksync.syncservice.rpc.messages.APIWaitForChangesResponse;
+
+/**
+ * Exposes the {@link XmlRpcSyncHandler} operations as JSON over HTTP. A call
+ * is a POST to /api/&lt;operation&gt; whose body is the JSON array of the
+ * operation parameters, in the same order as in XML-RPC, and the response
+ * body is the JSON document the operation returns.
+ *
+ * waitForChanges does not keep a worker busy while waiting: the request is
+ * completed by the commit changing the workspace or by a timer.
+ */
+public class SyncHandlerDispatcher implements HttpRequestHandler {
+
+    private static final Logger logger = Logger.getLogger(SyncHandlerDispatcher.class.getName());
+    private static final String PREFIX = "/api/";
+
+    private final XmlRpcSyncHandler syncHandler;
+    private final Map<String, Method> operations;
+    private final ScheduledExecutorService timer;
+
+    public SyncHandlerDispatcher(XmlRpcSyncHandler syncHandler) {
+        this.syncHandler = syncHandler;
+        this.operations = new HashMap<String, Method>();
+        this.timer = Executors.newSingleThreadScheduledExecutor();
+
+        for (Method method : XmlRpcSyncHandler.class.getDeclaredMethods()) {
+            if (Modifier.isPublic(method.getModifiers()) && method.getReturnType() == String.class) {
+                operations.put(getKey(method.getName(), method.getParameterTypes().length), method);
+            }
+        }
+    }
+
+    @Override
+    public void handle(HttpRequest request, ResponseCallback callback) {
+
+        if (!request.getPath().startsWith(PREFIX)) {
+            callback.complete(HttpResponse.error(404, "Not Found", "Unknown path."));
+            return;
+        }
+        if (!"POST".equals(request.getMethod())) {
+            callback.complete(HttpResponse.error(405, "Method Not Allowed", "Only POST is supported."));
+            return;
+        }
+
+        String operation = request.getPath().substring(PREFIX.length());
+        List<Object> params;
+        try {
+            params = parseParams(request.getBody());
+        } catch (JsonParseException e) {
+            callback.complete(HttpResponse.error(400, "Bad Request", "Body must be a JSON array of parameters."));
+            return;
+        } catch (IllegalStateException e) {
+            callback.complete(HttpResponse.error(400, "Bad Request", "Body must be a JSON array of parameters."));
+            return;
+        }
+
+        Method method = operations.get(getKey(operation, params.size()));
+        if (method == null) {
+            callback.complete(HttpResponse.error(404, "Not Found", String.format(
+                    "Unknown operation %s with %d parameters.", operation, params.size())));
+            return;
+        }
+
+        boolean waitForChanges = "waitForChanges".equals(operation);
+        Object strTimeout = null;
+        if (waitForChanges) {
+            // only check the revision, the wait is done below
+            strTimeout = params.set(3, "0");
+        }
+
+        String strResponse;
+        try {
+            strResponse = (String) method.invoke(syncHandler, params.toArray());
+        } catch (IllegalArgumentException e) {
+            callback.complete(HttpResponse.error(400, "Bad Request", "Invalid parameters."));
+            return;
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                callback.complete(HttpResponse.error(400, "Bad Request", "Invalid parameters."));
+                return;
+            }
+            logger.error(String.format("Error invoking %s", operation), e.getCause());
+            callback.complete(HttpResponse.error(500, "Internal Server Error", "Internal server error."));
+            return;
+        } catch (IllegalAccessException e) {
+            logger.error(String.format("Error invoking %s", operation), e);
+            callback.complete(HttpResponse.error(500, "Internal Server Error", "Internal server error."));
+            return;
+        }
+
+        if (waitForChanges) {
+            waitForChanges((String) params.get(1), (String) strTimeout, strResponse, callback);
+            return;
+        }
+
+        callback.complete(HttpResponse.json(strResponse));
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Completes a waitForChanges call from the result of the immediate
+     * check, or registers a listener that completes it later.
+     */
+    private void waitForChanges(String strWorkspaceId, String strTimeout, String strResponse,
+            final ResponseCallback callback) {
+        JsonObject jResponse = new JsonParser().parse(strResponse).getAsJsonObject();
+        long timeout = 0L;
+        try {
+            timeout = Math.min(Long.parseLong(strTimeout), XmlRpcSyncHandler.MAX_WAIT_TIMEOUT);
+        } catch (NumberFormatException e) {
+        }
+
+        if (!jResponse.has("changed") || jResponse.get("changed").getAsBoolean() || timeout <= 0) {
+            callback.complete(HttpResponse.json(strResponse));
+            return;
+        }
+
+        final UUID workspaceId = UUID.fromString(strWorkspaceId);
+        final long sinceRevision = jResponse.get("revision").getAsLong();
+        final WorkspaceRevisions revisions = WorkspaceRevisions.getInstance();
+        final AtomicBoolean done = new AtomicBoolean(false);
+
+        final RevisionListener listener = new RevisionListener() {
+            @Override
+            public void revisionChanged(UUID changedWorkspace, long revision) {
+                if (done.compareAndSet(false, true)) {
+                    callback.complete(HttpResponse.json(new APIWaitForChangesResponse(true, revision, true, 0, "")
+                            .toString()));
+                }
+            }
+        };
+
+        if (!revisions.addListener(workspaceId, sinceRevision, listener)) {
+            long revision = revisions.getRevision(workspaceId);
+            callback.complete(HttpResponse.json(new APIWaitForChangesResponse(true, revision, true, 0, "")
+                    .toString()));
+            return;
+        }
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (done.compareAndSet(false, true)) {
+                    revisions.removeListener(workspaceId, listener);
+                    long revision = revisions.getRevision(workspaceId);
+                    callback.complete(HttpResponse.json(new APIWaitForChangesResponse(revision != sinceRevision,
+                            revision, true, 0, "").toString()));
+                }
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private List<Object> parseParams(byte[] body) {
+        JsonArray jParams = new JsonParser().parse(new String(body, HttpResponse.UTF8)).getAsJsonArray();
+
+        List<Object> params = new ArrayList<Object>();
+        for (JsonElement jParam : jParams) {
+            if (jParam.isJsonNull()) {
+                params.add(null);
+            } else if (jParam.isJsonArray()) {
+                List<String> values = new ArrayList<String>();
+                for (JsonElement jValue : jParam.getAsJsonArray()) {
+                    values.add(jValue.getAsString());
+                }
+                params.add(values);
+            } else {
+                params.add(jParam.getAsString());
+            }
+        }
+        return params;
+    }
+
+    private String getKey(String name, int parameters) {
+        return name + "/" + parameters;
+    }
+}
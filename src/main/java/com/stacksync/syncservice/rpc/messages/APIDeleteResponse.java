@@ -1,18 +1,44 @@
 package com.stacksync.syncservice.rpc.messages;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.stacksync.commons.models.CommitInfo;
 import com.stacksync.commons.models.ItemMetadata;
 
 public class APIDeleteResponse extends APIResponse {
 
+	private List<CommitInfo> deletedItems;
+
 	public APIDeleteResponse(ItemMetadata item, Boolean success, int error, String description) {
 		super();
 		this.success = success;
 		this.errorCode = error;
 		this.description = description;
+		this.deletedItems = new ArrayList<CommitInfo>();
 		if (item != null) {
 			this.item = new CommitInfo(item.getVersion(),
 					success, item);
+			this.deletedItems.add(this.item);
+		}
+	}
+
+	public List<CommitInfo> getDeletedItems() {
+		return deletedItems;
+	}
+
+	/**
+	 * @param items
+	 *            Every item deleted, the one given in the constructor first.
+	 */
+	public void setDeletedItems(List<ItemMetadata> items) {
+		this.deletedItems = new ArrayList<CommitInfo>();
+		if (this.item != null) {
+			this.deletedItems.add(this.item);
+		}
+		for (int i = 1; i < items.size(); i++) {
+			ItemMetadata item = items.get(i);
+			this.deletedItems.add(new CommitInfo(item.getVersion(), success, item));
 		}
 	}
 
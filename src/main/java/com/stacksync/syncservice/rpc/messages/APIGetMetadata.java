@@ -1,12 +1,20 @@
 package com.stacksync.syncservice.rpc.messages;
 
+import java.io.IOException;
+
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import com.stacksync.commons.models.ItemMetadata;
 
-public class APIGetMetadata extends APIResponse {
+public class APIGetMetadata extends StreamingAPIResponse {
 
 	private ItemMetadata itemMetadata;
+	private String nextCursor;
+	private Long totalCount;
+	private Boolean totalCountExact;
+	private String etag;
+	private Boolean notModified = false;
 	
 	public APIGetMetadata(ItemMetadata item, Boolean success, int error, String description) {
 		super();
@@ -20,12 +28,52 @@ public class APIGetMetadata extends APIResponse {
 	public ItemMetadata getItemMetadata(){
 		return itemMetadata;
 	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	public Long getTotalCount() {
+		return totalCount;
+	}
+
+	public Boolean getTotalCountExact() {
+		return totalCountExact;
+	}
+
+	public void setTotalCount(Long totalCount, Boolean exact) {
+		this.totalCount = totalCount;
+		this.totalCountExact = exact;
+	}
+	
+	public String getEtag() {
+		return etag;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public Boolean getNotModified() {
+		return notModified;
+	}
+
+	public void setNotModified(Boolean notModified) {
+		this.notModified = notModified;
+	}
 	
 	@Override
-	public String toString() {
+	public JsonObject toJsonTree() {
 		JsonObject jResponse = new JsonObject();
 
-		if (getSuccess()) {
+		if (getSuccess() && getNotModified()) {
+			jResponse.addProperty("not_modified", true);
+			jResponse.addProperty("etag", getEtag());
+		} else if (getSuccess()) {
 			ItemMetadata metadata = getItemMetadata();
 			jResponse = parseObjectMetadataForAPI(metadata);
 
@@ -39,11 +87,65 @@ public class APIGetMetadata extends APIResponse {
 
 				jResponse.add("contents", contents);
 			}
+
+			if (getNextCursor() != null) {
+				jResponse.addProperty("next_cursor", getNextCursor());
+			}
+
+			if (getTotalCount() != null) {
+				jResponse.addProperty("total_count", getTotalCount());
+				jResponse.addProperty("total_count_exact", getTotalCountExact());
+			}
+
+			if (getEtag() != null) {
+				jResponse.addProperty("etag", getEtag());
+			}
 		} else {
 			jResponse.addProperty("error", getErrorCode());
 			jResponse.addProperty("description", getDescription());
 		}
 		
-		return jResponse.toString();
+		return jResponse;
+	}
+
+	@Override
+	protected void writeJson(JsonWriter writer) throws IOException {
+		if (!getSuccess()) {
+			writeError(writer);
+			return;
+		}
+
+		writer.beginObject();
+		if (getNotModified()) {
+			writer.name("not_modified").value(true);
+			writer.name("etag").value(getEtag());
+			writer.endObject();
+			return;
+		}
+
+		ItemMetadata metadata = getItemMetadata();
+		writeObjectMetadataForAPIFields(writer, metadata);
+
+		if (metadata.getChildren() != null) {
+			writer.name("contents").beginArray();
+			for (ItemMetadata entry : metadata.getChildren()) {
+				writeObjectMetadataForAPI(writer, entry);
+			}
+			writer.endArray();
+		}
+
+		if (getNextCursor() != null) {
+			writer.name("next_cursor").value(getNextCursor());
+		}
+
+		if (getTotalCount() != null) {
+			writer.name("total_count").value(getTotalCount());
+			writeBoolean(writer.name("total_count_exact"), getTotalCountExact());
+		}
+
+		if (getEtag() != null) {
+			writer.name("etag").value(getEtag());
+		}
+		writer.endObject();
 	}
 }
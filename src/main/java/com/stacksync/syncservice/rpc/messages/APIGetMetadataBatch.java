@@ -0,0 +1,84 @@
+package com.stacksync.syncservice.rpc.messages;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+public class APIGetMetadataBatch extends StreamingAPIResponse {
+
+	private List<APIGetMetadata> results;
+
+	/**
+	 * @param results
+	 *            One response per requested id, in the order they were
+	 *            requested. Failed ones only need the id in their metadata.
+	 */
+	public APIGetMetadataBatch(List<APIGetMetadata> results, Boolean success, int error, String description) {
+		super();
+
+		this.success = success;
+		this.results = results;
+		this.description = description;
+		this.errorCode = error;
+	}
+
+	public List<APIGetMetadata> getResults() {
+		return results;
+	}
+
+	@Override
+	public JsonElement toJsonTree() {
+		JsonObject jResponse = new JsonObject();
+
+		if (getSuccess()) {
+
+			JsonArray list = new JsonArray();
+
+			for (APIGetMetadata result : results) {
+				JsonObject jResult;
+				if (result.getSuccess()) {
+					jResult = parseObjectMetadataForAPI(result.getItemMetadata());
+				} else {
+					jResult = new JsonObject();
+					jResult.addProperty("id", result.getItemMetadata().getId());
+					jResult.addProperty("error", result.getErrorCode());
+					jResult.addProperty("description", result.getDescription());
+				}
+				list.add(jResult);
+			}
+
+			return list;
+
+		} else {
+			jResponse.addProperty("error", getErrorCode());
+			jResponse.addProperty("description", getDescription());
+			return jResponse;
+		}
+	}
+
+	@Override
+	protected void writeJson(JsonWriter writer) throws IOException {
+		if (!getSuccess()) {
+			writeError(writer);
+			return;
+		}
+
+		writer.beginArray();
+		for (APIGetMetadata result : results) {
+			if (result.getSuccess()) {
+				writeObjectMetadataForAPI(writer, result.getItemMetadata());
+			} else {
+				writer.beginObject();
+				writer.name("id").value(result.getItemMetadata().getId());
+				writer.name("error").value(result.getErrorCode());
+				writer.name("description").value(result.getDescription());
+				writer.endObject();
+			}
+		}
+		writer.endArray();
+	}
+}
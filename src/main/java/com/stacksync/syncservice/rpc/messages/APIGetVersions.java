@@ -1,10 +1,13 @@
 package com.stacksync.syncservice.rpc.messages;
 
+import java.io.IOException;
+
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import com.stacksync.commons.models.ItemMetadata;
 
-public class APIGetVersions extends APIResponse {
+public class APIGetVersions extends StreamingAPIResponse {
 
 	private ItemMetadata itemMetadata;
 	
@@ -22,7 +25,7 @@ public class APIGetVersions extends APIResponse {
 	}
 	
 	@Override
-	public String toString() {
+	public JsonObject toJsonTree() {
 		JsonObject jResponse = new JsonObject();
 
 		if (getSuccess()) {
@@ -44,6 +47,27 @@ public class APIGetVersions extends APIResponse {
 			jResponse.addProperty("description", getDescription());
 		}
 
-		return jResponse.toString();
+		return jResponse;
+	}
+
+	@Override
+	protected void writeJson(JsonWriter writer) throws IOException {
+		if (!getSuccess()) {
+			writeError(writer);
+			return;
+		}
+
+		ItemMetadata metadata = getItemMetadata();
+		writer.beginObject();
+		writeObjectMetadataForAPIFields(writer, metadata);
+
+		if (metadata.getChildren() != null) {
+			writer.name("versions").beginArray();
+			for (ItemMetadata entry : metadata.getChildren()) {
+				writeObjectMetadataForAPI(writer, entry);
+			}
+			writer.endArray();
+		}
+		writer.endObject();
 	}
 }
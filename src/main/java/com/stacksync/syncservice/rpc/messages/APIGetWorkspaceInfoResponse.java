@@ -1,12 +1,17 @@
 package com.stacksync.syncservice.rpc.messages;
 
+import java.util.List;
+
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.stacksync.commons.models.User;
 import com.stacksync.commons.models.Workspace;
 
 public class APIGetWorkspaceInfoResponse extends APIResponse {
 
 	private Workspace workspace;
+	private List<String> containers;
 
 	public APIGetWorkspaceInfoResponse(Workspace workspace, Boolean success, int error, String description) {
 		super();
@@ -20,6 +25,13 @@ public class APIGetWorkspaceInfoResponse extends APIResponse {
 		return workspace;
 	}
 
+	/**
+	 * Other containers where chunks of the workspace can be found.
+	 */
+	public void setContainers(List<String> containers) {
+		this.containers = containers;
+	}
+
 	@Override
 	public String toString() {
 		JsonObject jResponse;
@@ -54,6 +66,14 @@ public class APIGetWorkspaceInfoResponse extends APIResponse {
 		jMetadata.addProperty("quota_used", workspace.getOwner().getQuotaUsedLogical().toString());
 		jMetadata.addProperty("quota_limit", workspace.getOwner().getQuotaLimit().toString());
 
+		JsonArray jContainers = new JsonArray();
+		if (containers != null) {
+			for (String container : containers) {
+				jContainers.add(new JsonPrimitive(container));
+			}
+		}
+		jMetadata.add("read_containers", jContainers);
+
 
 		return jMetadata;
 	}
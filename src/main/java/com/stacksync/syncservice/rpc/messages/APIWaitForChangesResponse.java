@@ -0,0 +1,41 @@
+package com.stacksync.syncservice.rpc.messages;
+
+import com.google.gson.JsonObject;
+
+public class APIWaitForChangesResponse extends APIResponse {
+
+	private Boolean changed;
+	private Long revision;
+
+	public APIWaitForChangesResponse(Boolean changed, Long revision, Boolean success, int error, String description) {
+		super();
+		this.success = success;
+		this.description = description;
+		this.errorCode = error;
+		this.changed = changed;
+		this.revision = revision;
+	}
+
+	public Boolean getChanged() {
+		return changed;
+	}
+
+	public Long getRevision() {
+		return revision;
+	}
+
+	@Override
+	public String toString() {
+		JsonObject jResponse = new JsonObject();
+
+		if (!getSuccess()) {
+			jResponse.addProperty("error", getErrorCode());
+			jResponse.addProperty("description", getDescription());
+		} else {
+			jResponse.addProperty("changed", getChanged());
+			jResponse.addProperty("revision", getRevision());
+		}
+
+		return jResponse.toString();
+	}
+}
@@ -0,0 +1,115 @@
+package com.stacksync.syncservice.rpc.messages;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+import com.stacksync.commons.models.ItemMetadata;
+
+/**
+ * Response serialized with a {@link JsonWriter} straight into a per-thread
+ * buffer instead of building a JSON tree first. {@link #toJsonTree()} keeps
+ * the tree based serialization, which produces exactly the same JSON.
+ */
+public abstract class StreamingAPIResponse extends APIResponse {
+
+	private static final int MAX_REUSED_BUFFER = 1024 * 1024;
+
+	private static final ThreadLocal<StringWriter> buffers = new ThreadLocal<StringWriter>() {
+		@Override
+		protected StringWriter initialValue() {
+			return new StringWriter(8192);
+		}
+	};
+
+	public abstract JsonElement toJsonTree();
+
+	protected abstract void writeJson(JsonWriter writer) throws IOException;
+
+	@Override
+	public String toString() {
+		StringWriter buffer = buffers.get();
+		buffer.getBuffer().setLength(0);
+
+		try {
+			JsonWriter writer = new JsonWriter(buffer);
+			writer.setLenient(true);
+			writeJson(writer);
+			writer.flush();
+		} catch (IOException e) {
+			// not thrown by a StringWriter
+			throw new IllegalStateException(e);
+		}
+
+		String json = buffer.toString();
+		if (buffer.getBuffer().capacity() > MAX_REUSED_BUFFER) {
+			// do not keep huge listings in memory
+			buffers.remove();
+		}
+		return json;
+	}
+
+	protected void writeError(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("error").value(getErrorCode());
+		writer.name("description").value(getDescription());
+		writer.endObject();
+	}
+
+	/**
+	 * Streaming version of {@link #parseMetadata(ItemMetadata)}, the fields
+	 * are left open so that callers can add their own.
+	 */
+	protected void writeMetadataFields(JsonWriter writer, ItemMetadata metadata) throws IOException {
+		if (metadata == null) {
+			return;
+		}
+
+		writer.name("id").value(metadata.getId());
+		writer.name("parent_id").value(metadata.getParentId());
+		writer.name("filename").value(metadata.getFilename());
+		writeBoolean(writer.name("is_folder"), metadata.isFolder());
+		writer.name("status").value(metadata.getStatus());
+
+		if (metadata.getModifiedAt() != null) {
+			writer.name("modified_at").value(metadata.getModifiedAt().toString());
+		}
+
+		writer.name("version").value(metadata.getVersion());
+		writer.name("checksum").value(metadata.getChecksum());
+		writer.name("size").value(metadata.getSize());
+		writer.name("mimetype").value(metadata.getMimetype());
+	}
+
+	/**
+	 * Streaming version of {@link #parseObjectMetadataForAPI(ItemMetadata)}.
+	 */
+	protected void writeObjectMetadataForAPIFields(JsonWriter writer, ItemMetadata metadata) throws IOException {
+		writeMetadataFields(writer, metadata);
+
+		if (metadata.isFolder()) {
+			writeBoolean(writer.name("is_root"), metadata.isRoot());
+		} else {
+			writer.name("chunks").beginArray();
+			for (String chunk : metadata.getChunks()) {
+				writer.value(chunk);
+			}
+			writer.endArray();
+		}
+	}
+
+	protected void writeObjectMetadataForAPI(JsonWriter writer, ItemMetadata metadata) throws IOException {
+		writer.beginObject();
+		writeObjectMetadataForAPIFields(writer, metadata);
+		writer.endObject();
+	}
+
+	protected static void writeBoolean(JsonWriter writer, Boolean value) throws IOException {
+		if (value == null) {
+			writer.nullValue();
+		} else {
+			writer.value(value.booleanValue());
+		}
+	}
+}
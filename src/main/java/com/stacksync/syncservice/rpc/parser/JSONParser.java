@@ -10,10 +10,9 @@ import com.stacksync.commons.models.ItemMetadata;
 import com.stacksync.syncservice.rpc.messages.APICommitResponse;
 import com.stacksync.syncservice.rpc.messages.APICreateFolderResponse;
 import com.stacksync.syncservice.rpc.messages.APIDeleteResponse;
-import com.stacksync.syncservice.rpc.messages.APIGetMetadata;
-import com.stacksync.syncservice.rpc.messages.APIGetVersions;
 import com.stacksync.syncservice.rpc.messages.APIResponse;
 import com.stacksync.syncservice.rpc.messages.APIRestoreMetadata;
+import com.stacksync.syncservice.rpc.messages.StreamingAPIResponse;
 
 public class JSONParser implements IParser {
 
@@ -26,10 +25,9 @@ public class JSONParser implements IParser {
 		String bResponse = "";
 
 		try {
-			if (response instanceof APIGetMetadata) {
-				jResponse = this.createGetMetadataResponse((APIGetMetadata) response);
-			} else if (response instanceof APIGetVersions) {
-				jResponse = this.createGetVersionsResponse((APIGetVersions) response);
+			if (response instanceof StreamingAPIResponse) {
+				// listings are written without building a tree
+				return response.toString();
 			} else if (response instanceof APICommitResponse
 					|| response instanceof APIDeleteResponse
 					|| response instanceof APIRestoreMetadata
@@ -48,31 +46,6 @@ public class JSONParser implements IParser {
 		return bResponse;
 	}
 
-	private JsonObject createGetVersionsResponse(APIGetVersions response) {
-		JsonObject jResponse = new JsonObject();
-
-		if (response.getSuccess()) {
-			ItemMetadata metadata = response.getItemMetadata();
-			jResponse = parseObjectMetadataForAPI(metadata);
-
-			if (metadata.getChildren() != null) {
-				JsonArray contents = new JsonArray();
-
-				for (ItemMetadata entry : metadata.getChildren()) {
-					JsonObject entryJson = parseObjectMetadataForAPI(entry);
-					contents.add(entryJson);
-				}
-
-				jResponse.add("versions", contents);
-			}
-		} else {
-			jResponse.addProperty("error", response.getErrorCode());
-			jResponse.addProperty("description", response.getDescription());
-		}
-
-		return jResponse;
-	}
-
 	private JsonObject createGenericAPIResponse(APIResponse response) {
 		JsonObject jResponse;
 
@@ -88,31 +61,6 @@ public class JSONParser implements IParser {
 		return jResponse;
 	}
 
-	private JsonObject createGetMetadataResponse(APIGetMetadata response) {
-		JsonObject jResponse = new JsonObject();
-
-		if (response.getSuccess()) {
-			ItemMetadata metadata = response.getItemMetadata();
-			jResponse = parseObjectMetadataForAPI(metadata);
-
-			if (metadata.getChildren() != null) {
-				JsonArray contents = new JsonArray();
-
-				for (ItemMetadata entry : metadata.getChildren()) {
-					JsonObject entryJson = parseObjectMetadataForAPI(entry);
-					contents.add(entryJson);
-				}
-
-				jResponse.add("contents", contents);
-			}
-		} else {
-			jResponse.addProperty("error", response.getErrorCode());
-			jResponse.addProperty("description", response.getDescription());
-		}
-
-		return jResponse;
-	}
-
 	private JsonObject parseMetadata(ItemMetadata metadata) {
 		JsonObject jMetadata = new JsonObject();
 
@@ -138,25 +86,6 @@ public class JSONParser implements IParser {
 		return jMetadata;
 	}
 
-	private JsonObject parseObjectMetadataForAPI(ItemMetadata metadata) {
-		JsonObject jMetadata = parseMetadata(metadata);
-
-		if (metadata.isFolder()) {
-			jMetadata.addProperty("is_root", metadata.isRoot());
-		} else {
-			JsonArray chunks = new JsonArray();
-					
-			for (String chunk : metadata.getChunks()) {
-				JsonElement elem = new JsonPrimitive(chunk);
-				chunks.add(elem);
-			}			
-			
-			jMetadata.add("chunks", chunks);
-		}
-
-		return jMetadata;
-	}
-
 	private JsonObject parseItemMetadata(ItemMetadata metadata) {
 		JsonObject jMetadata = parseMetadata(metadata);
 
@@ -0,0 +1,484 @@
+package com.stacksync.syncservice.storage;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.StringEntity;
+import org.apache.log4j.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.stacksync.commons.models.User;
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
+import com.stacksync.syncservice.exceptions.storage.UnauthorizedException;
+import com.stacksync.syncservice.exceptions.storage.UnexpectedStatusCodeException;
+import com.stacksync.syncservice.storage.SwiftTokenManager.Token;
+import com.stacksync.syncservice.storage.swift.BulkDeleteResponseObject;
+import com.stacksync.syncservice.storage.swift.ContainerObject;
+import com.stacksync.syncservice.util.Config;
+
+/**
+ * Storage manager on top of the Swift API. The subclasses choose the HTTP
+ * client and how the copied chunks are named.
+ */
+public abstract class AbstractSwiftManager extends StorageManager {
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final HttpClient httpClient;
+    private final SwiftTokenManager tokenManager;
+    private final int bulkDeleteSize;
+    private final ExecutorService deleters;
+    private final SwiftAclCache aclCache;
+    private volatile boolean bulkDeleteSupported = true;
+
+    protected AbstractSwiftManager(HttpClient httpClient) {
+
+        this.httpClient = httpClient;
+        this.tokenManager = new SwiftTokenManager(httpClient);
+        this.bulkDeleteSize = Config.getSwiftBulkDeleteSize();
+        this.aclCache = new SwiftAclCache(Config.getSwiftAclCacheTtl());
+        final String threadName = getClass().getSimpleName();
+        this.deleters = Executors.newFixedThreadPool(Config.getSwiftIoThreads(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, threadName + "-delete-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void login() throws Exception {
+        tokenManager.getToken();
+    }
+
+    @Override
+    public void createNewWorkspace(Workspace workspace) throws Exception {
+
+        String path = "/" + workspace.getSwiftContainer();
+
+        HttpPut request = new HttpPut();
+
+        SwiftResponse swiftResponse = execute(request, path);
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("401 User unauthorized");
+        }
+
+        if (swiftResponse.getStatusCode() < 200 || swiftResponse.getStatusCode() >= 300) {
+            throw new UnexpectedStatusCodeException("Unexpected status code: " + swiftResponse.getStatusCode());
+        }
+    }
+
+    @Override
+    public void removeUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+
+        synchronized (aclCache.getLock(workspace.getSwiftContainer())) {
+            Set<String> permissions = SwiftAclCache.parse(getWorkspacePermissions(owner, workspace));
+            if (permissions.remove(getTenantUser(user))) {
+                putWorkspacePermissions(workspace, SwiftAclCache.format(permissions));
+            }
+        }
+    }
+
+    @Override
+    public void grantUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+
+        synchronized (aclCache.getLock(workspace.getSwiftContainer())) {
+            Set<String> permissions = SwiftAclCache.parse(getWorkspacePermissions(owner, workspace));
+            if (permissions.add(getTenantUser(user))) {
+                putWorkspacePermissions(workspace, SwiftAclCache.format(permissions));
+            }
+        }
+    }
+
+    /**
+     * Writes the whole ACL in a single request, without reading it first.
+     */
+    @Override
+    public void setWorkspaceUsers(User owner, Workspace workspace, Collection<User> users) throws Exception {
+
+        Set<String> permissions = new LinkedHashSet<String>();
+        for (User user : users) {
+            permissions.add(getTenantUser(user));
+        }
+        String acl = SwiftAclCache.format(permissions);
+
+        synchronized (aclCache.getLock(workspace.getSwiftContainer())) {
+            putWorkspacePermissions(workspace, acl);
+        }
+    }
+
+    /**
+     * Name of the object a chunk is copied as, the same one by default.
+     */
+    protected String getCopyName(String chunkName) {
+        return chunkName;
+    }
+
+    @Override
+    public void copyChunk(Workspace sourceWorkspace, Workspace destinationWorkspace, String chunkName) throws Exception {
+
+        chunkName = getCopyName(chunkName);
+
+        String path = "/" + destinationWorkspace.getSwiftContainer() + "/"
+                + chunkName;
+
+        String copyFrom = "/" + sourceWorkspace.getSwiftContainer() + "/" + chunkName;
+
+        HttpPut request = new HttpPut();
+        request.setHeader(SwiftResponse.X_COPY_FROM, copyFrom);
+        //request.setHeader("Content-Length", "0");
+
+        SwiftResponse swiftResponse = execute(request, path);
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("401 User unauthorized");
+        }
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+            throw new ObjectNotFoundException("404 Not Found");
+        }
+
+        if (swiftResponse.getStatusCode() < 200 || swiftResponse.getStatusCode() >= 300) {
+            throw new UnexpectedStatusCodeException("Unexpected status code: " + swiftResponse.getStatusCode());
+        }
+    }
+
+    @Override
+    public void deleteChunk(Workspace workspace, String chunkName) throws Exception {
+
+        String path = "/" + workspace.getSwiftContainer() + "/" + chunkName;
+
+        HttpDelete request = new HttpDelete();
+
+        SwiftResponse swiftResponse = execute(request, path);
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("401 User unauthorized");
+        }
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+            throw new ObjectNotFoundException("404 Not Found");
+        }
+
+        if (swiftResponse.getStatusCode() < 200 || swiftResponse.getStatusCode() >= 300) {
+            throw new UnexpectedStatusCodeException("Unexpected status code: " + swiftResponse.getStatusCode());
+        }
+    }
+
+    @Override
+    public boolean hasChunk(Workspace workspace, String chunkName) throws Exception {
+
+        String path = "/" + workspace.getSwiftContainer() + "/" + getCopyName(chunkName);
+
+        HttpHead request = new HttpHead();
+
+        SwiftResponse swiftResponse = execute(request, path);
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("401 User unauthorized");
+        }
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+            return false;
+        }
+
+        if (swiftResponse.getStatusCode() < 200 || swiftResponse.getStatusCode() >= 300) {
+            throw new UnexpectedStatusCodeException("Unexpected status code: " + swiftResponse.getStatusCode());
+        }
+
+        return true;
+    }
+
+    /**
+     * Deletes the chunks with the bulk delete middleware, a batch per
+     * request. Without the middleware they are deleted one by one in
+     * parallel.
+     */
+    @Override
+    public BulkDeleteResult deleteChunks(Workspace workspace, Collection<String> chunkNames) throws Exception {
+
+        if (!bulkDeleteSupported) {
+            return deleteChunks(workspace, chunkNames, deleters);
+        }
+
+        BulkDeleteResult result = new BulkDeleteResult();
+        List<String> batch = new ArrayList<String>();
+        for (String chunkName : chunkNames) {
+            batch.add(chunkName);
+            if (batch.size() >= bulkDeleteSize) {
+                result.add(bulkDelete(workspace, batch));
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            result.add(bulkDelete(workspace, batch));
+        }
+        return result;
+    }
+
+    private BulkDeleteResult bulkDelete(Workspace workspace, List<String> chunkNames) throws Exception {
+
+        if (!bulkDeleteSupported) {
+            return deleteChunks(workspace, chunkNames, deleters);
+        }
+
+        StringBuilder body = new StringBuilder();
+        for (String chunkName : chunkNames) {
+            body.append('/').append(encode(workspace.getSwiftContainer())).append('/');
+            body.append(encode(chunkName)).append('\n');
+        }
+
+        HttpPost request = new HttpPost();
+        request.setHeader("Accept", "application/json");
+        StringEntity entity = new StringEntity(body.toString(), "UTF-8");
+        entity.setContentType("text/plain");
+        request.setEntity(entity);
+
+        SwiftResponse swiftResponse = execute(request, "?bulk-delete");
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("401 User unauthorized");
+        }
+
+        int status = swiftResponse.getStatusCode();
+        if (status == HttpStatus.SC_NOT_FOUND || status == HttpStatus.SC_METHOD_NOT_ALLOWED) {
+            return disableBulkDelete(workspace, chunkNames);
+        }
+
+        if (status < 200 || status >= 300) {
+            // a transient error, the caller retries the failed chunks
+            BulkDeleteResult result = new BulkDeleteResult();
+            for (String chunkName : chunkNames) {
+                result.failed(chunkName, "Unexpected status code: " + status);
+            }
+            return result;
+        }
+
+        BulkDeleteResponseObject bulkResponse = null;
+        try {
+            bulkResponse = new Gson().fromJson(swiftResponse.getResponseBodyAsString(),
+                    BulkDeleteResponseObject.class);
+        } catch (JsonParseException e) {
+        }
+
+        if (bulkResponse == null || bulkResponse.getResponseStatus() == null) {
+            // without the middleware the request is taken as an account update
+            return disableBulkDelete(workspace, chunkNames);
+        }
+
+        Map<String, String> errors = new HashMap<String, String>();
+        if (bulkResponse.getErrors() != null) {
+            for (List<String> error : bulkResponse.getErrors()) {
+                String name = URLDecoder.decode(error.get(0), "UTF-8");
+                errors.put(name.substring(name.lastIndexOf('/') + 1), error.get(1));
+            }
+        }
+
+        boolean succeeded = bulkResponse.getResponseStatus().startsWith("2");
+
+        BulkDeleteResult result = new BulkDeleteResult();
+        for (String chunkName : chunkNames) {
+            if (errors.containsKey(chunkName)) {
+                result.failed(chunkName, errors.get(chunkName));
+            } else if (succeeded) {
+                result.deleted(chunkName);
+            } else {
+                result.failed(chunkName, bulkResponse.getResponseStatus());
+            }
+        }
+        return result;
+    }
+
+    private BulkDeleteResult disableBulkDelete(Workspace workspace, List<String> chunkNames) throws Exception {
+        logger.warn("Swift bulk delete is not available, deleting the chunks one by one.");
+        bulkDeleteSupported = false;
+        return deleteChunks(workspace, chunkNames, deleters);
+    }
+
+    @Override
+    public void deleteWorkspace(Workspace workspace) throws Exception {
+
+        String path = "/" + workspace.getSwiftContainer();
+
+        HttpDelete request = new HttpDelete();
+
+        SwiftResponse swiftResponse = execute(request, path);
+        aclCache.remove(workspace.getSwiftContainer());
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("401 User unauthorized");
+        }
+
+        if (swiftResponse.getStatusCode() < 200 || swiftResponse.getStatusCode() >= 300) {
+            throw new UnexpectedStatusCodeException("Unexpected status code: " + swiftResponse.getStatusCode());
+        }
+    }
+
+    @Override
+    public List<StoredChunk> listChunks(Workspace workspace, String marker, int limit) throws Exception {
+
+        String path = "/" + workspace.getSwiftContainer() + "?format=json&limit=" + limit;
+        if (marker != null) {
+            path += "&marker=" + encode(marker);
+        }
+
+        HttpGet request = new HttpGet();
+
+        SwiftResponse swiftResponse = execute(request, path);
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("401 User unauthorized");
+        }
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+            throw new ObjectNotFoundException("404 Not Found");
+        }
+
+        if (swiftResponse.getStatusCode() < 200 || swiftResponse.getStatusCode() >= 300) {
+            throw new UnexpectedStatusCodeException("Unexpected status code: " + swiftResponse.getStatusCode());
+        }
+
+        List<StoredChunk> chunks = new ArrayList<StoredChunk>();
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_NO_CONTENT) {
+            return chunks;
+        }
+
+        ContainerObject[] objects = new Gson().fromJson(swiftResponse.getResponseBodyAsString(),
+                ContainerObject[].class);
+        if (objects != null) {
+            for (ContainerObject object : objects) {
+                chunks.add(new StoredChunk(object.getName(), object.getBytes(),
+                        parseDate(object.getLastModified())));
+            }
+        }
+        return chunks;
+    }
+
+    private String getWorkspacePermissions(User user, Workspace workspace) throws Exception {
+
+        String cached = aclCache.get(workspace.getSwiftContainer());
+        if (cached != null) {
+            return cached;
+        }
+
+        String path = "/" + workspace.getSwiftContainer();
+
+        HttpHead request = new HttpHead();
+
+        SwiftResponse swiftResponse = execute(request, path);
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("404 User unauthorized");
+        }
+
+        if (swiftResponse.getStatusCode() < 200 || swiftResponse.getStatusCode() >= 300) {
+            throw new UnexpectedStatusCodeException("Unexpected status code: " + swiftResponse.getStatusCode());
+        }
+
+        // We suppose there are the same permissions for read and write
+        Header containerWriteHeader = swiftResponse.getResponseHeader(SwiftResponse.X_CONTAINER_WRITE);
+
+        String permissions = containerWriteHeader == null ? "" : containerWriteHeader.getValue();
+        aclCache.put(workspace.getSwiftContainer(), permissions);
+        return permissions;
+    }
+
+    private void putWorkspacePermissions(Workspace workspace, String permissions) throws Exception {
+
+        String path = "/" + workspace.getSwiftContainer();
+
+        HttpPut request = new HttpPut();
+        request.setHeader(SwiftResponse.X_CONTAINER_READ, permissions);
+        request.setHeader(SwiftResponse.X_CONTAINER_WRITE, permissions);
+
+        SwiftResponse swiftResponse = execute(request, path);
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("401 User unauthorized");
+        }
+
+        if (swiftResponse.getStatusCode() < 200 || swiftResponse.getStatusCode() >= 300) {
+            aclCache.remove(workspace.getSwiftContainer());
+            throw new UnexpectedStatusCodeException("Unexpected status code: " + swiftResponse.getStatusCode());
+        }
+
+        aclCache.put(workspace.getSwiftContainer(), permissions);
+    }
+
+    private String getTenantUser(User user) {
+        return Config.getSwiftTenant() + ":" + user.getSwiftUser();
+    }
+
+    /**
+     * Sends the request with the current token. A token rejected by Swift is
+     * renewed and the request sent once more.
+     */
+    private SwiftResponse execute(HttpRequestBase request, String path) throws Exception {
+
+        Token token = tokenManager.getToken();
+        SwiftResponse swiftResponse = send(request, path, token);
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            token = tokenManager.refresh(token);
+            swiftResponse = send(request, path, token);
+        }
+
+        return swiftResponse;
+    }
+
+    private SwiftResponse send(HttpRequestBase request, String path, Token token) throws Exception {
+        request.setURI(URI.create(token.getStorageUrl() + path));
+        request.setHeader(SwiftResponse.X_AUTH_TOKEN, token.getAuthToken());
+        return new SwiftResponse(httpClient.execute(request));
+    }
+
+    /**
+     * Swift lists the dates in UTC, with microseconds. A date that cannot be
+     * read is taken as now, so the chunk looks recent.
+     */
+    private static Date parseDate(String date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return format.parse(date);
+        } catch (Exception e) {
+            return new Date();
+        }
+    }
+
+    private static String encode(String name) throws UnsupportedEncodingException {
+        return URLEncoder.encode(name, "UTF-8").replace("+", "%20");
+    }
+}
@@ -0,0 +1,195 @@
+package com.stacksync.syncservice.storage;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.stacksync.commons.models.User;
+import com.stacksync.commons.models.Workspace;
+
+/**
+ * Non-blocking facade over a storage manager. The operations run on a
+ * dedicated pool of I/O threads and return at once with a future.
+ *
+ * At most maxInFlight operations run at the same time on a container; the
+ * rest wait in a queue of the container without holding a thread, so a
+ * large migration does not starve the requests to other containers.
+ */
+public class AsyncStorageManager {
+
+    private final StorageManager storageManager;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Map<String, ContainerQueue> queues = new HashMap<String, ContainerQueue>();
+
+    public AsyncStorageManager(StorageManager storageManager, int threads, int maxInFlight) {
+        this.storageManager = storageManager;
+        this.maxInFlight = maxInFlight;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AsyncStorageManager-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public StorageManager getStorageManager() {
+        return storageManager;
+    }
+
+    public Future<Void> createNewWorkspace(final Workspace workspace) {
+        return submit(workspace, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storageManager.createNewWorkspace(workspace);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> removeUserToWorkspace(final User owner, final User user, final Workspace workspace) {
+        return submit(workspace, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storageManager.removeUserToWorkspace(owner, user, workspace);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> grantUserToWorkspace(final User owner, final User user, final Workspace workspace) {
+        return submit(workspace, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storageManager.grantUserToWorkspace(owner, user, workspace);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> setWorkspaceUsers(final User owner, final Workspace workspace,
+            final Collection<User> users) {
+        return submit(workspace, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storageManager.setWorkspaceUsers(owner, workspace, users);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> copyChunk(final Workspace sourceWorkspace, final Workspace destinationWorkspace,
+            final String chunkName) {
+        return submit(destinationWorkspace, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storageManager.copyChunk(sourceWorkspace, destinationWorkspace, chunkName);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> deleteChunk(final Workspace workspace, final String chunkName) {
+        return submit(workspace, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storageManager.deleteChunk(workspace, chunkName);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> deleteWorkspace(final Workspace workspace) {
+        return submit(workspace, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storageManager.deleteWorkspace(workspace);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs several storage operations in a row, counted as one in flight
+     * request on the container of the workspace.
+     */
+    public <T> Future<T> submit(Workspace workspace, Callable<T> task) {
+        String container = workspace.getSwiftContainer();
+        FutureTask<T> future = new ContainerTask<T>(container, task);
+
+        synchronized (queues) {
+            ContainerQueue queue = queues.get(container);
+            if (queue == null) {
+                queue = new ContainerQueue();
+                queues.put(container, queue);
+            }
+
+            if (queue.running >= maxInFlight) {
+                queue.waiting.add(future);
+                return future;
+            }
+            queue.running++;
+        }
+
+        executor.execute(future);
+        return future;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void finished(String container) {
+        Runnable next;
+        synchronized (queues) {
+            ContainerQueue queue = queues.get(container);
+            next = queue.waiting.poll();
+            if (next == null) {
+                queue.running--;
+                if (queue.running == 0) {
+                    queues.remove(container);
+                }
+                return;
+            }
+        }
+        executor.execute(next);
+    }
+
+    private static class ContainerQueue {
+
+        private final Queue<Runnable> waiting = new LinkedList<Runnable>();
+        private int running = 0;
+    }
+
+    private class ContainerTask<T> extends FutureTask<T> {
+
+        private final String container;
+
+        private ContainerTask(String container, Callable<T> task) {
+            super(task);
+            this.container = container;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                finished(container);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.stacksync.syncservice.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of deleting several chunks at once. A chunk that does not exist
+ * counts as deleted.
+ */
+public class BulkDeleteResult {
+
+    private final List<String> deleted = new ArrayList<String>();
+    private final Map<String, String> failed = new HashMap<String, String>();
+
+    public void deleted(String chunkName) {
+        deleted.add(chunkName);
+    }
+
+    public void failed(String chunkName, String reason) {
+        failed.put(chunkName, reason);
+    }
+
+    public void add(BulkDeleteResult result) {
+        deleted.addAll(result.deleted);
+        failed.putAll(result.failed);
+    }
+
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * The chunks that could not be deleted and why.
+     */
+    public Map<String, String> getFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,133 @@
+package com.stacksync.syncservice.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.db.ItemVersionDAO;
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+
+/**
+ * Deletes the chunks of a container that no item version refers to.
+ *
+ * The container is listed a page at a time and every page is checked against
+ * the database, so the memory used does not depend on the size of the
+ * container. Chunks modified within the grace period are kept, as they may
+ * belong to a commit or a migration still running. The orphans are deleted
+ * in batches, waiting batchDelay after each one.
+ */
+public class ChunkCollector {
+
+    private static final Logger logger = Logger.getLogger(ChunkCollector.class.getName());
+
+    // the chunks copied over HTTPS are stored with this prefix
+    private static final String CHUNK_PREFIX = "chk-";
+
+    private final StorageManager storageManager;
+    private final ItemVersionDAO itemVersionDao;
+    private final long gracePeriod;
+    private final int batchSize;
+    private final long batchDelay;
+
+    public ChunkCollector(StorageManager storageManager, ItemVersionDAO itemVersionDao, long gracePeriod,
+            int batchSize, long batchDelay) {
+        this.storageManager = storageManager;
+        this.itemVersionDao = itemVersionDao;
+        this.gracePeriod = gracePeriod;
+        this.batchSize = batchSize;
+        this.batchDelay = batchDelay;
+    }
+
+    /**
+     * Returns the bytes reclaimed.
+     */
+    public long collect(String container) throws Exception {
+        Workspace workspace = new Workspace();
+        workspace.setSwiftContainer(container);
+        long oldest = System.currentTimeMillis() - gracePeriod;
+
+        Map<String, Long> orphans = new LinkedHashMap<String, Long>();
+        long reclaimed = 0;
+        String marker = null;
+
+        List<StoredChunk> page = storageManager.listChunks(workspace, marker, batchSize);
+        while (!page.isEmpty()) {
+            Map<String, Long> candidates = new LinkedHashMap<String, Long>();
+            for (StoredChunk chunk : page) {
+                if (chunk.getLastModified().getTime() < oldest) {
+                    candidates.put(chunk.getName(), chunk.getSize());
+                }
+            }
+
+            Set<String> referenced = findReferenced(container, candidates.keySet());
+            for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+                if (!isReferenced(candidate.getKey(), referenced)) {
+                    orphans.put(candidate.getKey(), candidate.getValue());
+                }
+            }
+
+            if (orphans.size() >= batchSize) {
+                reclaimed += delete(workspace, orphans);
+            }
+
+            marker = page.get(page.size() - 1).getName();
+            page = storageManager.listChunks(workspace, marker, batchSize);
+        }
+
+        if (!orphans.isEmpty()) {
+            reclaimed += delete(workspace, orphans);
+        }
+        return reclaimed;
+    }
+
+    private long delete(Workspace workspace, Map<String, Long> orphans) throws Exception {
+        // a client may have committed one of them since it was checked
+        Set<String> referenced = findReferenced(workspace.getSwiftContainer(), orphans.keySet());
+        List<String> chunkNames = new ArrayList<String>();
+        for (String chunkName : orphans.keySet()) {
+            if (!isReferenced(chunkName, referenced)) {
+                chunkNames.add(chunkName);
+            }
+        }
+
+        BulkDeleteResult result = storageManager.deleteChunks(workspace, chunkNames);
+
+        long reclaimed = 0;
+        for (String chunkName : result.getDeleted()) {
+            reclaimed += orphans.get(chunkName);
+        }
+        if (!result.getFailed().isEmpty()) {
+            logger.warn(String.format("Could not delete %d chunks of %s: %s", result.getFailed().size(),
+                    workspace.getSwiftContainer(), result.getFailed().values().iterator().next()));
+        }
+
+        orphans.clear();
+        Thread.sleep(batchDelay);
+        return reclaimed;
+    }
+
+    private Set<String> findReferenced(String container, Collection<String> chunkNames) throws DAOException {
+        List<String> names = new ArrayList<String>();
+        for (String chunkName : chunkNames) {
+            names.add(chunkName);
+            if (chunkName.startsWith(CHUNK_PREFIX)) {
+                names.add(chunkName.substring(CHUNK_PREFIX.length()));
+            }
+        }
+        return new HashSet<String>(itemVersionDao.findReferencedChunks(container, names));
+    }
+
+    private boolean isReferenced(String chunkName, Set<String> referenced) {
+        if (referenced.contains(chunkName)) {
+            return true;
+        }
+        return chunkName.startsWith(CHUNK_PREFIX) && referenced.contains(chunkName.substring(CHUNK_PREFIX.length()));
+    }
+}
@@ -0,0 +1,155 @@
+package com.stacksync.syncservice.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.syncservice.db.ConnectionPool;
+import com.stacksync.syncservice.db.DAOFactory;
+import com.stacksync.syncservice.db.MigrationJobDAO;
+import com.stacksync.syncservice.db.WorkspaceDAO;
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
+import com.stacksync.syncservice.migration.MigrationJob;
+import com.stacksync.syncservice.util.Config;
+
+/**
+ * Runs the chunk collector over the containers of all the workspaces every
+ * interval milliseconds. The containers of the unfinished migration jobs are
+ * left for the next run, their chunks being moved at the time.
+ */
+public class ChunkCollectorService {
+
+    private static final Logger logger = Logger.getLogger(ChunkCollectorService.class.getName());
+    private static final int CONTAINERS_PAGE = 1000;
+    private static final long SHUTDOWN_TIMEOUT = 10000L;
+
+    private static ChunkCollectorService instance = null;
+
+    private final Connection connection;
+    private final WorkspaceDAO workspaceDao;
+    private final MigrationJobDAO jobDao;
+    private final ChunkCollector collector;
+    private final ScheduledExecutorService scheduler;
+
+    private ChunkCollectorService(ConnectionPool pool, StorageManager storageManager, long gracePeriod,
+            int batchSize, long batchDelay) throws SQLException {
+        this.connection = pool.getConnection();
+
+        DAOFactory factory = new DAOFactory(Config.getDatasource());
+        this.workspaceDao = factory.getWorkspaceDao(connection);
+        this.jobDao = factory.getMigrationJobDAO(connection);
+        this.collector = new ChunkCollector(storageManager, factory.getItemVersionDAO(connection), gracePeriod,
+                batchSize, batchDelay);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ChunkCollector");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public static synchronized ChunkCollectorService start(ConnectionPool pool, StorageManager storageManager,
+            long interval, long gracePeriod, int batchSize, long batchDelay) throws SQLException {
+        if (instance == null) {
+            instance = new ChunkCollectorService(pool, storageManager, gracePeriod, batchSize, batchDelay);
+            instance.schedule(interval);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns null when the service has not been started.
+     */
+    public static synchronized ChunkCollectorService getInstance() {
+        return instance;
+    }
+
+    public static synchronized void stop() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    private void schedule(long interval) {
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                collect();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void collect() {
+        logger.info("Collecting the orphan chunks");
+        long start = System.currentTimeMillis();
+        long reclaimed = 0;
+        int count = 0;
+
+        try {
+            Set<String> migrating = new HashSet<String>();
+            for (MigrationJob job : jobDao.findUnfinished()) {
+                migrating.add(job.getSourceContainer());
+                migrating.add(job.getDestinationContainer());
+            }
+
+            String last = null;
+            List<String> containers;
+            do {
+                containers = workspaceDao.findContainers(last, CONTAINERS_PAGE);
+                for (String container : containers) {
+                    last = container;
+                    if (migrating.contains(container)) {
+                        continue;
+                    }
+
+                    try {
+                        long bytes = collector.collect(container);
+                        if (bytes > 0) {
+                            logger.info(String.format("Reclaimed %d bytes from %s", bytes, container));
+                        }
+                        reclaimed += bytes;
+                        count++;
+                    } catch (ObjectNotFoundException e) {
+                        logger.debug("Container not found: " + container);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        logger.error("Could not collect the chunks of " + container, e);
+                    }
+                }
+            } while (containers.size() == CONTAINERS_PAGE);
+        } catch (DAOException e) {
+            logger.error("Could not list the containers.", e);
+        }
+
+        logger.info(String.format("Reclaimed %d bytes from %d containers in %d ms", reclaimed, count,
+                System.currentTimeMillis() - start));
+    }
+
+    private void shutdown() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error(e);
+        }
+    }
+}
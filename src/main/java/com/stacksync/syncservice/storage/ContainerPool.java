@@ -0,0 +1,134 @@
+package com.stacksync.syncservice.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.db.ConnectionPool;
+import com.stacksync.syncservice.db.ContainerPoolDAO;
+import com.stacksync.syncservice.db.DAOFactory;
+import com.stacksync.syncservice.util.Config;
+
+/**
+ * Keeps a pool of empty containers created in advance, so that sharing a
+ * folder does not wait for the storage to create one.
+ *
+ * The containers are listed in the database and taken from there by the
+ * handlers. When fewer than lowWater are left, the pool is filled up to size
+ * again in the background. Containers not handed out are kept for the next
+ * start.
+ */
+public class ContainerPool {
+
+    private static final Logger logger = Logger.getLogger(ContainerPool.class.getName());
+
+    private static ContainerPool instance = null;
+
+    private final Connection connection;
+    private final ContainerPoolDAO containerPoolDao;
+    private final StorageManager storageManager;
+    private final int size;
+    private final int lowWater;
+    private final ExecutorService provisioner;
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    private ContainerPool(ConnectionPool pool, StorageManager storageManager, int size, int lowWater)
+            throws SQLException {
+        this.connection = pool.getConnection();
+        this.containerPoolDao = new DAOFactory(Config.getDatasource()).getContainerPoolDAO(connection);
+        this.storageManager = storageManager;
+        this.size = size;
+        this.lowWater = lowWater;
+        this.provisioner = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ContainerPool");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public static synchronized ContainerPool start(ConnectionPool pool, StorageManager storageManager, int size,
+            int lowWater) throws SQLException {
+        if (instance == null) {
+            instance = new ContainerPool(pool, storageManager, size, lowWater);
+            instance.refill();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns null when the pool has not been started.
+     */
+    public static synchronized ContainerPool getInstance() {
+        return instance;
+    }
+
+    public static synchronized void stop() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * To be called after taking a container, so the pool is refilled when
+     * running low.
+     */
+    public void taken() {
+        refill();
+    }
+
+    private void refill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+
+        provisioner.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    provision();
+                } finally {
+                    refilling.set(false);
+                }
+            }
+        });
+    }
+
+    private void provision() {
+        try {
+            int count = containerPoolDao.count();
+            if (count >= lowWater) {
+                return;
+            }
+
+            logger.info(String.format("Creating %d containers for the pool", size - count));
+            for (; count < size; count++) {
+                Workspace workspace = new Workspace();
+                workspace.setSwiftContainer(UUID.randomUUID().toString());
+                storageManager.createNewWorkspace(workspace);
+                containerPoolDao.add(workspace.getSwiftContainer());
+            }
+        } catch (Exception e) {
+            logger.error("Could not fill the container pool.", e);
+        }
+    }
+
+    private void shutdown() {
+        provisioner.shutdownNow();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error(e);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.stacksync.syncservice.storage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.stacksync.commons.models.User;
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
+import com.stacksync.syncservice.util.Config;
+
+/**
+ * Keeps the chunks in the local filesystem, for single node deployments and
+ * benchmarks. Every workspace is a directory under the root and its chunks
+ * are files. The users allowed on a workspace are listed in a file next to
+ * its directory, one per line.
+ */
+public class FilesystemManager extends StorageManager {
+
+    private static final String ACL_SUFFIX = ".acl";
+    private static StorageManager instance = null;
+    private final File root;
+
+    private FilesystemManager() {
+        this.root = new File(Config.getStorageFilesystemRoot());
+    }
+
+    public static synchronized StorageManager getInstance() {
+        if (instance == null) {
+            instance = new FilesystemManager();
+        }
+
+        return instance;
+    }
+
+    @Override
+    public void login() throws Exception {
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IOException("Could not create the storage directory " + root);
+        }
+    }
+
+    @Override
+    public void createNewWorkspace(Workspace workspace) throws Exception {
+        File container = getContainer(workspace);
+        if (!container.isDirectory() && !container.mkdirs()) {
+            throw new IOException("Could not create the directory " + container);
+        }
+    }
+
+    @Override
+    public synchronized void removeUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+        Set<String> acl = readAcl(workspace);
+        if (acl.remove(getTenantUser(user))) {
+            writeAcl(workspace, acl);
+        }
+    }
+
+    @Override
+    public synchronized void grantUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+        Set<String> acl = readAcl(workspace);
+        if (acl.add(getTenantUser(user))) {
+            writeAcl(workspace, acl);
+        }
+    }
+
+    @Override
+    public synchronized void setWorkspaceUsers(User owner, Workspace workspace, Collection<User> users)
+            throws Exception {
+        Set<String> acl = new LinkedHashSet<String>();
+        for (User user : users) {
+            acl.add(getTenantUser(user));
+        }
+        if (!acl.equals(readAcl(workspace))) {
+            writeAcl(workspace, acl);
+        }
+    }
+
+    /**
+     * The chunk is copied between the channels by the kernel and renamed
+     * once complete, so a chunk is never seen half written.
+     */
+    @Override
+    public void copyChunk(Workspace sourceWorkspace, Workspace destinationWorkspace, String chunkName)
+            throws Exception {
+
+        File source = getChunk(sourceWorkspace, chunkName);
+        if (!source.isFile()) {
+            throw new ObjectNotFoundException("404 Not Found");
+        }
+
+        File destination = getChunk(destinationWorkspace, chunkName);
+        File temp = new File(destination.getParentFile(), "." + chunkName + "." + Thread.currentThread().getId());
+
+        FileChannel in = null;
+        FileChannel out = null;
+        try {
+            in = new FileInputStream(source).getChannel();
+            out = new FileOutputStream(temp).getChannel();
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+        }
+
+        if (!temp.renameTo(destination)) {
+            destination.delete();
+            if (!temp.renameTo(destination)) {
+                temp.delete();
+                throw new IOException("Could not copy the chunk to " + destination);
+            }
+        }
+    }
+
+    @Override
+    public void deleteChunk(Workspace workspace, String chunkName) throws Exception {
+        File chunk = getChunk(workspace, chunkName);
+        if (!chunk.delete()) {
+            if (!chunk.exists()) {
+                throw new ObjectNotFoundException("404 Not Found");
+            }
+            throw new IOException("Could not delete " + chunk);
+        }
+    }
+
+    @Override
+    public boolean hasChunk(Workspace workspace, String chunkName) throws Exception {
+        return getChunk(workspace, chunkName).isFile();
+    }
+
+    @Override
+    public BulkDeleteResult deleteChunks(Workspace workspace, Collection<String> chunkNames) throws Exception {
+        BulkDeleteResult result = new BulkDeleteResult();
+        for (String chunkName : chunkNames) {
+            File chunk = getChunk(workspace, chunkName);
+            if (chunk.delete() || !chunk.exists()) {
+                result.deleted(chunkName);
+            } else {
+                result.failed(chunkName, "Could not delete " + chunk);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void deleteWorkspace(Workspace workspace) throws Exception {
+        File container = getContainer(workspace);
+        if (!container.delete() && container.exists()) {
+            // Swift does not delete containers with objects either
+            throw new IOException("Could not delete the directory " + container);
+        }
+        getAclFile(workspace).delete();
+    }
+
+    @Override
+    public List<StoredChunk> listChunks(Workspace workspace, String marker, int limit) throws Exception {
+        File container = getContainer(workspace);
+        String[] names = container.list();
+        if (names == null) {
+            throw new ObjectNotFoundException("404 Not Found");
+        }
+        Arrays.sort(names);
+
+        List<StoredChunk> chunks = new ArrayList<StoredChunk>();
+        for (String name : names) {
+            if (chunks.size() >= limit) {
+                break;
+            }
+            // the chunks being copied are hidden
+            if (name.startsWith(".") || (marker != null && name.compareTo(marker) <= 0)) {
+                continue;
+            }
+            File chunk = new File(container, name);
+            chunks.add(new StoredChunk(name, chunk.length(), new Date(chunk.lastModified())));
+        }
+        return chunks;
+    }
+
+    private File getContainer(Workspace workspace) {
+        return getFile(root, workspace.getSwiftContainer());
+    }
+
+    private File getChunk(Workspace workspace, String chunkName) {
+        return getFile(getContainer(workspace), chunkName);
+    }
+
+    private File getAclFile(Workspace workspace) {
+        return getFile(root, workspace.getSwiftContainer() + ACL_SUFFIX);
+    }
+
+    private File getFile(File parent, String name) {
+        if (name == null || name.length() == 0 || name.contains("/") || name.contains("\\")
+                || name.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid name: " + name);
+        }
+        return new File(parent, name);
+    }
+
+    private String getTenantUser(User user) {
+        return Config.getSwiftTenant() + ":" + user.getSwiftUser();
+    }
+
+    private Set<String> readAcl(Workspace workspace) throws IOException {
+        Set<String> acl = new LinkedHashSet<String>();
+        File file = getAclFile(workspace);
+        if (!file.isFile()) {
+            return acl;
+        }
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    acl.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return acl;
+    }
+
+    private void writeAcl(Workspace workspace, Set<String> acl) throws IOException {
+        File file = getAclFile(workspace);
+        File temp = new File(root, "." + file.getName());
+
+        Writer writer = new FileWriter(temp);
+        try {
+            for (String tenantUser : acl) {
+                writer.write(tenantUser);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+}
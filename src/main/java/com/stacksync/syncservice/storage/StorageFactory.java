@@ -1,18 +1,57 @@
 package com.stacksync.syncservice.storage;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import com.stacksync.syncservice.exceptions.storage.NoStorageManagerAvailable;
 import com.stacksync.syncservice.storage.StorageManager.StorageType;
+import com.stacksync.syncservice.util.Config;
 
 public class StorageFactory {
 
+    private static final Map<StorageType, AsyncStorageManager> asyncManagers = new EnumMap<StorageType, AsyncStorageManager>(
+            StorageType.class);
+
+    /**
+     * The storage chosen in the configuration.
+     */
+    public static StorageType getStorageType() throws NoStorageManagerAvailable {
+
+        String type = Config.getStorageType();
+        if (type.equals("filesystem")) {
+            return StorageType.FILESYSTEM;
+        } else if (type.equals("swift")) {
+            if (Config.getSwiftKeystoneProtocol().equals("http")) {
+                return StorageType.SWIFT;
+            }
+            return StorageType.SWIFT_SSL;
+        }
+
+        throw new NoStorageManagerAvailable(String.format("Storage type '%s' not found", type));
+    }
+
     public static StorageManager getStorageManager(StorageType type) throws NoStorageManagerAvailable {
 
         if (type == StorageType.SWIFT) {
             return SwiftManager.getInstance();
         } else if (type == StorageType.SWIFT_SSL) {
             return SwiftManagerHTTPS.getInstance();
+        } else if (type == StorageType.FILESYSTEM) {
+            return FilesystemManager.getInstance();
         }
 
         throw new NoStorageManagerAvailable(String.format("Storage type '%s' not found", type));
     }
+
+    public static synchronized AsyncStorageManager getAsyncStorageManager(StorageType type)
+            throws NoStorageManagerAvailable {
+
+        AsyncStorageManager manager = asyncManagers.get(type);
+        if (manager == null) {
+            manager = new AsyncStorageManager(getStorageManager(type), Config.getSwiftIoThreads(),
+                    Config.getSwiftMaxRequestsPerContainer());
+            asyncManagers.put(type, manager);
+        }
+        return manager;
+    }
 }
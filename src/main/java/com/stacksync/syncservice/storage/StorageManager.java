@@ -1,13 +1,22 @@
 package com.stacksync.syncservice.storage;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import com.stacksync.commons.models.User;
 import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
 
 public abstract class StorageManager {
 
     public enum StorageType {
 
-        SWIFT, SWIFT_SSL, FTP
+        SWIFT, SWIFT_SSL, FTP, FILESYSTEM
     }
 
     public abstract void login() throws Exception;
@@ -18,9 +27,78 @@ public abstract class StorageManager {
 
     public abstract void grantUserToWorkspace(User owner, User user, Workspace workspace) throws Exception;
 
+    /**
+     * Leaves access to the workspace to the given users only, in a single
+     * update.
+     */
+    public abstract void setWorkspaceUsers(User owner, Workspace workspace, Collection<User> users) throws Exception;
+
     public abstract void copyChunk(Workspace sourceWorkspace, Workspace destinationWorkspace, String chunkName) throws Exception;
     
     public abstract void deleteChunk(Workspace workspace, String chunkName) throws Exception;
 
+    /**
+     * Whether the workspace container has the chunk, as copyChunk stores it.
+     */
+    public abstract boolean hasChunk(Workspace workspace, String chunkName) throws Exception;
+
     public abstract void deleteWorkspace(Workspace workspace) throws Exception;
+
+    /**
+     * Lists the chunks of the workspace container sorted by name, up to limit
+     * of them after the given marker. The first page has a null marker.
+     */
+    public abstract List<StoredChunk> listChunks(Workspace workspace, String marker, int limit) throws Exception;
+
+    /**
+     * Deletes the chunks one by one. Storages able to delete many objects in
+     * a request override it.
+     */
+    public BulkDeleteResult deleteChunks(Workspace workspace, Collection<String> chunkNames) throws Exception {
+        BulkDeleteResult result = new BulkDeleteResult();
+        for (String chunkName : chunkNames) {
+            try {
+                deleteChunk(workspace, chunkName);
+                result.deleted(chunkName);
+            } catch (ObjectNotFoundException e) {
+                result.deleted(chunkName);
+            } catch (Exception e) {
+                result.failed(chunkName, e.toString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the chunks one by one, in parallel on the given executor.
+     */
+    protected BulkDeleteResult deleteChunks(final Workspace workspace, Collection<String> chunkNames,
+            ExecutorService executor) throws InterruptedException {
+        List<Future<Void>> deletes = new ArrayList<Future<Void>>();
+        for (final String chunkName : chunkNames) {
+            deletes.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    deleteChunk(workspace, chunkName);
+                    return null;
+                }
+            }));
+        }
+
+        BulkDeleteResult result = new BulkDeleteResult();
+        int i = 0;
+        for (String chunkName : chunkNames) {
+            try {
+                deletes.get(i++).get();
+                result.deleted(chunkName);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ObjectNotFoundException) {
+                    result.deleted(chunkName);
+                } else {
+                    result.failed(chunkName, e.getCause().toString());
+                }
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,36 @@
+package com.stacksync.syncservice.storage;
+
+import java.util.Date;
+
+/**
+ * A chunk as listed by the storage.
+ */
+public class StoredChunk {
+
+    private final String name;
+    private final long size;
+    private final Date lastModified;
+
+    public StoredChunk(String name, long size, Date lastModified) {
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StoredChunk[name=%s, size=%d, lastModified=%s]", name, size, lastModified);
+    }
+}
@@ -0,0 +1,99 @@
+package com.stacksync.syncservice.storage;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Last ACL written or read for every container, so that updating it does
+ * not need to read it from Swift first, and writing the same ACL again is
+ * skipped. Entries expire, as other servers may change the ACLs too.
+ *
+ * The updates of an ACL must hold the lock of its container, otherwise
+ * concurrent grants would overwrite each other.
+ */
+public class SwiftAclCache {
+
+    private static final int MAX_ENTRIES = 10000;
+    private static final int LOCKS = 64;
+
+    private final long ttl;
+    private final Object[] locks = new Object[LOCKS];
+    private final Map<String, CachedAcl> entries = new LinkedHashMap<String, CachedAcl>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedAcl> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static class CachedAcl {
+
+        private final String acl;
+        private final long expiresAt;
+
+        private CachedAcl(String acl, long expiresAt) {
+            this.acl = acl;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public SwiftAclCache(long ttl) {
+        this.ttl = ttl;
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public Object getLock(String container) {
+        return locks[(container.hashCode() & 0x7fffffff) % LOCKS];
+    }
+
+    /**
+     * Returns null when the ACL is not cached or has expired.
+     */
+    public synchronized String get(String container) {
+        CachedAcl entry = entries.get(container);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(container);
+            return null;
+        }
+        return entry.acl;
+    }
+
+    public synchronized void put(String container, String acl) {
+        entries.put(container, new CachedAcl(acl, System.currentTimeMillis() + ttl));
+    }
+
+    public synchronized void remove(String container) {
+        entries.remove(container);
+    }
+
+    public static Set<String> parse(String acl) {
+        Set<String> users = new LinkedHashSet<String>();
+        for (String user : acl.split(",")) {
+            user = user.trim();
+            if (user.length() > 0) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    public static String format(Collection<String> users) {
+        StringBuilder acl = new StringBuilder();
+        for (String user : users) {
+            if (acl.length() > 0) {
+                acl.append(',');
+            }
+            acl.append(user);
+        }
+        return acl.toString();
+    }
+}
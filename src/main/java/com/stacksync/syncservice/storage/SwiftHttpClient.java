@@ -0,0 +1,97 @@
+package com.stacksync.syncservice.storage;
+
+import java.security.cert.X509Certificate;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import com.stacksync.syncservice.util.Config;
+
+/**
+ * Builds the HTTP client shared by all the requests of a storage manager.
+ *
+ * The connections are pooled and kept alive between requests, so the TCP
+ * connection and, for HTTPS, the TLS session are reused. A connection is not
+ * reused after being idle for longer than the keep alive, or than the server
+ * asked for.
+ */
+public class SwiftHttpClient {
+
+    public static DefaultHttpClient create() {
+        return create(SchemeRegistryFactory.createDefault());
+    }
+
+    /**
+     * Client accepting any certificate, as the HTTPS storage manager always
+     * did.
+     */
+    public static DefaultHttpClient createTrustingAll() {
+        TrustStrategy acceptingTrustStrategy = new TrustStrategy() {
+            @Override
+            public boolean isTrusted(X509Certificate[] certificate, String authType) {
+                return true;
+            }
+        };
+
+        SSLSocketFactory sf;
+        try {
+            sf = new SSLSocketFactory(acceptingTrustStrategy, SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not create the SSL socket factory", e);
+        }
+
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+        registry.register(new Scheme("https", 5000, sf));
+        return create(registry);
+    }
+
+    private static DefaultHttpClient create(SchemeRegistry registry) {
+        final long keepAlive = Config.getSwiftKeepAlive();
+
+        ThreadSafeClientConnManager manager = new ThreadSafeClientConnManager(registry);
+        manager.setMaxTotal(Config.getSwiftMaxConnections());
+        manager.setDefaultMaxPerRoute(Config.getSwiftMaxConnectionsPerRoute());
+
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, Config.getSwiftConnectTimeout());
+        HttpConnectionParams.setSoTimeout(params, Config.getSwiftSocketTimeout());
+        HttpConnectionParams.setStaleCheckingEnabled(params, true);
+        HttpConnectionParams.setTcpNoDelay(params, true);
+
+        DefaultHttpClient client = new DefaultHttpClient(manager, params);
+        client.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+                while (it.hasNext()) {
+                    HeaderElement element = it.nextElement();
+                    if (element.getName().equalsIgnoreCase("timeout") && element.getValue() != null) {
+                        try {
+                            return Math.min(Long.parseLong(element.getValue()) * 1000, keepAlive);
+                        } catch (NumberFormatException e) {
+                        }
+                    }
+                }
+                return keepAlive;
+            }
+        });
+        return client;
+    }
+}
@@ -3,6 +3,7 @@ package com.stacksync.syncservice.storage;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
+import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.util.EntityUtils;
 import org.apache.http.HttpEntity;
 
@@ -44,11 +45,15 @@ public class SwiftResponse
     /**
      * @param method The HttpMethod that generated this response
      */
-    public SwiftResponse (HttpResponse response)
+    public SwiftResponse (HttpResponse response) throws IOException
     {
     	this.response = response;
     	entity = response.getEntity();
-    	
+    	if (entity != null) {
+    		// reading the body releases the pooled connection
+    		entity = new BufferedHttpEntity(entity);
+    		response.setEntity(entity);
+    	}
     }
 
     /**
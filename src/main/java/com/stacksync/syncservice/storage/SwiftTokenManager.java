@@ -0,0 +1,208 @@
+package com.stacksync.syncservice.storage;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.log4j.Logger;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Period;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import com.google.gson.Gson;
+import com.stacksync.syncservice.exceptions.storage.EndpointNotFoundException;
+import com.stacksync.syncservice.exceptions.storage.UnauthorizedException;
+import com.stacksync.syncservice.exceptions.storage.UnexpectedStatusCodeException;
+import com.stacksync.syncservice.storage.swift.LoginResponseObject;
+import com.stacksync.syncservice.storage.swift.ServiceObject;
+import com.stacksync.syncservice.util.Config;
+
+/**
+ * Keeps the Keystone token of a storage manager.
+ *
+ * The token is refreshed in the background some time before it expires, so
+ * requests do not wait for Keystone. Threads needing a new token at the same
+ * time, because it expired or was rejected, share a single login.
+ */
+public class SwiftTokenManager {
+
+    public static class Token {
+
+        private final String authToken;
+        private final String storageUrl;
+        private final long expiresAt;
+
+        private Token(String authToken, String storageUrl, long expiresAt) {
+            this.authToken = authToken;
+            this.storageUrl = storageUrl;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getAuthToken() {
+            return authToken;
+        }
+
+        public String getStorageUrl() {
+            return storageUrl;
+        }
+
+        public boolean isActive() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger(SwiftTokenManager.class.getName());
+    private static final long RETRY_DELAY = 30000L;
+
+    private final HttpClient httpClient;
+    private final String authUrl;
+    private final String user;
+    private final String tenant;
+    private final String password;
+    private final long refreshMargin;
+    private final ScheduledExecutorService refresher;
+    private final Object loginLock = new Object();
+
+    private volatile Token token;
+    // guarded by loginLock
+    private ScheduledFuture<?> scheduled;
+
+    public SwiftTokenManager(HttpClient httpClient) {
+        this.httpClient = httpClient;
+        this.authUrl = Config.getSwiftAuthUrl();
+        this.user = Config.getSwiftUser();
+        this.tenant = Config.getSwiftTenant();
+        this.password = Config.getSwiftPassword();
+        this.refreshMargin = Config.getSwiftTokenRefreshMargin();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "SwiftTokenManager");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the current token, logging in only if there is no active one.
+     */
+    public Token getToken() throws Exception {
+        Token current = token;
+        if (current != null && current.isActive()) {
+            return current;
+        }
+        return refresh(current);
+    }
+
+    /**
+     * Replaces the given token, unless another thread already did.
+     */
+    public Token refresh(Token stale) throws Exception {
+        synchronized (loginLock) {
+            Token current = token;
+            if (current != null && current != stale && current.isActive()) {
+                return current;
+            }
+
+            Token fresh = login();
+            token = fresh;
+            scheduleRefresh(fresh.expiresAt - System.currentTimeMillis());
+            return fresh;
+        }
+    }
+
+    private void scheduleRefresh(long lifetime) {
+        long delay = Math.max(lifetime - refreshMargin, lifetime / 2);
+        schedule(delay);
+    }
+
+    private void schedule(long delay) {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        scheduled = refresher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Token current = token;
+                try {
+                    refresh(current);
+                    logger.debug("Swift token refreshed");
+                } catch (Exception e) {
+                    logger.error("Could not refresh the Swift token, retrying later.", e);
+                    synchronized (loginLock) {
+                        if (token == current) {
+                            schedule(RETRY_DELAY);
+                        }
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private Token login() throws Exception {
+
+        HttpPost request = new HttpPost(authUrl);
+
+        String body = String
+                .format("{\"auth\": {\"passwordCredentials\": {\"username\": \"%s\", \"password\": \"%s\"}, \"tenantName\":\"%s\"}}",
+                user, password, tenant);
+        StringEntity entity = new StringEntity(body);
+        entity.setContentType("application/json");
+        request.setEntity(entity);
+        HttpResponse response = httpClient.execute(request);
+
+        SwiftResponse swiftResponse = new SwiftResponse(response);
+
+        if (swiftResponse.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            throw new UnauthorizedException("401 User unauthorized");
+        }
+
+        if (swiftResponse.getStatusCode() < 200 || swiftResponse.getStatusCode() >= 300) {
+            throw new UnexpectedStatusCodeException("Unexpected status code: " + swiftResponse.getStatusCode());
+        }
+
+        String responseBody = swiftResponse.getResponseBodyAsString();
+
+        Gson gson = new Gson();
+        LoginResponseObject loginResponse = gson.fromJson(responseBody, LoginResponseObject.class);
+
+        String storageUrl = null;
+        for (ServiceObject service : loginResponse.getAccess().getServiceCatalog()) {
+            if (service.getType().equals("object-store")) {
+                storageUrl = service.getEndpoints().get(0).getPublicURL();
+                break;
+            }
+        }
+
+        if (storageUrl == null) {
+            throw new EndpointNotFoundException();
+        }
+
+        // get the token issue swift date
+        DateTimeZone.setDefault(DateTimeZone.UTC);
+        DateTimeFormatter dateStringFormat = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
+        DateTime issuedAt = dateStringFormat.parseDateTime(loginResponse.getAccess().getToken().getIssuedAt());
+
+        // get the token expiration swift date
+        dateStringFormat = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ssZ");
+        DateTime expiresAt = dateStringFormat.parseDateTime(loginResponse.getAccess().getToken().getExpires());
+
+        // calculate the period between these two dates and add it to our
+        // current time because datetime can differ from Swift and this
+        // device
+        Period period = new Period(issuedAt, expiresAt);
+        DateTime expirationDate = DateTime.now().plus(period);
+
+        return new Token(loginResponse.getAccess().getToken().getId(), storageUrl, expirationDate.getMillis());
+    }
+}
@@ -0,0 +1,33 @@
+package com.stacksync.syncservice.storage.swift;
+
+import java.util.List;
+
+import com.google.gson.annotations.SerializedName;
+
+public class BulkDeleteResponseObject {
+
+	@SerializedName("Number Deleted")
+	private int numberDeleted;
+	@SerializedName("Number Not Found")
+	private int numberNotFound;
+	@SerializedName("Response Status")
+	private String responseStatus;
+	@SerializedName("Errors")
+	private List<List<String>> errors;
+
+	public int getNumberDeleted() {
+		return numberDeleted;
+	}
+
+	public int getNumberNotFound() {
+		return numberNotFound;
+	}
+
+	public String getResponseStatus() {
+		return responseStatus;
+	}
+
+	public List<List<String>> getErrors() {
+		return errors;
+	}
+}
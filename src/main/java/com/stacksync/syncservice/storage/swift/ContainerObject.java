@@ -0,0 +1,23 @@
+package com.stacksync.syncservice.storage.swift;
+
+import com.google.gson.annotations.SerializedName;
+
+public class ContainerObject {
+
+	private String name;
+	private long bytes;
+	@SerializedName("last_modified")
+	private String lastModified;
+
+	public String getName() {
+		return name;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+}
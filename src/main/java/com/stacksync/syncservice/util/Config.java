@@ -56,6 +56,15 @@ public class Config {
 		checkProperty(Constants.PROP_OMQ_EXCHANGE, Constants.DEFAULT_OMQ_EXCHANGE);
 		checkProperty(Constants.PROP_OMQ_USER, Constants.DEFAULT_OMQ_USER);
 		checkProperty(Constants.PROP_OMQ_PASSWORD, Constants.DEFAULT_OMQ_PASSWORD);
+		checkProperty(Constants.PROP_OMQ_SERIALIZER, Constants.DEFAULT_OMQ_SERIALIZER);
+		checkProperty(Constants.PROP_OMQ_COMPRESSION, Constants.DEFAULT_OMQ_COMPRESSION);
+
+		String serializer = properties.getProperty(Constants.PROP_OMQ_SERIALIZER);
+		if (!Arrays.asList(Constants.OMQ_SERIALIZERS).contains(serializer)) {
+			logger.warn(String.format("Unknown serializer '%s', using default value: '%s'", serializer,
+					Constants.DEFAULT_OMQ_SERIALIZER));
+			properties.setProperty(Constants.PROP_OMQ_SERIALIZER, Constants.DEFAULT_OMQ_SERIALIZER);
+		}
 
 		// Database
 		checkProperty(Constants.PROP_POSTGRESQL_HOST, Constants.DEFAULT_POSTGRESQL_HOST);
@@ -113,6 +122,15 @@ public class Config {
 		return Integer.parseInt(properties.getProperty(Constants.PROP_OMQ_THREADS, Constants.DEFAULT_OMQ_THREADS));
 	}
 
+	public static String getOmqSerializer() {
+		return properties.getProperty(Constants.PROP_OMQ_SERIALIZER, Constants.DEFAULT_OMQ_SERIALIZER);
+	}
+
+	public static Boolean getOmqCompression() {
+		return Boolean.parseBoolean(properties.getProperty(Constants.PROP_OMQ_COMPRESSION,
+				Constants.DEFAULT_OMQ_COMPRESSION));
+	}
+
 	/* POSTGRESQL */
 
 	public static String getPostgresqlHost() {
@@ -202,4 +220,219 @@ public class Config {
 		String url = String.format("%s://%s:%s/v1", getSwiftProtocol(), getSwiftHost(), getSwiftPort());
 		return url;
 	}
+
+	public static Integer getSwiftMaxConnections() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_SWIFT_MAX_CONNECTIONS,
+				Constants.DEFAULT_SWIFT_MAX_CONNECTIONS));
+	}
+
+	public static Integer getSwiftMaxConnectionsPerRoute() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_SWIFT_MAX_CONNECTIONS_PER_ROUTE,
+				Constants.DEFAULT_SWIFT_MAX_CONNECTIONS_PER_ROUTE));
+	}
+
+	public static Integer getSwiftConnectTimeout() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_SWIFT_CONNECT_TIMEOUT,
+				Constants.DEFAULT_SWIFT_CONNECT_TIMEOUT));
+	}
+
+	public static Integer getSwiftSocketTimeout() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_SWIFT_SOCKET_TIMEOUT,
+				Constants.DEFAULT_SWIFT_SOCKET_TIMEOUT));
+	}
+
+	public static Long getSwiftKeepAlive() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_SWIFT_KEEP_ALIVE,
+				Constants.DEFAULT_SWIFT_KEEP_ALIVE));
+	}
+
+	public static Long getSwiftTokenRefreshMargin() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_SWIFT_TOKEN_REFRESH_MARGIN,
+				Constants.DEFAULT_SWIFT_TOKEN_REFRESH_MARGIN));
+	}
+
+	public static Integer getSwiftIoThreads() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_SWIFT_IO_THREADS,
+				Constants.DEFAULT_SWIFT_IO_THREADS));
+	}
+
+	public static Integer getSwiftMaxRequestsPerContainer() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_SWIFT_MAX_REQUESTS_PER_CONTAINER,
+				Constants.DEFAULT_SWIFT_MAX_REQUESTS_PER_CONTAINER));
+	}
+
+	public static Integer getSwiftBulkDeleteSize() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_SWIFT_BULK_DELETE_SIZE,
+				Constants.DEFAULT_SWIFT_BULK_DELETE_SIZE));
+	}
+
+	public static Long getSwiftAclCacheTtl() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_SWIFT_ACL_CACHE_TTL,
+				Constants.DEFAULT_SWIFT_ACL_CACHE_TTL));
+	}
+
+	/* CHANGES CACHE */
+
+	public static Long getChangesCacheMaxBytes() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_CHANGES_CACHE_MAX_BYTES,
+				Constants.DEFAULT_CHANGES_CACHE_MAX_BYTES));
+	}
+
+	/* API */
+
+	public static Integer getApiHandlerPoolSize() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_API_HANDLER_POOL_SIZE,
+				Constants.DEFAULT_API_HANDLER_POOL_SIZE));
+	}
+
+	public static Long getApiHandlerTimeout() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_API_HANDLER_TIMEOUT,
+				Constants.DEFAULT_API_HANDLER_TIMEOUT));
+	}
+
+	/* HTTP */
+
+	public static Boolean getHttpEnabled() {
+		return Boolean.parseBoolean(properties.getProperty(Constants.PROP_HTTP_ENABLED,
+				Constants.DEFAULT_HTTP_ENABLED));
+	}
+
+	public static Integer getHttpPort() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_HTTP_PORT, Constants.DEFAULT_HTTP_PORT));
+	}
+
+	public static Integer getHttpWorkerThreads() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_HTTP_WORKER_THREADS,
+				Constants.DEFAULT_HTTP_WORKER_THREADS));
+	}
+
+	public static Integer getHttpQueueSize() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_HTTP_QUEUE_SIZE,
+				Constants.DEFAULT_HTTP_QUEUE_SIZE));
+	}
+
+	public static Integer getHttpMaxRequestBytes() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_HTTP_MAX_REQUEST_BYTES,
+				Constants.DEFAULT_HTTP_MAX_REQUEST_BYTES));
+	}
+
+	public static Long getHttpKeepAliveTimeout() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_HTTP_KEEP_ALIVE_TIMEOUT,
+				Constants.DEFAULT_HTTP_KEEP_ALIVE_TIMEOUT));
+	}
+
+	public static Boolean getHttpCompression() {
+		return Boolean.parseBoolean(properties.getProperty(Constants.PROP_HTTP_COMPRESSION,
+				Constants.DEFAULT_HTTP_COMPRESSION));
+	}
+
+	public static Integer getHttpCompressionThreshold() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_HTTP_COMPRESSION_THRESHOLD,
+				Constants.DEFAULT_HTTP_COMPRESSION_THRESHOLD));
+	}
+
+	public static Integer getHttpCompressionLevel() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_HTTP_COMPRESSION_LEVEL,
+				Constants.DEFAULT_HTTP_COMPRESSION_LEVEL));
+	}
+
+	/* NOTIFICATIONS */
+
+	public static Boolean getNotificationsCompact() {
+		return Boolean.parseBoolean(properties.getProperty(Constants.PROP_NOTIFICATIONS_COMPACT,
+				Constants.DEFAULT_NOTIFICATIONS_COMPACT));
+	}
+
+	public static Long getNotificationsCoalesceWindow() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_NOTIFICATIONS_COALESCE_WINDOW,
+				Constants.DEFAULT_NOTIFICATIONS_COALESCE_WINDOW));
+	}
+
+	public static Integer getNotificationsCoalesceMaxItems() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_NOTIFICATIONS_COALESCE_MAX_ITEMS,
+				Constants.DEFAULT_NOTIFICATIONS_COALESCE_MAX_ITEMS));
+	}
+
+	public static Integer getNotificationsPublisherThreads() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_NOTIFICATIONS_PUBLISHER_THREADS,
+				Constants.DEFAULT_NOTIFICATIONS_PUBLISHER_THREADS));
+	}
+
+	public static Integer getNotificationsPublisherQueueSize() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_NOTIFICATIONS_PUBLISHER_QUEUE_SIZE,
+				Constants.DEFAULT_NOTIFICATIONS_PUBLISHER_QUEUE_SIZE));
+	}
+
+	/* MIGRATION */
+
+	public static Integer getMigrationThreads() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_MIGRATION_THREADS,
+				Constants.DEFAULT_MIGRATION_THREADS));
+	}
+
+	public static Integer getMigrationMaxRetries() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_MIGRATION_MAX_RETRIES,
+				Constants.DEFAULT_MIGRATION_MAX_RETRIES));
+	}
+
+	public static Long getMigrationRetryBackoff() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_MIGRATION_RETRY_BACKOFF,
+				Constants.DEFAULT_MIGRATION_RETRY_BACKOFF));
+	}
+
+	public static Integer getMigrationJobMaxAttempts() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_MIGRATION_JOB_MAX_ATTEMPTS,
+				Constants.DEFAULT_MIGRATION_JOB_MAX_ATTEMPTS));
+	}
+
+	public static Boolean getMigrationUnshareInPlace() {
+		return Boolean.parseBoolean(properties.getProperty(Constants.PROP_MIGRATION_UNSHARE_IN_PLACE,
+				Constants.DEFAULT_MIGRATION_UNSHARE_IN_PLACE));
+	}
+
+	/* STORAGE */
+
+	public static String getStorageType() {
+		return properties.getProperty(Constants.PROP_STORAGE_TYPE,
+				Constants.DEFAULT_STORAGE_TYPE);
+	}
+
+	public static String getStorageFilesystemRoot() {
+		return properties.getProperty(Constants.PROP_STORAGE_FILESYSTEM_ROOT,
+				Constants.DEFAULT_STORAGE_FILESYSTEM_ROOT);
+	}
+
+	/* CONTAINER POOL */
+
+	public static Integer getContainerPoolSize() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_CONTAINER_POOL_SIZE,
+				Constants.DEFAULT_CONTAINER_POOL_SIZE));
+	}
+
+	public static Integer getContainerPoolLowWater() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_CONTAINER_POOL_LOW_WATER,
+				Constants.DEFAULT_CONTAINER_POOL_LOW_WATER));
+	}
+
+	/* CHUNK COLLECTOR */
+
+	public static Long getChunkCollectorInterval() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_CHUNK_COLLECTOR_INTERVAL,
+				Constants.DEFAULT_CHUNK_COLLECTOR_INTERVAL));
+	}
+
+	public static Long getChunkCollectorGracePeriod() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_CHUNK_COLLECTOR_GRACE_PERIOD,
+				Constants.DEFAULT_CHUNK_COLLECTOR_GRACE_PERIOD));
+	}
+
+	public static Integer getChunkCollectorBatchSize() {
+		return Integer.parseInt(properties.getProperty(Constants.PROP_CHUNK_COLLECTOR_BATCH_SIZE,
+				Constants.DEFAULT_CHUNK_COLLECTOR_BATCH_SIZE));
+	}
+
+	public static Long getChunkCollectorBatchDelay() {
+		return Long.parseLong(properties.getProperty(Constants.PROP_CHUNK_COLLECTOR_BATCH_DELAY,
+				Constants.DEFAULT_CHUNK_COLLECTOR_BATCH_DELAY));
+	}
 }
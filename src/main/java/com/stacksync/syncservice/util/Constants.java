@@ -18,6 +18,8 @@ public class Constants {
 	public static final String PROP_OMQ_THREADS = ParameterQueue.NUM_THREADS;
 	public static final String PROP_OMQ_USER = ParameterQueue.USER_NAME;
 	public static final String PROP_OMQ_PASSWORD = ParameterQueue.USER_PASS;
+	public static final String PROP_OMQ_SERIALIZER = ParameterQueue.PROXY_SERIALIZER;
+	public static final String PROP_OMQ_COMPRESSION = ParameterQueue.ENABLE_COMPRESSION;
 
 	// PostgreSQL
 	public static final String PROP_POSTGRESQL_HOST = "postgresql.host";
@@ -39,7 +41,63 @@ public class Constants {
 	public static final String PROP_SWIFT_TENANT = "swift.tenant";
 	public static final String PROP_SWIFT_USER = "swift.user";
 	public static final String PROP_SWIFT_PASSWORD = "swift.password";
+	public static final String PROP_SWIFT_MAX_CONNECTIONS = "swift.max_connections";
+	public static final String PROP_SWIFT_MAX_CONNECTIONS_PER_ROUTE = "swift.max_connections_per_route";
+	public static final String PROP_SWIFT_CONNECT_TIMEOUT = "swift.connect_timeout";
+	public static final String PROP_SWIFT_SOCKET_TIMEOUT = "swift.socket_timeout";
+	public static final String PROP_SWIFT_KEEP_ALIVE = "swift.keep_alive";
+	public static final String PROP_SWIFT_TOKEN_REFRESH_MARGIN = "swift.token_refresh_margin";
+	public static final String PROP_SWIFT_IO_THREADS = "swift.io_threads";
+	public static final String PROP_SWIFT_MAX_REQUESTS_PER_CONTAINER = "swift.max_requests_per_container";
+	public static final String PROP_SWIFT_BULK_DELETE_SIZE = "swift.bulk_delete_size";
+	public static final String PROP_SWIFT_ACL_CACHE_TTL = "swift.acl_cache_ttl";
+
+	/* CHANGES CACHE */
+	public static final String PROP_CHANGES_CACHE_MAX_BYTES = "changes_cache.max_bytes";
+
+	/* API */
+	public static final String PROP_API_HANDLER_POOL_SIZE = "api.handler_pool_size";
+	public static final String PROP_API_HANDLER_TIMEOUT = "api.handler_timeout";
+
+	/* HTTP */
+	public static final String PROP_HTTP_ENABLED = "http.enabled";
+	public static final String PROP_HTTP_PORT = "http.port";
+	public static final String PROP_HTTP_WORKER_THREADS = "http.worker_threads";
+	public static final String PROP_HTTP_QUEUE_SIZE = "http.queue_size";
+	public static final String PROP_HTTP_MAX_REQUEST_BYTES = "http.max_request_bytes";
+	public static final String PROP_HTTP_KEEP_ALIVE_TIMEOUT = "http.keep_alive_timeout";
+	public static final String PROP_HTTP_COMPRESSION = "http.compression";
+	public static final String PROP_HTTP_COMPRESSION_THRESHOLD = "http.compression_threshold";
+	public static final String PROP_HTTP_COMPRESSION_LEVEL = "http.compression_level";
 	
+	/* NOTIFICATIONS */
+	public static final String PROP_NOTIFICATIONS_COMPACT = "notifications.compact";
+	public static final String PROP_NOTIFICATIONS_COALESCE_WINDOW = "notifications.coalesce_window";
+	public static final String PROP_NOTIFICATIONS_COALESCE_MAX_ITEMS = "notifications.coalesce_max_items";
+	public static final String PROP_NOTIFICATIONS_PUBLISHER_THREADS = "notifications.publisher_threads";
+	public static final String PROP_NOTIFICATIONS_PUBLISHER_QUEUE_SIZE = "notifications.publisher_queue_size";
+
+	/* MIGRATION */
+	public static final String PROP_MIGRATION_THREADS = "migration.threads";
+	public static final String PROP_MIGRATION_MAX_RETRIES = "migration.max_retries";
+	public static final String PROP_MIGRATION_RETRY_BACKOFF = "migration.retry_backoff";
+	public static final String PROP_MIGRATION_JOB_MAX_ATTEMPTS = "migration.job_max_attempts";
+	public static final String PROP_MIGRATION_UNSHARE_IN_PLACE = "migration.unshare_in_place";
+
+	/* STORAGE */
+	public static final String PROP_STORAGE_TYPE = "storage.type";
+	public static final String PROP_STORAGE_FILESYSTEM_ROOT = "storage.filesystem_root";
+
+	/* CONTAINER POOL */
+	public static final String PROP_CONTAINER_POOL_SIZE = "container_pool.size";
+	public static final String PROP_CONTAINER_POOL_LOW_WATER = "container_pool.low_water";
+
+	/* CHUNK COLLECTOR */
+	public static final String PROP_CHUNK_COLLECTOR_INTERVAL = "chunk_collector.interval";
+	public static final String PROP_CHUNK_COLLECTOR_GRACE_PERIOD = "chunk_collector.grace_period";
+	public static final String PROP_CHUNK_COLLECTOR_BATCH_SIZE = "chunk_collector.batch_size";
+	public static final String PROP_CHUNK_COLLECTOR_BATCH_DELAY = "chunk_collector.batch_delay";
+
 	/* GENERAL */
 	public static final String DEFAULT_DATASOURCE = "postgresql";
 
@@ -50,6 +108,9 @@ public class Constants {
 	public static final String DEFAULT_OMQ_USER = "guest";
 	public static final String DEFAULT_OMQ_PASSWORD = "guest";
 	public static final String DEFAULT_OMQ_THREADS = "4";
+	public static final String DEFAULT_OMQ_SERIALIZER = "java";
+	public static final String DEFAULT_OMQ_COMPRESSION = "false";
+	public static final String[] OMQ_SERIALIZERS = { "java", "gson", "kryo" };
 
 	/* POSTGRESQL */
 	public static final String DEFAULT_POSTGRESQL_HOST = "localhost";
@@ -72,7 +133,63 @@ public class Constants {
 	public static final String DEFAULT_SWIFT_TENANT = "stacksync";
 	public static final String DEFAULT_SWIFT_USER = "stacksync_admin";
 	public static final String DEFAULT_SWIFT_PASSWORD = "secrete";
+	public static final String DEFAULT_SWIFT_MAX_CONNECTIONS = "100";
+	public static final String DEFAULT_SWIFT_MAX_CONNECTIONS_PER_ROUTE = "50";
+	public static final String DEFAULT_SWIFT_CONNECT_TIMEOUT = "5000";
+	public static final String DEFAULT_SWIFT_SOCKET_TIMEOUT = "60000";
+	public static final String DEFAULT_SWIFT_KEEP_ALIVE = "30000";
+	public static final String DEFAULT_SWIFT_TOKEN_REFRESH_MARGIN = "300000";
+	public static final String DEFAULT_SWIFT_IO_THREADS = "32";
+	public static final String DEFAULT_SWIFT_MAX_REQUESTS_PER_CONTAINER = "16";
+	public static final String DEFAULT_SWIFT_BULK_DELETE_SIZE = "1000";
+	public static final String DEFAULT_SWIFT_ACL_CACHE_TTL = "60000";
+
+	/* CHANGES CACHE */
+	public static final String DEFAULT_CHANGES_CACHE_MAX_BYTES = "0";
+
+	/* API */
+	public static final String DEFAULT_API_HANDLER_POOL_SIZE = "8";
+	public static final String DEFAULT_API_HANDLER_TIMEOUT = "30000";
+
+	/* HTTP */
+	public static final String DEFAULT_HTTP_ENABLED = "false";
+	public static final String DEFAULT_HTTP_PORT = "61235";
+	public static final String DEFAULT_HTTP_WORKER_THREADS = "16";
+	public static final String DEFAULT_HTTP_QUEUE_SIZE = "1000";
+	public static final String DEFAULT_HTTP_MAX_REQUEST_BYTES = "16777216";
+	public static final String DEFAULT_HTTP_KEEP_ALIVE_TIMEOUT = "60000";
+	public static final String DEFAULT_HTTP_COMPRESSION = "true";
+	public static final String DEFAULT_HTTP_COMPRESSION_THRESHOLD = "1024";
+	public static final String DEFAULT_HTTP_COMPRESSION_LEVEL = "6";
 	
+	/* NOTIFICATIONS */
+	public static final String DEFAULT_NOTIFICATIONS_COMPACT = "false";
+	public static final String DEFAULT_NOTIFICATIONS_COALESCE_WINDOW = "0";
+	public static final String DEFAULT_NOTIFICATIONS_COALESCE_MAX_ITEMS = "1000";
+	public static final String DEFAULT_NOTIFICATIONS_PUBLISHER_THREADS = "4";
+	public static final String DEFAULT_NOTIFICATIONS_PUBLISHER_QUEUE_SIZE = "10000";
+
+	/* MIGRATION */
+	public static final String DEFAULT_MIGRATION_THREADS = "8";
+	public static final String DEFAULT_MIGRATION_MAX_RETRIES = "5";
+	public static final String DEFAULT_MIGRATION_RETRY_BACKOFF = "1000";
+	public static final String DEFAULT_MIGRATION_JOB_MAX_ATTEMPTS = "10";
+	public static final String DEFAULT_MIGRATION_UNSHARE_IN_PLACE = "false";
+
+	/* STORAGE */
+	public static final String DEFAULT_STORAGE_TYPE = "swift";
+	public static final String DEFAULT_STORAGE_FILESYSTEM_ROOT = "/var/lib/stacksync/storage";
+
+	/* CONTAINER POOL */
+	public static final String DEFAULT_CONTAINER_POOL_SIZE = "20";
+	public static final String DEFAULT_CONTAINER_POOL_LOW_WATER = "5";
+
+	/* CHUNK COLLECTOR */
+	public static final String DEFAULT_CHUNK_COLLECTOR_INTERVAL = "0";
+	public static final String DEFAULT_CHUNK_COLLECTOR_GRACE_PERIOD = "86400000";
+	public static final String DEFAULT_CHUNK_COLLECTOR_BATCH_SIZE = "1000";
+	public static final String DEFAULT_CHUNK_COLLECTOR_BATCH_DELAY = "1000";
+
 	/* XMLRPC */
 	public static final Integer XMLRPC_PORT = 61234;
 }
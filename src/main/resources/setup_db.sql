@@ -2,7 +2,7 @@
 -- PostgreSQL database initialization
 --
 
-DROP TABLE IF EXISTS public.item_version_chunk, public.item_version, public.item, public.workspace_user, public.workspace, public.device, public.user1, public.oauth1_access_tokens, public.oauth1_consumers, public.oauth1_nonce, public.oauth1_request_tokens CASCADE;
+DROP TABLE IF EXISTS public.container_pool, public.migration_job_chunk, public.migration_job, public.item_version_chunk, public.item_version, public.item, public.workspace_user, public.workspace_container, public.workspace, public.device, public.user1, public.oauth1_access_tokens, public.oauth1_consumers, public.oauth1_nonce, public.oauth1_request_tokens CASCADE;
 DROP SEQUENCE IF EXISTS public.sequencer_user, public.sequencer_workspace, public.sequencer_device, public.sequencer_item, public.sequencer_item_version, public.sequencer_chunk, public.oauth1_access_tokens_id_seq, public.oauth1_consumers_id_seq, public.oauth1_nonce_id_seq, public.oauth1_request_tokens_id_seq;
 
 SET statement_timeout = 0;
@@ -99,6 +99,8 @@ ALTER TABLE public.workspace ADD CONSTRAINT pk_workspace PRIMARY KEY (id);
 
 ALTER TABLE public.workspace ADD CONSTRAINT fk1_workspace FOREIGN KEY (owner_id) REFERENCES public.user1 (id) ON DELETE CASCADE;
 
+CREATE INDEX workspace_swift_container ON public.workspace (swift_container);
+
 INSERT INTO workspace (id, latest_revision, owner_id, is_shared, is_encrypted, swift_container, swift_url) values ('07fd5785-f148-4e24-bd22-195e6bc78fe4', 0, '9db83ed6-c22f-4bef-905f-4e4af931d92b', false, false, 'no_swift_container', 'no_swift_url');
 --COPY workspace (id, latest_revision, owner_id, is_shared, is_encrypted, swift_container, swift_url) FROM stdin;
 --07fd5785-f148-4e24-bd22-195e6bc78fe4	0	9db83ed6-c22f-4bef-905f-4e4af931d92b	f	f	no_swift_container  no_swift_url
@@ -128,6 +130,21 @@ COPY workspace_user (workspace_id, user_id, workspace_name, parent_item_id, crea
 \.
 
 
+--
+-- TABLE: workspace_container
+--
+
+CREATE TABLE public.workspace_container (
+    workspace_id uuid NOT NULL,
+    swift_container varchar(45) NOT NULL
+);
+
+ALTER TABLE public.workspace_container ADD CONSTRAINT pk_workspace_container PRIMARY KEY (workspace_id, swift_container);
+ALTER TABLE public.workspace_container ADD CONSTRAINT fk1_workspace_container FOREIGN KEY (workspace_id) REFERENCES public.workspace (id) ON DELETE CASCADE;
+
+CREATE INDEX workspace_container_swift_container ON public.workspace_container (swift_container);
+
+
 --
 -- TABLE: item
 --
@@ -153,6 +170,7 @@ ALTER TABLE public.workspace_user ADD CONSTRAINT fk3_workspace_user FOREIGN KEY
 
 CREATE INDEX item_workspace_id ON public.item (workspace_id);
 CREATE INDEX item_parent_id ON public.item (parent_id);
+CREATE INDEX item_workspace_parent_filename ON public.item (workspace_id, parent_id, filename, id);
 
 
 
@@ -197,6 +215,62 @@ CREATE TABLE public.item_version_chunk (
 ALTER TABLE public.item_version_chunk ADD CONSTRAINT pk_item_version_chunk PRIMARY KEY (item_version_id, client_chunk_name, chunk_order);
 ALTER TABLE public.item_version_chunk ADD CONSTRAINT fk2_item_version_chunk FOREIGN KEY (item_version_id) REFERENCES public.item_version (id) ON DELETE CASCADE;
 
+CREATE INDEX item_version_chunk_client_chunk_name ON public.item_version_chunk (client_chunk_name);
+
+
+--
+-- TABLE: migration_job
+--
+
+CREATE TABLE public.migration_job (
+    id uuid NOT NULL default uuid_generate_v4(),
+    item_id bigint NOT NULL,
+    source_workspace_id uuid NOT NULL,
+    source_container varchar(45) NOT NULL,
+    destination_workspace_id uuid NOT NULL,
+    destination_container varchar(45) NOT NULL,
+    delete_source boolean NOT NULL DEFAULT false,
+    status varchar(10) NOT NULL,
+    error text,
+    created_at timestamp NOT NULL DEFAULT now(),
+    updated_at timestamp NOT NULL DEFAULT now()
+);
+
+ALTER TABLE public.migration_job ADD CONSTRAINT pk_migration_job PRIMARY KEY (id);
+
+CREATE INDEX migration_job_status ON public.migration_job(status);
+
+-- a single unfinished job per item
+CREATE UNIQUE INDEX migration_job_item_id ON public.migration_job(item_id) WHERE status NOT IN ('DONE', 'FAILED');
+
+
+--
+-- TABLE: migration_job_chunk
+--
+
+CREATE TABLE public.migration_job_chunk (
+    job_id uuid NOT NULL,
+    client_chunk_name character varying(80) NOT NULL,
+    copied boolean NOT NULL DEFAULT false,
+    deleted boolean NOT NULL DEFAULT false,
+    missing boolean NOT NULL DEFAULT false
+);
+
+ALTER TABLE public.migration_job_chunk ADD CONSTRAINT pk_migration_job_chunk PRIMARY KEY (job_id, client_chunk_name);
+ALTER TABLE public.migration_job_chunk ADD CONSTRAINT fk1_migration_job_chunk FOREIGN KEY (job_id) REFERENCES public.migration_job (id) ON DELETE CASCADE;
+
+
+--
+-- TABLE: container_pool
+--
+
+CREATE TABLE public.container_pool (
+    swift_container varchar(45) NOT NULL,
+    created_at timestamp NOT NULL DEFAULT now()
+);
+
+ALTER TABLE public.container_pool ADD CONSTRAINT pk_container_pool PRIMARY KEY (swift_container);
+
 
 --
 -- OAUTH TABLES
@@ -2,8 +2,18 @@ package com.stacksync.syncservice.test.benchmark.normal;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -13,18 +23,45 @@ import omq.common.util.Serializers.JavaImp;
 import omq.common.util.Serializers.KryoImp;
 import omq.exception.SerializerException;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.gson.Gson;
+import com.stacksync.commons.models.CommitInfo;
 import com.stacksync.commons.models.ItemMetadata;
 import com.stacksync.commons.models.User;
 import com.stacksync.commons.models.Workspace;
-import com.stacksync.syncservice.test.benchmark.Constants;
+import com.stacksync.commons.notifications.CommitNotification;
 import com.stacksync.syncservice.db.ConnectionPool;
 import com.stacksync.syncservice.db.ConnectionPoolFactory;
-import com.stacksync.syncservice.handler.Handler;
 import com.stacksync.syncservice.handler.SQLSyncHandler;
+import com.stacksync.syncservice.handler.SyncHandler;
+import com.stacksync.syncservice.test.benchmark.Constants;
 import com.stacksync.syncservice.util.Config;
 
+/**
+ * Regression harness for the serialization of the getChanges replies and the
+ * commit notifications sent through ObjectMQ. Every serializer is checked for
+ * a lossless round trip and measured for time and size, raw and gzipped.
+ *
+ * Usage: TestGetChanges [items] [chunks per item] [baseline file] [db]
+ *
+ * When the baseline file does not exist the results are stored in it,
+ * otherwise they are compared with it and the process exits with status 1 if
+ * any serializer got bigger or more than 25% slower. With "db" the changes of
+ * the benchmark workspace are read from the configured database instead of
+ * being generated.
+ */
 public class TestGetChanges {
 
+	private static final int WARMUP_ITERATIONS = 20;
+	private static final int ITERATIONS = 50;
+	private static final double TIME_TOLERANCE = 0.25;
+	private static final double SIZE_TOLERANCE = 0.01;
+
+	private static final Gson gson = new Gson();
+
 	public static byte[] zip(byte[] b) throws IOException {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
@@ -65,63 +102,211 @@ public class TestGetChanges {
 		return true;
 	}
 
-	private static void printSize(ISerializer serializer, List<ItemMetadata> list) throws IOException {
-		try {
-			long start = System.currentTimeMillis();
-			byte[] bytes = serializer.serialize(list);
-			long total = System.currentTimeMillis() - start;
+	/**
+	 * Kryo with the exchanged classes registered up front, so class names are
+	 * written as small ids instead of strings.
+	 */
+	private static class RegisteredKryoImp implements ISerializer {
 
-			byte[] compressed = zip(bytes);
-			System.out.println(serializer.getClass().getName() + " -- Tiempo: " + total + " ms || Tama�o: " + bytes.length + " Bytes");
+		private final Kryo kryo;
 
-			byte[] uncompressed = unzip(compressed);
-			System.out.println("Compressed: " + compressed.length + " Bytes || UnCompressed: " + uncompressed.length + " Bytes" + " || Compare: "
-					+ compareByteArray(uncompressed, bytes));
+		private RegisteredKryoImp() {
+			kryo = new Kryo();
+			kryo.register(ArrayList.class);
+			kryo.register(Date.class);
+			kryo.register(UUID.class, new Serializer<UUID>() {
+				@Override
+				public void write(Kryo kryo, Output output, UUID uuid) {
+					output.writeLong(uuid.getMostSignificantBits());
+					output.writeLong(uuid.getLeastSignificantBits());
+				}
 
-		} catch (SerializerException e) {
-			e.printStackTrace();
+				@Override
+				public UUID read(Kryo kryo, Input input, Class<UUID> type) {
+					return new UUID(input.readLong(), input.readLong());
+				}
+			});
+			kryo.register(ItemMetadata.class);
+			kryo.register(CommitInfo.class);
+			kryo.register(CommitNotification.class);
+		}
+
+		@Override
+		public byte[] serialize(Object obj) throws SerializerException {
+			Output output = new Output(4096, -1);
+			kryo.writeClassAndObject(output, obj);
+			return output.toBytes();
+		}
+
+		@Override
+		public <T> T deserialize(byte[] bytes, Class<T> type) throws SerializerException {
+			return type.cast(kryo.readClassAndObject(new Input(bytes)));
 		}
 	}
 
-	public static void main(String[] args) throws Exception {
-		/*Config.loadProperties();
+	private static List<ItemMetadata> createChanges(int items, int chunksPerItem) {
+		Random random = new Random(42);
+		List<ItemMetadata> changes = new ArrayList<ItemMetadata>();
+
+		for (int i = 0; i < items; i++) {
+			ItemMetadata item = new ItemMetadata();
+			item.setId((long) i + 1);
+			item.setVersion((long) random.nextInt(10) + 1);
+			item.setDeviceId(Constants.DEVICE_ID);
+			item.setParentId(i % 10 == 0 ? null : (long) (i / 10) * 10 + 1);
+			item.setStatus("CHANGED");
+			item.setModifiedAt(new Date());
+			item.setChecksum((long) random.nextInt(Integer.MAX_VALUE));
+			item.setSize((long) random.nextInt(100000000));
+			item.setIsFolder(false);
+			item.setFilename("file-" + i + ".dat");
+			item.setMimetype("application/octet-stream");
+			item.setWorkspaceId(Constants.WORKSPACE_ID);
+
+			List<String> chunks = new ArrayList<String>();
+			for (int j = 0; j < chunksPerItem; j++) {
+				chunks.add(String.format("%040X", random.nextLong()));
+			}
+			item.setChunks(chunks);
+			changes.add(item);
+		}
+		return changes;
+	}
+
+	private static List<ItemMetadata> readChanges() throws Exception {
+		Config.loadProperties();
 
 		String datasource = Config.getDatasource();
 		ConnectionPool pool = ConnectionPoolFactory.getConnectionPool(datasource);
-		Handler handler = new SQLSyncHandler(pool);
-
-		long startTotal = System.currentTimeMillis();
-		// [User:AUTH_e26e8353dbd043ae857ad6962e02f5cc,
-		// Request:gguerrero201305161637-1368778961517, Workspace:
-		// RemoteWorkspace[id=benchmark-93539494/, latestRevision=1, path=/]]
-		// GetChangesMessage getChangesRequest = new
-		// GetChangesMessage("AUTH_e26e8353dbd043ae857ad6962e02f5cc",
-		// Message.GET_CHANGES, Constants.REQUESTID, "benchmark-93539494/", "");
-		
+		SyncHandler handler = new SQLSyncHandler(pool);
+
 		User user = new User();
 		user.setId(Constants.USER);
 		Workspace workspace = new Workspace(Constants.WORKSPACE_ID);
-		
-		List<ItemMetadata> listFiles = handler.doGetChanges(user, workspace);
 
-		System.out.println("Objects -> " + listFiles.size());
+		return handler.doGetChanges(user, workspace);
+	}
+
+	private static CommitNotification createNotification(List<ItemMetadata> changes) {
+		List<CommitInfo> items = new ArrayList<CommitInfo>();
+		for (ItemMetadata item : changes) {
+			items.add(new CommitInfo(item.getVersion(), true, item));
+		}
+		CommitNotification notification = new CommitNotification(Constants.REQUEST_ID, items, 0L, 0L);
+		return notification;
+	}
+
+	/**
+	 * Compares the JSON trees so that serializers which do not keep the
+	 * concrete types, like Gson with raw lists, can be checked too.
+	 */
+	private static boolean sameContent(Object expected, Object actual) {
+		return gson.toJsonTree(expected).equals(gson.toJsonTree(actual));
+	}
+
+	private static boolean measure(String name, ISerializer serializer, String workload, Object value,
+			Properties results) throws Exception {
+
+		byte[] bytes = serializer.serialize(value);
+		Object copy = serializer.deserialize(bytes, value.getClass());
+		byte[] compressed = zip(bytes);
+		boolean roundTrip = sameContent(value, copy) && compareByteArray(unzip(compressed), bytes);
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			serializer.deserialize(serializer.serialize(value), value.getClass());
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			serializer.serialize(value);
+		}
+		long serializeTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			serializer.deserialize(bytes, value.getClass());
+		}
+		long deserializeTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+		String key = name + "." + workload;
+		results.setProperty(key + ".size", String.valueOf(bytes.length));
+		results.setProperty(key + ".gzip_size", String.valueOf(compressed.length));
+		results.setProperty(key + ".serialize_us", String.valueOf(serializeTime));
+		results.setProperty(key + ".deserialize_us", String.valueOf(deserializeTime));
+
+		System.out.println(String.format("%-16s %-14s Size: %9d B || Gzip: %9d B || Serialize: %7d us || "
+				+ "Deserialize: %7d us || Round trip: %s", name, workload, bytes.length, compressed.length,
+				serializeTime, deserializeTime, roundTrip ? "OK" : "FAILED"));
+		return roundTrip;
+	}
+
+	private static boolean compare(Properties baseline, Properties results) {
+		boolean passed = true;
+		for (String key : results.stringPropertyNames()) {
+			String expected = baseline.getProperty(key);
+			if (expected == null) {
+				continue;
+			}
+
+			double tolerance = key.endsWith("_us") ? TIME_TOLERANCE : SIZE_TOLERANCE;
+			long base = Long.parseLong(expected);
+			long current = Long.parseLong(results.getProperty(key));
+			if (current > base * (1 + tolerance) + 1) {
+				System.out.println(String.format("REGRESSION %s: %d -> %d", key, base, current));
+				passed = false;
+			}
+		}
+		return passed;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int items = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int chunksPerItem = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		File baselineFile = args.length > 2 ? new File(args[2]) : null;
+		boolean fromDatabase = args.length > 3 && args[3].equals("db");
+
+		List<ItemMetadata> changes = fromDatabase ? readChanges() : createChanges(items, chunksPerItem);
+		CommitNotification notification = createNotification(changes);
+
 		int countChk = 0;
-		for (ItemMetadata obj : listFiles) {
+		for (ItemMetadata obj : changes) {
 			countChk += obj.getChunks().size();
 		}
-		System.out.println("Chunks -> " + countChk);
+		System.out.println("Objects -> " + changes.size() + " || Chunks -> " + countChk);
 
-		printSize(new JavaImp(), listFiles);
-		printSize(new GsonImp(), listFiles);
-		// printSize(new JsonImp(), listFiles);
-		printSize(new KryoImp(), listFiles);
-		// printSize(new XmlImp(), listFiles);
-		// printSize(new YamlImp(), listFiles);
+		Map<String, ISerializer> serializers = new LinkedHashMap<String, ISerializer>();
+		serializers.put("java", new JavaImp());
+		serializers.put("gson", new GsonImp());
+		serializers.put("kryo", new KryoImp());
+		serializers.put("kryo-registered", new RegisteredKryoImp());
 
-		long totalTime = System.currentTimeMillis() - startTotal;
-		// System.out.println("Objects -> " + ((GetChangesResponseMessage)
-		// response).getMetadata().size());
-		System.out.println("Total level time --> " + totalTime + " ms");*/
+		Properties results = new Properties();
+		boolean passed = true;
+		for (Map.Entry<String, ISerializer> entry : serializers.entrySet()) {
+			passed &= measure(entry.getKey(), entry.getValue(), "getChanges", changes, results);
+			passed &= measure(entry.getKey(), entry.getValue(), "notifyCommit", notification, results);
+		}
+
+		if (baselineFile != null) {
+			if (baselineFile.exists()) {
+				Properties baseline = new Properties();
+				FileInputStream in = new FileInputStream(baselineFile);
+				baseline.load(in);
+				in.close();
+				passed &= compare(baseline, results);
+			} else {
+				FileOutputStream out = new FileOutputStream(baselineFile);
+				results.store(out, String.format("TestGetChanges baseline, %d items, %d chunks per item", items,
+						chunksPerItem));
+				out.close();
+				System.out.println("Baseline stored in " + baselineFile);
+			}
+		}
+
+		System.out.println(passed ? "PASSED" : "FAILED");
+		if (!passed) {
+			System.exit(1);
+		}
 	}
 
 }
@@ -0,0 +1,96 @@
+package com.stacksync.syncservice.test.benchmark.normal;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import com.stacksync.commons.models.ItemMetadata;
+import com.stacksync.syncservice.rpc.messages.APIGetMetadata;
+
+/**
+ * Compares the tree based and the streaming serialization of a big folder
+ * listing. Usage: TestJsonSerialization [entries] [chunks per file]
+ */
+public class TestJsonSerialization {
+
+	private static final int WARMUP_ITERATIONS = 20;
+	private static final int ITERATIONS = 50;
+
+	private static APIGetMetadata createListing(int entries, int chunksPerFile) {
+		Random random = new Random(42);
+
+		ItemMetadata folder = new ItemMetadata();
+		folder.setId(1L);
+		folder.setFilename("benchmark");
+		folder.setIsFolder(true);
+		folder.setIsRoot(false);
+		folder.setStatus("NEW");
+		folder.setVersion(1L);
+
+		for (int i = 0; i < entries; i++) {
+			ItemMetadata file = new ItemMetadata();
+			file.setId(1000L + i);
+			file.setParentId(1L);
+			file.setFilename("file-" + i + ".dat");
+			file.setIsFolder(false);
+			file.setStatus("CHANGED");
+			file.setVersion((long) random.nextInt(10) + 1);
+			file.setChecksum(random.nextLong());
+			file.setSize((long) random.nextInt(100000000));
+			file.setMimetype("application/octet-stream");
+			file.setModifiedAt(new Date());
+
+			List<String> chunks = new ArrayList<String>();
+			for (int j = 0; j < chunksPerFile; j++) {
+				chunks.add(String.format("%040X", random.nextLong()));
+			}
+			file.setChunks(chunks);
+			folder.addChild(file);
+		}
+
+		return new APIGetMetadata(folder, true, 0, "");
+	}
+
+	private static long runTree(APIGetMetadata response, int iterations) {
+		long length = 0;
+		for (int i = 0; i < iterations; i++) {
+			length += response.toJsonTree().toString().length();
+		}
+		return length;
+	}
+
+	private static long runStreaming(APIGetMetadata response, int iterations) {
+		long length = 0;
+		for (int i = 0; i < iterations; i++) {
+			length += response.toString().length();
+		}
+		return length;
+	}
+
+	public static void main(String[] args) {
+		int entries = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int chunksPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		APIGetMetadata response = createListing(entries, chunksPerFile);
+
+		String tree = response.toJsonTree().toString();
+		String streaming = response.toString();
+		System.out.println("Entries: " + entries + " || Chunks per file: " + chunksPerFile + " || Size: "
+				+ streaming.length() + " chars || Same output: " + tree.equals(streaming));
+
+		runTree(response, WARMUP_ITERATIONS);
+		runStreaming(response, WARMUP_ITERATIONS);
+
+		long start = System.nanoTime();
+		runTree(response, ITERATIONS);
+		long treeTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+		start = System.nanoTime();
+		runStreaming(response, ITERATIONS);
+		long streamingTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+		System.out.println("Tree -- Time: " + treeTime + " us/op");
+		System.out.println("Streaming -- Time: " + streamingTime + " us/op");
+	}
+}
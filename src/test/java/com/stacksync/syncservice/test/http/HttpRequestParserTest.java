@@ -0,0 +1,68 @@
+package com.stacksync.syncservice.test.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.stacksync.syncservice.exceptions.InvalidHttpRequestException;
+import com.stacksync.syncservice.rpc.http.HttpRequest;
+import com.stacksync.syncservice.rpc.http.HttpRequestParser;
+
+public class HttpRequestParserTest {
+
+	private static void append(HttpRequestParser parser, String data) throws Exception {
+		parser.append(ByteBuffer.wrap(data.getBytes("ISO-8859-1")));
+	}
+
+	@Test
+	public void testPartialRequest() throws Exception {
+		HttpRequestParser parser = new HttpRequestParser(1024);
+
+		append(parser, "POST /api/getMetadata HTTP/1.1\r\nContent-Length: 5\r\n");
+		assertNull(parser.next());
+
+		append(parser, "\r\n[\"a");
+		assertNull(parser.next());
+
+		append(parser, "\"]");
+		HttpRequest request = parser.next();
+		assertEquals("POST", request.getMethod());
+		assertEquals("/api/getMetadata", request.getPath());
+		assertEquals("[\"a\"]", new String(request.getBody(), "UTF-8"));
+		assertTrue(request.isKeepAlive());
+		assertEquals(0, parser.getBufferedBytes());
+	}
+
+	@Test
+	public void testPipelinedRequests() throws Exception {
+		HttpRequestParser parser = new HttpRequestParser(1024);
+
+		append(parser, "POST /a HTTP/1.1\r\nContent-Length: 2\r\n\r\n[]"
+				+ "POST /b HTTP/1.0\r\nContent-Length: 0\r\n\r\n");
+
+		assertEquals("/a", parser.next().getPath());
+		HttpRequest second = parser.next();
+		assertEquals("/b", second.getPath());
+		assertFalse(second.isKeepAlive());
+		assertNull(parser.next());
+	}
+
+	@Test(expected = InvalidHttpRequestException.class)
+	public void testBodyTooLarge() throws Exception {
+		HttpRequestParser parser = new HttpRequestParser(10);
+		append(parser, "POST /a HTTP/1.1\r\nContent-Length: 11\r\n\r\n");
+		parser.next();
+	}
+
+	@Test(expected = InvalidHttpRequestException.class)
+	public void testMalformedRequestLine() throws Exception {
+		HttpRequestParser parser = new HttpRequestParser(10);
+		append(parser, "GARBAGE\r\n\r\n");
+		parser.next();
+	}
+}
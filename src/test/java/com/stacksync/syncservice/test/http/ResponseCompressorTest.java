@@ -0,0 +1,106 @@
+package com.stacksync.syncservice.test.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+
+import com.stacksync.syncservice.rpc.http.HttpResponse;
+import com.stacksync.syncservice.rpc.http.ResponseCompressor;
+
+public class ResponseCompressorTest {
+
+	private static String createJson(int entries) {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < entries; i++) {
+			json.append("{\"id\":").append(i).append(",\"filename\":\"file-").append(i)
+					.append(".dat\",\"is_folder\":false,\"status\":\"NEW\"},");
+		}
+		return json.append("{}]").toString();
+	}
+
+	private static byte[] readAll(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static String header(HttpResponse response, String name) throws Exception {
+		String head = new String(response.toBytes(true), "ISO-8859-1");
+		for (String line : head.substring(0, head.indexOf("\r\n\r\n")).split("\r\n")) {
+			if (line.startsWith(name + ": ")) {
+				return line.substring(name.length() + 2);
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testNegotiate() {
+		assertNull(ResponseCompressor.negotiate(null));
+		assertNull(ResponseCompressor.negotiate("identity"));
+		assertEquals("gzip", ResponseCompressor.negotiate("gzip, deflate"));
+		assertEquals("deflate", ResponseCompressor.negotiate("deflate"));
+		assertEquals("deflate", ResponseCompressor.negotiate("gzip;q=0, deflate;q=0.5"));
+		assertEquals("gzip", ResponseCompressor.negotiate("*"));
+		assertNull(ResponseCompressor.negotiate("gzip;q=0, *;q=0"));
+		assertEquals("deflate", ResponseCompressor.negotiate("gzip;q=0, *"));
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(1024, 6, 2);
+		String json = createJson(1000);
+
+		for (int i = 0; i < 3; i++) {
+			HttpResponse response = HttpResponse.json(json);
+			compressor.compress(response, "gzip");
+
+			assertEquals("gzip", header(response, "Content-Encoding"));
+			byte[] body = readAll(new GZIPInputStream(new ByteArrayInputStream(response.getBody())));
+			assertArrayEquals(json.getBytes("UTF-8"), body);
+		}
+
+		assertEquals(3, compressor.getCompressedResponses());
+		assertTrue(compressor.getCompressionRatio() < 0.5);
+	}
+
+	@Test
+	public void testDeflate() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(1024, 6, 2);
+		String json = createJson(1000);
+
+		HttpResponse response = HttpResponse.json(json);
+		compressor.compress(response, "deflate");
+
+		assertEquals("deflate", header(response, "Content-Encoding"));
+		byte[] body = readAll(new InflaterInputStream(new ByteArrayInputStream(response.getBody())));
+		assertArrayEquals(json.getBytes("UTF-8"), body);
+	}
+
+	@Test
+	public void testBelowThreshold() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(1024, 6, 2);
+		String json = createJson(2);
+
+		HttpResponse response = HttpResponse.json(json);
+		compressor.compress(response, "gzip");
+
+		assertNull(header(response, "Content-Encoding"));
+		assertArrayEquals(json.getBytes("UTF-8"), response.getBody());
+		assertEquals(0, compressor.getCompressedResponses());
+		assertEquals(1, compressor.getUncompressedResponses());
+	}
+}
@@ -0,0 +1,272 @@
+package com.stacksync.syncservice.test.migration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.stacksync.commons.models.User;
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+import com.stacksync.syncservice.exceptions.storage.ChunkTransferException;
+import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
+import com.stacksync.syncservice.migration.ChunkTransfer;
+import com.stacksync.syncservice.storage.StorageManager;
+import com.stacksync.syncservice.storage.StoredChunk;
+
+public class ChunkTransferTest {
+
+	/**
+	 * Object store kept in memory. Requests for the chunks in failures fail
+	 * that many times before succeeding.
+	 */
+	private static class LocalStorageManager extends StorageManager {
+
+		private final Map<String, Set<String>> containers = new ConcurrentHashMap<String, Set<String>>();
+		private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<String, AtomicInteger>();
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+
+		private synchronized Set<String> container(Workspace workspace) {
+			Set<String> container = containers.get(workspace.getSwiftContainer());
+			if (container == null) {
+				container = Collections.synchronizedSet(new HashSet<String>());
+				containers.put(workspace.getSwiftContainer(), container);
+			}
+			return container;
+		}
+
+		private void request(String chunkName) throws Exception {
+			int current = inFlight.incrementAndGet();
+			while (current > maxInFlight.get()) {
+				maxInFlight.set(current);
+			}
+			try {
+				Thread.sleep(2);
+				AtomicInteger remaining = failures.get(chunkName);
+				if (remaining != null && remaining.getAndDecrement() > 0) {
+					throw new Exception("503 Service Unavailable");
+				}
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void login() throws Exception {
+		}
+
+		@Override
+		public void createNewWorkspace(Workspace workspace) throws Exception {
+			container(workspace);
+		}
+
+		@Override
+		public void removeUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+		}
+
+		@Override
+		public void grantUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+		}
+
+		@Override
+		public void setWorkspaceUsers(User owner, Workspace workspace, Collection<User> users) throws Exception {
+		}
+
+		@Override
+		public void copyChunk(Workspace sourceWorkspace, Workspace destinationWorkspace, String chunkName)
+				throws Exception {
+			request(chunkName);
+			if (!container(sourceWorkspace).contains(chunkName)) {
+				throw new ObjectNotFoundException(chunkName);
+			}
+			container(destinationWorkspace).add(chunkName);
+		}
+
+		@Override
+		public void deleteChunk(Workspace workspace, String chunkName) throws Exception {
+			request(chunkName);
+			if (!container(workspace).remove(chunkName)) {
+				throw new ObjectNotFoundException(chunkName);
+			}
+		}
+
+		@Override
+		public boolean hasChunk(Workspace workspace, String chunkName) throws Exception {
+			request(chunkName);
+			return container(workspace).contains(chunkName);
+		}
+
+		@Override
+		public void deleteWorkspace(Workspace workspace) throws Exception {
+			containers.remove(workspace.getSwiftContainer());
+		}
+
+		@Override
+		public List<StoredChunk> listChunks(Workspace workspace, String marker, int limit) throws Exception {
+			return new ArrayList<StoredChunk>();
+		}
+	}
+
+	private static class Recorder implements ChunkTransfer.Listener {
+
+		private final List<String> transferred = new ArrayList<String>();
+		private final List<String> missing = new ArrayList<String>();
+
+		@Override
+		public void transferred(String chunkName) throws DAOException {
+			transferred.add(chunkName);
+		}
+
+		@Override
+		public void missing(String chunkName) throws DAOException {
+			missing.add(chunkName);
+		}
+	}
+
+	private LocalStorageManager storage;
+	private ChunkTransfer transfer;
+	private Workspace source;
+	private Workspace destination;
+	private List<String> chunks;
+
+	private static Workspace createWorkspace(String container) {
+		Workspace workspace = new Workspace(UUID.randomUUID());
+		workspace.setSwiftContainer(container);
+		return workspace;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		storage = new LocalStorageManager();
+		transfer = new ChunkTransfer(storage, 4, 3, 1, 16);
+		source = createWorkspace("source");
+		destination = createWorkspace("destination");
+
+		chunks = new ArrayList<String>();
+		for (int i = 0; i < 200; i++) {
+			String chunkName = String.format("%040X", i);
+			chunks.add(chunkName);
+			storage.container(source).add(chunkName);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		transfer.shutdown();
+	}
+
+	@Test
+	public void testCopyAndDelete() throws Exception {
+		Recorder copied = new Recorder();
+		transfer.copy(source, destination, chunks, copied);
+
+		assertEquals(new HashSet<String>(chunks), new HashSet<String>(copied.transferred));
+		assertEquals(new HashSet<String>(chunks), storage.container(destination));
+		assertTrue(storage.maxInFlight.get() <= 8);
+		assertTrue(storage.maxInFlight.get() > 1);
+
+		Recorder deleted = new Recorder();
+		transfer.delete(source, chunks, deleted);
+
+		assertEquals(chunks.size(), deleted.transferred.size());
+		assertTrue(storage.container(source).isEmpty());
+	}
+
+	@Test
+	public void testRetries() throws Exception {
+		storage.failures.put(chunks.get(0), new AtomicInteger(3));
+		storage.failures.put(chunks.get(1), new AtomicInteger(1));
+
+		Recorder copied = new Recorder();
+		transfer.copy(source, destination, chunks, copied);
+
+		assertEquals(chunks.size(), copied.transferred.size());
+		assertTrue(storage.container(destination).contains(chunks.get(0)));
+	}
+
+	@Test
+	public void testPartialFailure() throws Exception {
+		storage.failures.put(chunks.get(5), new AtomicInteger(100));
+
+		Recorder copied = new Recorder();
+		try {
+			transfer.copy(source, destination, chunks, copied);
+			fail("The transfer should have failed");
+		} catch (ChunkTransferException e) {
+			// the other chunks are transferred and reported anyway
+		}
+
+		assertEquals(chunks.size() - 1, copied.transferred.size());
+		assertFalse(copied.transferred.contains(chunks.get(5)));
+		assertFalse(storage.container(destination).contains(chunks.get(5)));
+	}
+
+	@Test
+	public void testMissingChunks() throws Exception {
+		int missing = 10;
+		for (int i = 0; i < missing; i++) {
+			storage.container(source).remove(chunks.get(i));
+		}
+		// moved by a previous run
+		storage.container(destination).add(chunks.get(0));
+
+		Recorder copied = new Recorder();
+		transfer.copy(source, destination, chunks, copied);
+
+		// the job goes on without the chunks found nowhere
+		assertEquals(chunks.size() - missing + 1, copied.transferred.size());
+		assertTrue(copied.transferred.contains(chunks.get(0)));
+		assertEquals(missing - 1, copied.missing.size());
+		assertTrue(copied.missing.contains(chunks.get(1)));
+	}
+
+	@Test
+	public void testDeleteRetries() throws Exception {
+		storage.failures.put(chunks.get(0), new AtomicInteger(2));
+		storage.failures.put(chunks.get(50), new AtomicInteger(100));
+
+		Recorder deleted = new Recorder();
+		try {
+			transfer.delete(source, chunks, deleted);
+			fail("The delete should have failed");
+		} catch (ChunkTransferException e) {
+			// the other batches are deleted anyway
+		}
+
+		assertEquals(chunks.size() - 1, deleted.transferred.size());
+		assertEquals(Collections.singleton(chunks.get(50)), storage.container(source));
+	}
+
+	@Test
+	public void testFallbackSources() throws Exception {
+		// chunks left in the container of an unshared workspace
+		Workspace unshared = createWorkspace("unshared");
+		for (int i = 0; i < 20; i++) {
+			storage.container(source).remove(chunks.get(i));
+			storage.container(unshared).add(chunks.get(i));
+		}
+
+		Recorder copied = new Recorder();
+		transfer.copy(Arrays.asList(source, unshared), destination, chunks, copied);
+
+		assertEquals(chunks.size(), copied.transferred.size());
+		assertEquals(new HashSet<String>(chunks), storage.container(destination));
+	}
+}
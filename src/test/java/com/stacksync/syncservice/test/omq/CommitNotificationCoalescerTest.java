@@ -0,0 +1,154 @@
+package com.stacksync.syncservice.test.omq;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.stacksync.commons.models.CommitInfo;
+import com.stacksync.commons.models.ItemMetadata;
+import com.stacksync.commons.notifications.CommitNotification;
+import com.stacksync.syncservice.omq.CommitNotificationCoalescer;
+
+public class CommitNotificationCoalescerTest {
+
+	private static class RecordingPublisher implements CommitNotificationCoalescer.Publisher {
+
+		private final List<CommitNotification> published = Collections
+				.synchronizedList(new ArrayList<CommitNotification>());
+
+		@Override
+		public void publish(UUID workspaceId, CommitNotification notification) {
+			published.add(notification);
+		}
+	}
+
+	private static CommitNotification createNotification(String requestId, int items) {
+		List<CommitInfo> infos = new ArrayList<CommitInfo>();
+		for (int i = 0; i < items; i++) {
+			ItemMetadata item = new ItemMetadata();
+			item.setId((long) i);
+			infos.add(new CommitInfo(1L, true, item));
+		}
+		return new CommitNotification(requestId, infos, 100L, 10L);
+	}
+
+	@Test
+	public void testFirstNotificationIsPublishedRightAway() {
+		RecordingPublisher publisher = new RecordingPublisher();
+		CommitNotificationCoalescer coalescer = new CommitNotificationCoalescer(10000L, 1000, publisher);
+
+		coalescer.submit(UUID.randomUUID(), createNotification("r1", 1));
+		coalescer.submit(UUID.randomUUID(), createNotification("r2", 1));
+
+		assertEquals(2, publisher.published.size());
+		assertEquals("r1", publisher.published.get(0).getRequestId());
+		coalescer.shutdown();
+	}
+
+	@Test
+	public void testBurstIsMerged() throws Exception {
+		RecordingPublisher publisher = new RecordingPublisher();
+		CommitNotificationCoalescer coalescer = new CommitNotificationCoalescer(50L, 1000, publisher);
+		UUID workspaceId = UUID.randomUUID();
+
+		for (int i = 0; i < 10; i++) {
+			coalescer.submit(workspaceId, createNotification("", 2));
+		}
+		Thread.sleep(300L);
+
+		assertEquals(2, publisher.published.size());
+		CommitNotification merged = publisher.published.get(1);
+		assertEquals("", merged.getRequestId());
+		assertEquals(18, merged.getItems().size());
+		assertEquals(10, coalescer.getReceived());
+		assertEquals(2, coalescer.getPublished());
+		coalescer.shutdown();
+	}
+
+	@Test
+	public void testMaxItems() {
+		RecordingPublisher publisher = new RecordingPublisher();
+		CommitNotificationCoalescer coalescer = new CommitNotificationCoalescer(10000L, 5, publisher);
+		UUID workspaceId = UUID.randomUUID();
+
+		for (int i = 0; i < 4; i++) {
+			coalescer.submit(workspaceId, createNotification("", 2));
+		}
+		assertEquals(2, publisher.published.size());
+		assertEquals(6, publisher.published.get(1).getItems().size());
+
+		coalescer.submit(workspaceId, createNotification("", 2));
+		coalescer.shutdown();
+		assertEquals(3, publisher.published.size());
+		assertEquals(2, publisher.published.get(2).getItems().size());
+	}
+
+	@Test
+	public void testPublishedInOrder() throws Exception {
+		final CountDownLatch publishing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final RecordingPublisher publisher = new RecordingPublisher() {
+			@Override
+			public void publish(UUID workspaceId, CommitNotification notification) {
+				if ("r1".equals(notification.getRequestId())) {
+					publishing.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				super.publish(workspaceId, notification);
+			}
+		};
+		final CommitNotificationCoalescer coalescer = new CommitNotificationCoalescer(10000L, 1000, publisher);
+		final UUID workspaceId = UUID.randomUUID();
+
+		Thread first = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				coalescer.submit(workspaceId, createNotification("r1", 1));
+			}
+		});
+		first.start();
+		publishing.await();
+
+		// queued behind r1 instead of overtaking it
+		coalescer.submit(workspaceId, createNotification("r2", 1));
+		assertEquals(0, publisher.published.size());
+
+		release.countDown();
+		first.join();
+
+		assertEquals(2, publisher.published.size());
+		assertEquals("r1", publisher.published.get(0).getRequestId());
+		assertEquals("r2", publisher.published.get(1).getRequestId());
+		coalescer.shutdown();
+	}
+
+	@Test
+	public void testResponsesAreNotMerged() {
+		RecordingPublisher publisher = new RecordingPublisher();
+		CommitNotificationCoalescer coalescer = new CommitNotificationCoalescer(10000L, 1000, publisher);
+		UUID workspaceId = UUID.randomUUID();
+
+		coalescer.submit(workspaceId, createNotification("r1", 1));
+		coalescer.submit(workspaceId, createNotification("", 1));
+		coalescer.submit(workspaceId, createNotification("", 1));
+		coalescer.submit(workspaceId, createNotification("r2", 1));
+		coalescer.submit(workspaceId, createNotification("r3", 1));
+
+		assertEquals(4, publisher.published.size());
+		assertEquals("r1", publisher.published.get(0).getRequestId());
+		assertEquals(2, publisher.published.get(1).getItems().size());
+		assertEquals("r2", publisher.published.get(2).getRequestId());
+		assertEquals("r3", publisher.published.get(3).getRequestId());
+		coalescer.shutdown();
+	}
+}
@@ -0,0 +1,62 @@
+package com.stacksync.syncservice.test.omq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.stacksync.commons.models.CommitInfo;
+import com.stacksync.commons.models.ItemMetadata;
+import com.stacksync.commons.notifications.CommitNotification;
+import com.stacksync.syncservice.omq.CommitNotificationCompactor;
+
+public class CommitNotificationCompactorTest {
+
+	private static ItemMetadata createItem(long id, long version) {
+		ItemMetadata item = new ItemMetadata();
+		item.setId(id);
+		item.setVersion(version);
+		item.setTempId(-id);
+		item.setStatus("CHANGED");
+		item.setFilename("file-" + id);
+		item.setSize(1024L);
+		item.setChunks(Arrays.asList("A", "B", "C"));
+		return item;
+	}
+
+	@Test
+	public void testCompact() {
+		List<CommitInfo> items = new ArrayList<CommitInfo>();
+		items.add(new CommitInfo(2L, true, createItem(1L, 2L)));
+		CommitInfo conflict = new CommitInfo(3L, false, createItem(2L, 5L));
+		items.add(conflict);
+
+		CommitNotification notification = new CommitNotification("request", items, 100L, 10L);
+		CommitNotification compact = CommitNotificationCompactor.compact(notification);
+
+		assertEquals("request", compact.getRequestId());
+		assertEquals(Long.valueOf(100L), compact.getLimitQuota());
+		assertEquals(Long.valueOf(10L), compact.getUsedQuota());
+		assertEquals(2, compact.getItems().size());
+
+		CommitInfo committed = compact.getItems().get(0);
+		assertTrue(committed.isCommitSucceed());
+		assertEquals(Long.valueOf(2L), committed.getCommittedVersion());
+		assertEquals(Long.valueOf(1L), committed.getMetadata().getId());
+		assertEquals(Long.valueOf(2L), committed.getMetadata().getVersion());
+		assertEquals(Long.valueOf(-1L), committed.getMetadata().getTempId());
+		assertEquals("CHANGED", committed.getMetadata().getStatus());
+		assertNull(committed.getMetadata().getFilename());
+		assertNull(committed.getMetadata().getChunks());
+
+		assertFalse(compact.getItems().get(1).isCommitSucceed());
+		assertSame(conflict, compact.getItems().get(1));
+	}
+}
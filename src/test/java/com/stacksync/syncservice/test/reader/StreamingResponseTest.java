@@ -0,0 +1,86 @@
+package com.stacksync.syncservice.test.reader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.stacksync.commons.models.ItemMetadata;
+import com.stacksync.syncservice.rpc.messages.APIGetMetadata;
+import com.stacksync.syncservice.rpc.messages.APIGetMetadataBatch;
+import com.stacksync.syncservice.rpc.messages.APIGetVersions;
+
+public class StreamingResponseTest {
+
+	private static ItemMetadata createFolder() {
+		ItemMetadata folder = new ItemMetadata();
+		folder.setId(10L);
+		folder.setFilename("folder \"<quoted>\" \u00e9");
+		folder.setIsFolder(true);
+		folder.setIsRoot(false);
+		folder.setStatus("NEW");
+		folder.setVersion(1L);
+		folder.setModifiedAt(new Date(1400000000000L));
+
+		for (int i = 0; i < 3; i++) {
+			ItemMetadata file = new ItemMetadata();
+			file.setId(100L + i);
+			file.setParentId(10L);
+			file.setFilename("file" + i + ".txt");
+			file.setIsFolder(false);
+			file.setStatus("CHANGED");
+			file.setVersion(2L);
+			file.setChecksum(123456789L);
+			file.setSize(1024L * i);
+			file.setMimetype(i == 0 ? null : "text/plain");
+			file.setChunks(Arrays.asList("29ECAA1D936E746D032C1A264A619746C3B5A7E4", "chunk\t" + i));
+			folder.addChild(file);
+		}
+
+		return folder;
+	}
+
+	@Test
+	public void testGetMetadataMatchesTree() {
+		APIGetMetadata response = new APIGetMetadata(createFolder(), true, 0, "");
+		response.setNextCursor("102:file2.txt");
+		response.setTotalCount(3L, true);
+		response.setEtag("w1.2");
+
+		assertEquals(response.toJsonTree().toString(), response.toString());
+	}
+
+	@Test
+	public void testErrorsMatchTree() {
+		APIGetMetadata response = new APIGetMetadata(null, false, 404, "File or folder does not exist.");
+		assertEquals(response.toJsonTree().toString(), response.toString());
+
+		APIGetMetadata notModified = new APIGetMetadata(null, true, 0, "");
+		notModified.setNotModified(true);
+		notModified.setEtag("v3");
+		assertEquals(notModified.toJsonTree().toString(), notModified.toString());
+	}
+
+	@Test
+	public void testGetVersionsMatchesTree() {
+		APIGetVersions response = new APIGetVersions(createFolder(), true, 0, "");
+		assertEquals(response.toJsonTree().toString(), response.toString());
+	}
+
+	@Test
+	public void testGetMetadataBatchMatchesTree() {
+		ItemMetadata missing = new ItemMetadata();
+		missing.setId(7L);
+
+		List<APIGetMetadata> results = new ArrayList<APIGetMetadata>();
+		results.add(new APIGetMetadata(createFolder(), true, 0, ""));
+		results.add(new APIGetMetadata(missing, false, 404, "File or folder does not exist."));
+
+		APIGetMetadataBatch response = new APIGetMetadataBatch(results, true, 0, "");
+		assertEquals(response.toJsonTree().toString(), response.toString());
+	}
+}
@@ -0,0 +1,178 @@
+package com.stacksync.syncservice.test.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.stacksync.commons.models.User;
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
+import com.stacksync.syncservice.storage.AsyncStorageManager;
+import com.stacksync.syncservice.storage.StorageManager;
+import com.stacksync.syncservice.storage.StoredChunk;
+
+public class AsyncStorageManagerTest {
+
+	/**
+	 * Counts the requests running on every container.
+	 */
+	private static class CountingStorageManager extends StorageManager {
+
+		private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<String, AtomicInteger>();
+		private final Map<String, AtomicInteger> maxInFlight = new ConcurrentHashMap<String, AtomicInteger>();
+		private final AtomicInteger total = new AtomicInteger();
+
+		private synchronized AtomicInteger counter(Map<String, AtomicInteger> counters, String container) {
+			AtomicInteger counter = counters.get(container);
+			if (counter == null) {
+				counter = new AtomicInteger();
+				counters.put(container, counter);
+			}
+			return counter;
+		}
+
+		private void request(Workspace workspace) throws InterruptedException {
+			String container = workspace.getSwiftContainer();
+			int current = counter(inFlight, container).incrementAndGet();
+			AtomicInteger max = counter(maxInFlight, container);
+			while (current > max.get()) {
+				max.set(current);
+			}
+			try {
+				Thread.sleep(5);
+			} finally {
+				counter(inFlight, container).decrementAndGet();
+				total.incrementAndGet();
+			}
+		}
+
+		@Override
+		public void login() throws Exception {
+		}
+
+		@Override
+		public void createNewWorkspace(Workspace workspace) throws Exception {
+			request(workspace);
+		}
+
+		@Override
+		public void removeUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+			request(workspace);
+		}
+
+		@Override
+		public void grantUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+			request(workspace);
+		}
+
+		@Override
+		public void setWorkspaceUsers(User owner, Workspace workspace, Collection<User> users) throws Exception {
+			request(workspace);
+		}
+
+		@Override
+		public void copyChunk(Workspace sourceWorkspace, Workspace destinationWorkspace, String chunkName)
+				throws Exception {
+			request(destinationWorkspace);
+		}
+
+		@Override
+		public void deleteChunk(Workspace workspace, String chunkName) throws Exception {
+			request(workspace);
+			if (chunkName.equals("missing")) {
+				throw new ObjectNotFoundException(chunkName);
+			}
+		}
+
+		@Override
+		public boolean hasChunk(Workspace workspace, String chunkName) throws Exception {
+			return false;
+		}
+
+		@Override
+		public void deleteWorkspace(Workspace workspace) throws Exception {
+			request(workspace);
+		}
+
+		@Override
+		public List<StoredChunk> listChunks(Workspace workspace, String marker, int limit) throws Exception {
+			request(workspace);
+			return new ArrayList<StoredChunk>();
+		}
+	}
+
+	private CountingStorageManager storage;
+	private AsyncStorageManager async;
+
+	private static Workspace createWorkspace(String container) {
+		Workspace workspace = new Workspace(UUID.randomUUID());
+		workspace.setSwiftContainer(container);
+		return workspace;
+	}
+
+	@Before
+	public void setUp() {
+		storage = new CountingStorageManager();
+		async = new AsyncStorageManager(storage, 8, 2);
+	}
+
+	@After
+	public void tearDown() {
+		async.shutdown();
+	}
+
+	@Test
+	public void testBoundedPerContainer() throws Exception {
+		Workspace source = createWorkspace("source");
+		Workspace first = createWorkspace("first");
+		Workspace second = createWorkspace("second");
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i = 0; i < 50; i++) {
+			futures.add(async.copyChunk(source, first, "chunk" + i));
+			futures.add(async.copyChunk(source, second, "chunk" + i));
+		}
+
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+
+		assertEquals(100, storage.total.get());
+		assertEquals(2, storage.maxInFlight.get("first").get());
+		assertEquals(2, storage.maxInFlight.get("second").get());
+		assertTrue(storage.maxInFlight.get("source") == null);
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		Workspace workspace = createWorkspace("workspace");
+		Future<Void> missing = async.deleteChunk(workspace, "missing");
+		Future<Void> found = async.deleteChunk(workspace, "found");
+
+		try {
+			missing.get();
+			fail("The delete should have failed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof ObjectNotFoundException);
+		}
+
+		// a failure releases the slot of the container
+		found.get();
+		async.deleteWorkspace(workspace).get();
+		assertEquals(3, storage.total.get());
+	}
+}
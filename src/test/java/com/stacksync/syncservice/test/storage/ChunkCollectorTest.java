@@ -0,0 +1,196 @@
+package com.stacksync.syncservice.test.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.stacksync.commons.models.Chunk;
+import com.stacksync.commons.models.ItemMetadata;
+import com.stacksync.commons.models.ItemVersion;
+import com.stacksync.commons.models.User;
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.db.ItemVersionDAO;
+import com.stacksync.syncservice.exceptions.dao.DAOException;
+import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
+import com.stacksync.syncservice.storage.ChunkCollector;
+import com.stacksync.syncservice.storage.StorageManager;
+import com.stacksync.syncservice.storage.StoredChunk;
+
+public class ChunkCollectorTest {
+
+	private static final long HOUR = 3600000L;
+
+	/**
+	 * A single container kept in memory.
+	 */
+	private static class MemoryStorageManager extends StorageManager {
+
+		private final TreeMap<String, StoredChunk> chunks = new TreeMap<String, StoredChunk>();
+		private int listings = 0;
+
+		private void put(String chunkName, long size, long age) {
+			chunks.put(chunkName, new StoredChunk(chunkName, size, new Date(System.currentTimeMillis() - age)));
+		}
+
+		@Override
+		public void login() throws Exception {
+		}
+
+		@Override
+		public void createNewWorkspace(Workspace workspace) throws Exception {
+		}
+
+		@Override
+		public void removeUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+		}
+
+		@Override
+		public void grantUserToWorkspace(User owner, User user, Workspace workspace) throws Exception {
+		}
+
+		@Override
+		public void setWorkspaceUsers(User owner, Workspace workspace, Collection<User> users) throws Exception {
+		}
+
+		@Override
+		public void copyChunk(Workspace sourceWorkspace, Workspace destinationWorkspace, String chunkName)
+				throws Exception {
+		}
+
+		@Override
+		public void deleteChunk(Workspace workspace, String chunkName) throws Exception {
+			if (chunks.remove(chunkName) == null) {
+				throw new ObjectNotFoundException(chunkName);
+			}
+		}
+
+		@Override
+		public boolean hasChunk(Workspace workspace, String chunkName) throws Exception {
+			return chunks.containsKey(chunkName);
+		}
+
+		@Override
+		public void deleteWorkspace(Workspace workspace) throws Exception {
+		}
+
+		@Override
+		public List<StoredChunk> listChunks(Workspace workspace, String marker, int limit) throws Exception {
+			listings++;
+			Collection<StoredChunk> after = marker == null ? chunks.values() : chunks.tailMap(marker, false).values();
+			List<StoredChunk> page = new ArrayList<StoredChunk>();
+			for (StoredChunk chunk : after) {
+				if (page.size() >= limit) {
+					break;
+				}
+				page.add(chunk);
+			}
+			return page;
+		}
+	}
+
+	/**
+	 * Only answers which chunks are referenced.
+	 */
+	private static class ReferencesDAO implements ItemVersionDAO {
+
+		private final Set<String> referenced = new HashSet<String>();
+
+		@Override
+		public ItemMetadata findByItemIdAndVersion(Long id, Long version) throws DAOException {
+			return null;
+		}
+
+		@Override
+		public void add(ItemVersion itemVersion) throws DAOException {
+		}
+
+		@Override
+		public void insertChunk(Long itemVersionId, Long chunkId, Integer order) throws DAOException {
+		}
+
+		@Override
+		public void insertChunks(List<Chunk> chunks, long itemVersionId) throws DAOException {
+		}
+
+		@Override
+		public List<Chunk> findChunks(Long itemVersionId) throws DAOException {
+			return null;
+		}
+
+		@Override
+		public void update(ItemVersion itemVersion) throws DAOException {
+		}
+
+		@Override
+		public void delete(ItemVersion itemVersion) throws DAOException {
+		}
+
+		@Override
+		public List<String> findReferencedChunks(String container, List<String> chunkNames) throws DAOException {
+			List<String> found = new ArrayList<String>();
+			for (String chunkName : chunkNames) {
+				if (referenced.contains(chunkName)) {
+					found.add(chunkName);
+				}
+			}
+			return found;
+		}
+	}
+
+	private MemoryStorageManager storage;
+	private ReferencesDAO references;
+
+	@Before
+	public void setUp() {
+		storage = new MemoryStorageManager();
+		references = new ReferencesDAO();
+	}
+
+	@Test
+	public void testKeepsReferencedAndRecent() throws Exception {
+		storage.put("a-referenced", 10, 2 * HOUR);
+		storage.put("b-orphan", 20, 2 * HOUR);
+		storage.put("c-recent", 30, 0);
+		storage.put("chk-d-referenced", 40, 2 * HOUR);
+		storage.put("e-orphan", 50, 2 * HOUR);
+		references.referenced.add("a-referenced");
+		references.referenced.add("d-referenced");
+
+		ChunkCollector collector = new ChunkCollector(storage, references, HOUR, 2, 0);
+		long reclaimed = collector.collect("container");
+
+		assertEquals(70, reclaimed);
+		assertEquals(3, storage.chunks.size());
+		assertTrue(storage.chunks.containsKey("a-referenced"));
+		assertTrue(storage.chunks.containsKey("c-recent"));
+		assertTrue(storage.chunks.containsKey("chk-d-referenced"));
+	}
+
+	@Test
+	public void testPages() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			storage.put(String.format("chunk%03d", i), i, 2 * HOUR);
+			if (i % 10 == 0) {
+				references.referenced.add(String.format("chunk%03d", i));
+			}
+		}
+
+		ChunkCollector collector = new ChunkCollector(storage, references, HOUR, 7, 0);
+		long reclaimed = collector.collect("container");
+
+		// 0 + 1 + ... + 99 minus the multiples of ten
+		assertEquals(4950 - 450, reclaimed);
+		assertEquals(10, storage.chunks.size());
+		assertTrue(storage.listings <= 100 / 7 + 2);
+	}
+}
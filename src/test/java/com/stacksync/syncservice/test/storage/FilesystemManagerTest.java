@@ -0,0 +1,197 @@
+package com.stacksync.syncservice.test.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.stacksync.commons.models.User;
+import com.stacksync.commons.models.Workspace;
+import com.stacksync.syncservice.exceptions.storage.ObjectNotFoundException;
+import com.stacksync.syncservice.storage.BulkDeleteResult;
+import com.stacksync.syncservice.storage.FilesystemManager;
+import com.stacksync.syncservice.storage.StorageManager;
+import com.stacksync.syncservice.storage.StoredChunk;
+import com.stacksync.syncservice.util.Config;
+
+public class FilesystemManagerTest {
+
+	private static File root;
+	private static StorageManager storage;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		root = File.createTempFile("storage", "");
+		root.delete();
+
+		File config = File.createTempFile("config", ".properties");
+		config.deleteOnExit();
+		FileWriter writer = new FileWriter(config);
+		writer.write("storage.type=filesystem\n");
+		writer.write("storage.filesystem_root=" + root.getAbsolutePath() + "\n");
+		writer.close();
+
+		Config.loadProperties(config.getAbsolutePath());
+		storage = FilesystemManager.getInstance();
+		storage.login();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		delete(root);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static Workspace createWorkspace() throws Exception {
+		Workspace workspace = new Workspace(UUID.randomUUID());
+		workspace.setSwiftContainer(UUID.randomUUID().toString());
+		storage.createNewWorkspace(workspace);
+		return workspace;
+	}
+
+	private static File getChunk(Workspace workspace, String chunkName) {
+		return new File(new File(root, workspace.getSwiftContainer()), chunkName);
+	}
+
+	private static byte[] write(Workspace workspace, String chunkName, int size) throws IOException {
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++) {
+			content[i] = (byte) i;
+		}
+		FileOutputStream out = new FileOutputStream(getChunk(workspace, chunkName));
+		out.write(content);
+		out.close();
+		return content;
+	}
+
+	private static byte[] read(Workspace workspace, String chunkName) throws IOException {
+		File chunk = getChunk(workspace, chunkName);
+		byte[] content = new byte[(int) chunk.length()];
+		FileInputStream in = new FileInputStream(chunk);
+		in.read(content);
+		in.close();
+		return content;
+	}
+
+	@Test
+	public void testCopyAndDelete() throws Exception {
+		Workspace source = createWorkspace();
+		Workspace destination = createWorkspace();
+		byte[] content = write(source, "chunk", 300000);
+
+		storage.copyChunk(source, destination, "chunk");
+		assertArrayEquals(content, read(destination, "chunk"));
+
+		storage.deleteChunk(source, "chunk");
+		assertFalse(getChunk(source, "chunk").exists());
+
+		try {
+			storage.deleteChunk(source, "chunk");
+			fail("The chunk should not exist");
+		} catch (ObjectNotFoundException e) {
+		}
+
+		try {
+			storage.copyChunk(source, destination, "chunk");
+			fail("The chunk should not exist");
+		} catch (ObjectNotFoundException e) {
+		}
+	}
+
+	@Test
+	public void testDeleteChunks() throws Exception {
+		Workspace workspace = createWorkspace();
+		write(workspace, "first", 10);
+		write(workspace, "second", 10);
+
+		BulkDeleteResult result = storage.deleteChunks(workspace, Arrays.asList("first", "second", "missing"));
+
+		assertEquals(3, result.getDeleted().size());
+		assertTrue(result.getFailed().isEmpty());
+
+		storage.deleteWorkspace(workspace);
+		assertFalse(new File(root, workspace.getSwiftContainer()).exists());
+	}
+
+	@Test
+	public void testListChunks() throws Exception {
+		Workspace workspace = createWorkspace();
+		write(workspace, "c", 3);
+		write(workspace, "a", 1);
+		write(workspace, "b", 2);
+		write(workspace, ".a.1", 1);
+
+		List<StoredChunk> first = storage.listChunks(workspace, null, 2);
+		assertEquals(2, first.size());
+		assertEquals("a", first.get(0).getName());
+		assertEquals("b", first.get(1).getName());
+		assertEquals(2, first.get(1).getSize());
+
+		List<StoredChunk> second = storage.listChunks(workspace, "b", 2);
+		assertEquals(1, second.size());
+		assertEquals("c", second.get(0).getName());
+
+		assertTrue(storage.listChunks(workspace, "c", 2).isEmpty());
+	}
+
+	@Test
+	public void testAcl() throws Exception {
+		Workspace workspace = createWorkspace();
+		User owner = new User();
+		User user = new User();
+		user.setSwiftUser("user");
+
+		storage.grantUserToWorkspace(owner, user, workspace);
+		storage.grantUserToWorkspace(owner, user, workspace);
+
+		File acl = new File(root, workspace.getSwiftContainer() + ".acl");
+		assertEquals(Config.getSwiftTenant().length() + ":user\n".length(), acl.length());
+
+		storage.removeUserToWorkspace(owner, user, workspace);
+		assertEquals(0, acl.length());
+	}
+
+	@Test
+	public void testSetWorkspaceUsers() throws Exception {
+		Workspace workspace = createWorkspace();
+		User owner = new User();
+		owner.setSwiftUser("owner");
+		User user = new User();
+		user.setSwiftUser("user");
+
+		storage.grantUserToWorkspace(owner, user, workspace);
+		storage.setWorkspaceUsers(owner, workspace, Arrays.asList(owner));
+
+		File acl = new File(root, workspace.getSwiftContainer() + ".acl");
+		assertEquals(Config.getSwiftTenant().length() + ":owner\n".length(), acl.length());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidName() throws Exception {
+		Workspace workspace = createWorkspace();
+		storage.deleteChunk(workspace, "../" + workspace.getSwiftContainer());
+	}
+}
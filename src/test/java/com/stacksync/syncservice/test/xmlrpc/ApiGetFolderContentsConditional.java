@@ -0,0 +1,46 @@
+package com.stacksync.syncservice.test.xmlrpc;
+
+import java.net.URL;
+
+import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class ApiGetFolderContentsConditional {
+
+	public static void main(String[] args) throws Exception {
+
+		XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
+		config.setEnabledForExtensions(true);
+		config.setServerURL(new URL("http://127.0.0.1:" + Constants.XMLRPC_PORT));
+		XmlRpcClient client = new XmlRpcClient();
+		client.setConfig(config);
+
+		String strUserId = "159a1286-33df-4453-bf80-cff4af0d97b0";
+		String strFolderId = "100";
+		String strIncludeDeleted = "false";
+
+		Object[] params = new Object[] { strUserId, strFolderId, strIncludeDeleted, "" };
+
+		long start = System.currentTimeMillis();
+		String strResponse = (String) client.execute("XmlRpcSyncHandler.getFolderContents", params);
+		long time = System.currentTimeMillis() - start;
+
+		System.out.println("Response --> " + Constants.PrettyPrintJson(strResponse));
+		System.out.println("Full listing time --> " + time + " ms, " + strResponse.length() + " chars");
+
+		JsonObject jResponse = new JsonParser().parse(strResponse).getAsJsonObject();
+		String strEtag = jResponse.get("etag").getAsString();
+
+		params = new Object[] { strUserId, strFolderId, strIncludeDeleted, strEtag };
+
+		start = System.currentTimeMillis();
+		strResponse = (String) client.execute("XmlRpcSyncHandler.getFolderContents", params);
+		time = System.currentTimeMillis() - start;
+
+		System.out.println("Response --> " + Constants.PrettyPrintJson(strResponse));
+		System.out.println("Conditional time --> " + time + " ms, " + strResponse.length() + " chars");
+	}
+}
@@ -0,0 +1,54 @@
+package com.stacksync.syncservice.test.xmlrpc;
+
+import java.net.URL;
+
+import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class ApiGetFolderContentsPage {
+
+	public static void main(String[] args) throws Exception {
+
+		XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
+		config.setEnabledForExtensions(true);
+		config.setServerURL(new URL("http://127.0.0.1:" + Constants.XMLRPC_PORT));
+		XmlRpcClient client = new XmlRpcClient();
+		client.setConfig(config);
+
+		String strUserId = "159a1286-33df-4453-bf80-cff4af0d97b0";
+		String strFolderId = "100";
+		String strIncludeDeleted = "false";
+		String strPageSize = "100";
+		String strCursor = "";
+
+		int pages = 0;
+		long startTotal = System.currentTimeMillis();
+
+		while (strCursor != null) {
+			Object[] params = new Object[] { strUserId, strFolderId, strIncludeDeleted, strPageSize, strCursor };
+
+			long start = System.currentTimeMillis();
+			String strResponse = (String) client.execute("XmlRpcSyncHandler.getFolderContents", params);
+			long time = System.currentTimeMillis() - start;
+
+			if (pages == 0) {
+				System.out.println("Response --> " + Constants.PrettyPrintJson(strResponse));
+			}
+			System.out.println("Page " + pages + " time --> " + time + " ms");
+
+			JsonObject jResponse = new JsonParser().parse(strResponse).getAsJsonObject();
+			if (jResponse.has("next_cursor")) {
+				strCursor = jResponse.get("next_cursor").getAsString();
+			} else {
+				strCursor = null;
+			}
+			pages++;
+		}
+
+		long totalTime = System.currentTimeMillis() - startTotal;
+		System.out.println("Total time for " + pages + " pages --> " + totalTime + " ms");
+	}
+}
@@ -0,0 +1,43 @@
+package com.stacksync.syncservice.test.xmlrpc;
+
+import java.net.URL;
+
+import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class ApiWaitForChanges {
+
+	public static void main(String[] args) throws Exception {
+
+		XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
+		config.setEnabledForExtensions(true);
+		config.setServerURL(new URL("http://127.0.0.1:" + Constants.XMLRPC_PORT));
+		XmlRpcClient client = new XmlRpcClient();
+		client.setConfig(config);
+
+		String strUserId = "159a1286-33df-4453-bf80-cff4af0d97b0";
+		String strWorkspaceId = "46cb3ab0-26ef-4a3e-a0e0-8d1d4e3a5a8b";
+		String strRevision = "";
+		String strTimeout = "30000";
+
+		// the first call returns the current revision, then wait for commits
+		for (int i = 0; i < 5; i++) {
+			Object[] params = new Object[] { strUserId, strWorkspaceId, strRevision, strTimeout };
+
+			long start = System.currentTimeMillis();
+			String strResponse = (String) client.execute("XmlRpcSyncHandler.waitForChanges", params);
+			long time = System.currentTimeMillis() - start;
+
+			System.out.println("Response --> " + strResponse + " after " + time + " ms");
+
+			JsonObject jResponse = new JsonParser().parse(strResponse).getAsJsonObject();
+			if (!jResponse.has("revision")) {
+				break;
+			}
+			strRevision = jResponse.get("revision").getAsString();
+		}
+	}
+}